@@ -0,0 +1,98 @@
+package benchmarks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ScanEngineBenchmark - JMH benchmark of one full scan per engine
+ *
+ * Each operation scans the block of LoopbackServices stand-ins (open,
+ * refused and blackholed ports) once and fails if an open port was
+ * missed. Ports/second is the port count divided by the score.
+ *
+ * The scanner lives in the unnamed package, which a named package (as
+ * JMH requires) cannot import, so ScanBenchmark.startServices and
+ * scanServices are looked up once through method handles at setup.
+ *
+ *   mvn -P jmh package
+ *   java -jar target/benchmarks.jar -p engine=nio -p threads=200 -rf csv
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class ScanEngineBenchmark {
+
+    //seq, mt or nio
+    @Param({"mt", "nio"})
+    public String engine;
+
+    //Ports in the block
+    @Param({"1024"})
+    public int ports;
+
+    //Threads (mt) / connects in flight (nio), ignored by seq
+    @Param({"50", "200"})
+    public int threads;
+
+    //Connect timeout in milliseconds, paid by every blackholed port
+    @Param({"200"})
+    public int timeout;
+
+    @Param({"5"})
+    public int openPercent;
+
+    @Param({"2"})
+    public int blackholedPercent;
+
+    private MethodHandle scan;
+    private Closeable services;
+
+    @Setup(Level.Trial)
+    public void start() throws Throwable {
+        Class<?> harness = Class.forName("ScanBenchmark");
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+        MethodHandle startServices = lookup.findStatic(harness, "startServices",
+            MethodType.methodType(Closeable.class, int.class, int.class, int.class, int.class));
+        scan = lookup.findStatic(harness, "scanServices",
+            MethodType.methodType(int.class, String.class, Closeable.class, int.class));
+
+        services = (Closeable) startServices.invoke(ports, openPercent, blackholedPercent, timeout);
+    }
+
+    @Benchmark
+    public int scan() throws Throwable {
+        return (int) scan.invoke(engine, services, threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        if (services != null){
+            services.close();
+        }
+    }
+}
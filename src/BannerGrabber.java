@@ -1,6 +1,7 @@
-import java.io.*;
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.net.SocketTimeoutException;
+import java.nio.channels.SocketChannel;
 
 /**
  * BannerGrabber - Retrieves service banners for version detection
@@ -15,26 +16,40 @@ import java.net.SocketTimeoutException;
 public class BannerGrabber {
     
     private static final int BANNER_TIMEOUT = 3000; // 3 seconds
-    private static final int MAX_BANNER_LENGTH = 1024; // 1KB max
     
     /**
      * Attempts to grab a banner from a service
+     * Opens its own connection, scanners should use grabBanner(Socket, int)
      * 
      * @param host Target hostname or IP
      * @param port Port number
      * @return Banner string, or empty string if unable to grab
      */
     public static String grabBanner(String host, int port) {
+        try (Socket socket = TlsProber.isTlsPort(port) ? SocketChannel.open().socket() : new Socket()) {
+            socket.connect(new InetSocketAddress(HostResolver.resolve(host), port), BANNER_TIMEOUT);
+            return grabBanner(socket, port);
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    /**
+     * Grabs a banner over an already connected socket
+     * Lets the scanners reuse the probe connection instead of reconnecting.
+     * The socket is left open, closing it is up to the caller.
+     * 
+     * @param socket Connected socket to the target
+     * @param port Port number (to determine protocol)
+     * @return Banner string, or empty string if unable to grab
+     */
+    public static String grabBanner(Socket socket, int port) {
         try {
-            // Connect to the port
-            Socket socket = new Socket(host, port);
-            socket.setSoTimeout(BANNER_TIMEOUT);
-            
-            // Try to read banner
-            String banner = readBanner(socket, port);
-            
-            socket.close();
-            return banner;
+            if (isTls(socket, port)) {
+                return TlsProber.probe(socket, BANNER_TIMEOUT).toString();
+            }
+            BannerReader reader = readBanner(socket, port);
+            return reader.toBannerString();
             
         } catch (Exception e) {
             return "";
@@ -42,90 +57,61 @@ public class BannerGrabber {
     }
     
     /**
-     * Reads banner from socket based on port/protocol
+     * Grabs a banner and extracts its version in one go
+     * The banner bytes are parsed where they were read, only the version
+     * string is created. Used by the scanners.
      * 
-     * @param socket Connected socket
+     * @param socket Connected socket to the target
      * @param port Port number (to determine protocol)
-     * @return Banner string
+     * @return Version info, or empty string if unable to grab
      */
-    private static String readBanner(Socket socket, int port) throws IOException {
-        StringBuilder banner = new StringBuilder();
-        
+    public static String grabVersion(Socket socket, int port) {
+        long start = System.nanoTime();
         try {
-            InputStream in = socket.getInputStream();
-            OutputStream out = socket.getOutputStream();
-            
-            // Send probe based on port
-            sendProbe(out, port);
-            
-            // Read response
-            BufferedReader reader = new BufferedReader(
-                new InputStreamReader(in)
-            );
-            
-            String line;
-            int lines = 0;
-            
-            while ((line = reader.readLine()) != null && lines < 5) {
-                banner.append(line).append(" ");
-                lines++;
-                
-                if (banner.length() > MAX_BANNER_LENGTH) {
-                    break;
-                }
+            if (isTls(socket, port)) {
+                return TlsProber.probe(socket, BANNER_TIMEOUT).toString();
             }
+            BannerReader reader = readBanner(socket, port);
+            return reader.extractVersion();
             
-        } catch (SocketTimeoutException e) {
-            // Timeout is normal for some services
+        } catch (Exception e) {
+            return "";
+        } finally {
+            ScanMetrics.get().recordBanner(System.nanoTime() - start);
         }
-        
-        return banner.toString().trim();
     }
     
     /**
-     * Sends appropriate probe based on service port
+     * Checks whether the port gets a TLS handshake instead of a banner read
+     * Only possible over channel-backed sockets (NIO, or PortChecker on TLS ports).
      * 
-     * @param out Output stream
+     * @param socket Connected socket
      * @param port Port number
+     * @return true to probe with TlsProber
      */
-    private static void sendProbe(OutputStream out, int port) throws IOException {
-        switch (port) {
-            case 80:
-            case 8080:
-            case 8000:
-            case 8888:
-                // HTTP probe
-                out.write("HEAD / HTTP/1.0\r\n\r\n".getBytes());
-                out.flush();
-                break;
-                
-            case 21:
-                // FTP - just wait for banner
-                break;
-                
-            case 25:
-            case 587:
-                // SMTP - send EHLO
-                out.write("EHLO grabber\r\n".getBytes());
-                out.flush();
-                break;
-                
-            case 110:
-                // POP3 - just wait for banner
-                break;
-                
-            case 22:
-                // SSH - just wait for banner
-                break;
-                
-            default:
-                // Generic probe - just try to read
-                break;
-        }
+    private static boolean isTls(Socket socket, int port) {
+        return TlsProber.isTlsPort(port) && socket.getChannel() != null;
+    }
+    
+    /**
+     * Reads banner from socket based on port/protocol
+     * Probes come from service-signatures.txt; ports without one
+     * (FTP, SSH, POP3...) just wait for the service to talk.
+     * 
+     * @param socket Connected socket
+     * @param port Port number (to determine protocol)
+     * @return The calling thread's reader, holding the banner
+     */
+    private static BannerReader readBanner(Socket socket, int port) throws IOException {
+        socket.setSoTimeout(BANNER_TIMEOUT);
+        BannerReader reader = BannerReader.get();
+        reader.read(socket, SignatureMatcher.get().getProbe(port));
+        return reader;
     }
     
     /**
      * Extracts version information from banner
+     * Tries the signature file first, then falls back to generic patterns.
      * 
      * @param banner Raw banner string
      * @return Cleaned version info
@@ -135,6 +121,11 @@ public class BannerGrabber {
             return "";
         }
         
+        SignatureMatcher.Match match = SignatureMatcher.get().match(banner);
+        if (match != null) {
+            return match.toString();
+        }
+        
         // Common patterns
         if (banner.contains("Server:")) {
             int start = banner.indexOf("Server:") + 7;
@@ -190,7 +181,8 @@ public class BannerGrabber {
             System.out.println("No banner received");
         } else {
             System.out.println("Banner: " + banner);
-            String version = extractVersion(banner);
+            //Parsed from the raw bytes still held by this thread's reader
+            String version = BannerReader.get().extractVersion();
             if (!version.isEmpty()) {
                 System.out.println("Version: " + version);
             }
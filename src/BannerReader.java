@@ -0,0 +1,415 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * BannerReader - Reads banners into a reusable per-thread buffer
+ *
+ * Each thread owns one reader and its fixed byte buffer, so reading a
+ * banner allocates nothing: bytes go straight from the socket into the
+ * buffer, and reading stops as soon as the response is complete instead
+ * of waiting for more lines or the timeout:
+ *
+ *   - HTTP: end of the headers (plus Content-Length bytes of body for GET)
+ *   - "220-" style multi-line replies: the "220 " line
+ *   - Redis bulk replies: the announced length
+ *   - other text greetings (SSH, FTP, POP3...): the first line
+ *   - binary greetings (MySQL, Telnet...): the first read
+ *
+ * The bytes are matched in place, through a Latin-1 CharSequence view, and
+ * Strings are only created for the fields returned. The buffer is reused by
+ * the next read on the same thread, so results must be taken before that.
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class BannerReader {
+
+    //Hard cap on the bytes read from one service
+    public static final int MAX_BANNER_BYTES = 1024;
+
+    private static final ThreadLocal<BannerReader> READERS = ThreadLocal.withInitial(BannerReader::new);
+
+    private static final byte[] HTTP = ascii("HTTP/");
+    private static final byte[] HEAD = ascii("HEAD ");
+    private static final byte[] SERVER = ascii("Server:");
+    private static final byte[] SSH = ascii("SSH-");
+    private static final byte[] CONTENT_LENGTH = ascii("\ncontent-length:");
+    private static final byte[] CRLF_CRLF = ascii("\r\n\r\n");
+    private static final byte[] LF_LF = ascii("\n\n");
+
+    private final byte[] bytes = new byte[MAX_BANNER_BYTES];
+    private final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    private final CharSequence text = new Latin1Text();
+    private boolean headersOnly;
+
+    private BannerReader(){
+        buffer.limit(0);
+    }
+
+    /**
+     * Gets the calling thread's reader
+     *
+     * @return Reader reused by every banner read on this thread
+     */
+
+    public static BannerReader get(){
+        return READERS.get();
+    }
+
+    /**
+     * Sends a probe and reads the response into the buffer
+     * Stops at the protocol terminator, MAX_BANNER_BYTES, end of stream or
+     * the socket timeout, whichever comes first.
+     *
+     * @param socket Connected socket (its SO_TIMEOUT bounds each read)
+     * @param probe Bytes to send first, may be empty
+     * @return Number of bytes read
+     * @throws IOException if the connection fails (not on timeout)
+     */
+
+    public int read(Socket socket, byte[] probe) throws IOException {
+        buffer.clear();
+        headersOnly = startsWith(probe, probe.length, HEAD);
+
+        try {
+            if (probe.length > 0){
+                OutputStream out = socket.getOutputStream();
+                out.write(probe);
+                out.flush();
+            }
+
+            InputStream in = socket.getInputStream();
+            while (buffer.hasRemaining()){
+                int count = in.read(bytes, buffer.position(), buffer.remaining());
+                if (count < 0){
+                    break;
+                }
+                buffer.position(buffer.position() + count);
+                if (isComplete(buffer.position())){
+                    break;
+                }
+            }
+        } catch (SocketTimeoutException e) {
+            //Timeout is normal for services waiting for the client
+        } finally {
+            buffer.flip();
+        }
+        return buffer.limit();
+    }
+
+    /**
+     * Gets the number of bytes of the last banner
+     *
+     * @return Banner length in bytes
+     */
+
+    public int length(){
+        return buffer.limit();
+    }
+
+    /**
+     * Gets the last banner as text, without copying it
+     * Each byte is one char (ISO-8859-1), so binary banners are kept as is.
+     *
+     * @return View over the buffer, valid until the next read on this thread
+     */
+
+    public CharSequence getText(){
+        return text;
+    }
+
+    /**
+     * Formats the last banner for display
+     * Line breaks and tabs become single spaces, other control bytes '.'.
+     *
+     * @return Banner string, empty if nothing was read
+     */
+
+    public String toBannerString(){
+        return field(0, length());
+    }
+
+    /**
+     * Extracts version information from the last banner
+     * Tries the signature file first, then generic patterns over the bytes.
+     *
+     * @return Version info, or empty string
+     */
+
+    public String extractVersion(){
+        int length = length();
+        if (length == 0){
+            return "";
+        }
+
+        SignatureMatcher.Match match = SignatureMatcher.get().match(text);
+        if (match != null){
+            return match.toString();
+        }
+
+        //"Server:" header value
+        int server = indexOf(SERVER, 0, length);
+        if (server >= 0){
+            int start = server + SERVER.length;
+            return field(start, lineEnd(start, length));
+        }
+
+        //SSH identification string up to the first space
+        int ssh = indexOf(SSH, 0, length);
+        if (ssh >= 0){
+            int end = ssh;
+            int max = Math.min(ssh + 50, length);
+            while (end < max && bytes[end] != ' ' && bytes[end] != '\r' && bytes[end] != '\n'){
+                end++;
+            }
+            return field(ssh, end);
+        }
+
+        //First line if short enough
+        int firstLine = lineEnd(0, length);
+        if (firstLine < 80){
+            return field(0, firstLine);
+        }
+        return field(0, 50) + "...";
+    }
+
+    /**
+     * Checks whether the bytes read so far form a complete response
+     *
+     * @param length Bytes read
+     * @return true to stop reading
+     */
+
+    private boolean isComplete(int length){
+        if (startsWith(bytes, length, HTTP)){
+            return isHttpComplete(length);
+        }
+        if (bytes[0] == '$'){
+            return isBulkComplete(length);
+        }
+        if (!isText(bytes[0])){
+            //Binary greetings come in one packet
+            return true;
+        }
+
+        int lineEnd = indexOf((byte) '\n', 0, length);
+        if (lineEnd < 0){
+            return false;
+        }
+        if (length >= 4 && isDigit(bytes[0]) && isDigit(bytes[1]) && isDigit(bytes[2]) && bytes[3] == '-'){
+            return isMultilineComplete(length);
+        }
+        return true;
+    }
+
+    /**
+     * HTTP: the headers, plus the body announced by Content-Length unless the probe was HEAD
+     */
+
+    private boolean isHttpComplete(int length){
+        int headerEnd = indexOf(CRLF_CRLF, 0, length);
+        if (headerEnd >= 0){
+            headerEnd += CRLF_CRLF.length;
+        } else if ((headerEnd = indexOf(LF_LF, 0, length)) >= 0){
+            headerEnd += LF_LF.length;
+        } else {
+            return false;
+        }
+        if (headersOnly){
+            return true;
+        }
+
+        int header = indexOfIgnoreCase(CONTENT_LENGTH, 0, headerEnd);
+        if (header < 0){
+            return true;
+        }
+        long contentLength = parseDigits(header + CONTENT_LENGTH.length, headerEnd);
+        return contentLength < 0 || length >= headerEnd + contentLength;
+    }
+
+    /**
+     * Redis bulk string: "$<length>\r\n" then length bytes and "\r\n"
+     */
+
+    private boolean isBulkComplete(int length){
+        int lineEnd = indexOf((byte) '\n', 0, length);
+        if (lineEnd < 0){
+            return false;
+        }
+        long bulkLength = parseDigits(1, lineEnd);
+        return bulkLength < 0 || length >= lineEnd + 1 + bulkLength + 2;
+    }
+
+    /**
+     * "220-" replies continue until a complete line starting with "220 "
+     */
+
+    private boolean isMultilineComplete(int length){
+        int lineStart = 0;
+        while (lineStart < length){
+            int lineEnd = indexOf((byte) '\n', lineStart, length);
+            if (lineEnd < 0){
+                return false;
+            }
+            if (lineEnd - lineStart >= 4 && bytes[lineStart] == bytes[0] && bytes[lineStart + 1] == bytes[1]
+                    && bytes[lineStart + 2] == bytes[2] && bytes[lineStart + 3] == ' '){
+                return true;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return false;
+    }
+
+    /**
+     * Parses an unsigned decimal number, skipping leading spaces
+     *
+     * @return The number, or -1 if there is none
+     */
+
+    private long parseDigits(int from, int to){
+        while (from < to && bytes[from] == ' '){
+            from++;
+        }
+        long value = -1;
+        while (from < to && isDigit(bytes[from]) && value < Integer.MAX_VALUE){
+            value = Math.max(value, 0) * 10 + (bytes[from++] - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Builds the String of a byte range, trimmed, with whitespace runs collapsed
+     */
+
+    private String field(int from, int to){
+        char[] chars = new char[Math.max(0, to - from)];
+        int count = 0;
+        boolean space = true;
+        for (int i = from; i < to; i++){
+            int b = bytes[i] & 0xff;
+            if (b == ' ' || b == '\r' || b == '\n' || b == '\t'){
+                if (!space){
+                    chars[count++] = ' ';
+                    space = true;
+                }
+                continue;
+            }
+            chars[count++] = b < 0x20 || b == 0x7f ? '.' : (char) b;
+            space = false;
+        }
+        if (count > 0 && chars[count - 1] == ' '){
+            count--;
+        }
+        return new String(chars, 0, count);
+    }
+
+    private int lineEnd(int from, int to){
+        while (from < to && bytes[from] != '\r' && bytes[from] != '\n'){
+            from++;
+        }
+        return from;
+    }
+
+    private int indexOf(byte value, int from, int to){
+        for (int i = from; i < to; i++){
+            if (bytes[i] == value){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(byte[] needle, int from, int to){
+        outer:
+        for (int i = from; i <= to - needle.length; i++){
+            for (int j = 0; j < needle.length; j++){
+                if (bytes[i + j] != needle[j]){
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds a lowercase ASCII needle, ignoring the case of the buffer
+     */
+
+    private int indexOfIgnoreCase(byte[] needle, int from, int to){
+        outer:
+        for (int i = from; i <= to - needle.length; i++){
+            for (int j = 0; j < needle.length; j++){
+                byte b = bytes[i + j];
+                if (b >= 'A' && b <= 'Z'){
+                    b += 'a' - 'A';
+                }
+                if (b != needle[j]){
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] data, int length, byte[] prefix){
+        if (length < prefix.length){
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++){
+            if (data[i] != prefix[i]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isText(byte b){
+        return (b >= 0x20 && b < 0x7f) || b == '\r' || b == '\n' || b == '\t';
+    }
+
+    private static boolean isDigit(byte b){
+        return b >= '0' && b <= '9';
+    }
+
+    private static byte[] ascii(String text){
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * The buffer seen as ISO-8859-1 text, for regex matching without a copy
+     */
+    private class Latin1Text implements CharSequence {
+
+        @Override
+        public int length(){
+            return buffer.limit();
+        }
+
+        @Override
+        public char charAt(int index){
+            if (index < 0 || index >= buffer.limit()){
+                throw new IndexOutOfBoundsException(index);
+            }
+            return (char) (bytes[index] & 0xff);
+        }
+
+        //Only called for matched groups, which become Strings anyway
+        @Override
+        public CharSequence subSequence(int start, int end){
+            return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+        }
+
+        @Override
+        public String toString(){
+            return new String(bytes, 0, buffer.limit(), StandardCharsets.ISO_8859_1);
+        }
+    }
+}
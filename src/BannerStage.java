@@ -0,0 +1,175 @@
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * BannerStage - Second stage of the scan pipeline: banner grabbing
+ *
+ * Connect workers hand every open connection over to this stage and go
+ * back to probing right away, instead of waiting up to 3 seconds for the
+ * service to talk. The stage has its own pool of banner threads and a
+ * bounded number of connections waiting for one:
+ *
+ *   connect workers --(queue, capacity slots)--> banner threads
+ *
+ * When all slots are taken, submit blocks: the connect workers slow down
+ * to the pace banners drain at (backpressure), and the number of sockets
+ * held open stays bounded.
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class BannerStage {
+
+    //Open connections waiting per banner thread, most banner threads by default
+    public static final int QUEUE_PER_THREAD = 4;
+    public static final int MAX_DEFAULT_THREADS = 256;
+
+    private final int threads;
+    private final int capacity;
+    private final ExecutorService executor;
+
+    //Connections queued or being read, at most capacity
+    private final Semaphore slots;
+
+    //Statistics
+    private final LongAdder grabbed = new LongAdder();
+    private final LongAdder stalls = new LongAdder();
+    private final LongAdder stalledNanos = new LongAdder();
+    private final AtomicInteger peak = new AtomicInteger();
+
+    /**
+     * Constructor
+     *
+     * @param threads Banners read at once
+     * @param queueSize Open connections allowed to wait for a banner thread
+     */
+
+    public BannerStage(int threads, int queueSize){
+        if (threads < 1 || queueSize < 0){
+            throw new IllegalArgumentException("Banner stage needs at least one thread");
+        }
+        this.threads = threads;
+        this.capacity = threads + queueSize;
+        this.slots = new Semaphore(capacity);
+        this.executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "banner-grabber");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Gets the banner thread count of a scan
+     *
+     * @param configured Threads asked for (--banner-threads), 0 for the default
+     * @param concurrency Probes the scan runs at once
+     * @return The configured count, or the concurrency (at most 256)
+     */
+
+    public static int threadsFor(int configured, int concurrency){
+        if (configured > 0){
+            return configured;
+        }
+        return Math.max(1, Math.min(concurrency, MAX_DEFAULT_THREADS));
+    }
+
+    /**
+     * Queues an open connection for banner grabbing
+     * Blocks while the stage is full. The socket belongs to the stage from
+     * here on and is closed once its banner is read.
+     *
+     * @param socket Connected socket
+     * @param port Port number (to pick the probe)
+     * @param onBanner Called on a banner thread with the version info ("" if none)
+     * @throws InterruptedException if interrupted while waiting for a slot (the socket is closed)
+     */
+
+    public void submit(Socket socket, int port, Consumer<String> onBanner) throws InterruptedException {
+        try {
+            if (!slots.tryAcquire()){
+                long start = System.nanoTime();
+                slots.acquire();
+                stalls.increment();
+                stalledNanos.add(System.nanoTime() - start);
+            }
+        } catch (InterruptedException e) {
+            closeQuietly(socket);
+            throw e;
+        }
+        peak.accumulateAndGet(capacity - slots.availablePermits(), Math::max);
+
+        executor.execute(() -> {
+            String banner;
+            try {
+                banner = BannerGrabber.grabVersion(socket, port);
+            } finally {
+                closeQuietly(socket);
+                slots.release();
+            }
+            grabbed.increment();
+            onBanner.accept(banner);
+        });
+    }
+
+    /**
+     * Waits for every queued banner, then stops the banner threads
+     *
+     * @param timeout Longest wait
+     * @param unit Unit of timeout
+     * @return true if all banners were read in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+
+    public boolean finish(long timeout, TimeUnit unit) throws InterruptedException {
+        executor.shutdown();
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Gets the number of banner threads
+     *
+     * @return Banners read at once
+     */
+
+    public int getThreads(){
+        return threads;
+    }
+
+    /**
+     * Gets the number of banners read so far
+     *
+     * @return Banners read, empty ones included
+     */
+
+    public long getGrabbed(){
+        return grabbed.sum();
+    }
+
+    /**
+     * Formats the stage statistics for scan summaries
+     *
+     * @return e.g. "42 banners on 25 threads, peak 60/125 held, connect workers waited 3 times, 1.2s in total"
+     */
+
+    @Override
+    public String toString(){
+        return String.format("%d banners on %d threads, peak %d/%d held, connect workers waited %d times, %.1fs in total",
+            grabbed.sum(), threads, peak.get(), capacity, stalls.sum(), stalledNanos.sum() / 1e9);
+    }
+
+    private static void closeQuietly(Socket socket){
+        try {
+            socket.close();
+        } catch (IOException e) {
+            //Nothing left to do with it
+        }
+    }
+}
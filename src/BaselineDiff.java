@@ -0,0 +1,414 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * BaselineDiff - Differential rescan against a previous JSON export
+ *
+ * Nightly rescans of the same hosts mostly find the same ports, so the
+ * interesting output is the difference. The scan runs in two phases:
+ *
+ *   1. verify: only the ports that were open in the baseline are probed,
+ *      and newly closed ports and changed banners are reported right away
+ *   2. sweep: the rest of the range is scanned as usual (verified ports
+ *      are skipped), every open port found there is newly opened
+ *
+ * The baseline is the file written by ExportHelper.exportToJSON. Both
+ * phases probe TCP, so the UDP results of an export are left out.
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class BaselineDiff implements Consumer<ScanResult> {
+
+    private final String file;
+    private final String baselineTime;
+
+    //host -> port -> banner ("" if none) of the ports open in the baseline
+    private final Map<String, Map<Integer, String>> baseline;
+    private final boolean hasBanners;
+
+    //Diff, filled by the verify phase and the sweep
+    private final List<String> verifyDiff = new ArrayList<>();
+    private final List<ScanResult> newlyOpened = Collections.synchronizedList(new ArrayList<>());
+    private int stillOpen;
+
+    private BaselineDiff(String file, String baselineTime, Map<String, Map<Integer, String>> baseline,
+            boolean hasBanners){
+        this.file = file;
+        this.baselineTime = baselineTime;
+        this.baseline = baseline;
+        this.hasBanners = hasBanners;
+    }
+
+    /**
+     * Loads a baseline from a JSON export
+     *
+     * @param file JSON file written by ExportHelper.exportToJSON
+     * @return The baseline
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is not a scan export
+     */
+
+    @SuppressWarnings("unchecked")
+    public static BaselineDiff load(String file) throws IOException {
+        String text = new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8);
+
+        Object root = new JsonReader(text).readDocument();
+        if (!(root instanceof Map) || !(((Map<String, Object>) root).get("results") instanceof List)) {
+            throw new IllegalArgumentException(file + " is not a JSON scan export (no \"results\" list)");
+        }
+        Map<String, Object> export = (Map<String, Object>) root;
+
+        //Exports written before multi-host support have no per-result host
+        String target = null;
+        String time = "unknown date";
+        if (export.get("scan_info") instanceof Map) {
+            Map<String, Object> info = (Map<String, Object>) export.get("scan_info");
+            target = info.get("target") instanceof String ? (String) info.get("target") : null;
+            time = info.get("timestamp") instanceof String ? (String) info.get("timestamp") : time;
+        }
+
+        Map<String, Map<Integer, String>> ports = new TreeMap<>();
+        boolean banners = false;
+
+        for (Object item : (List<Object>) export.get("results")) {
+            if (!(item instanceof Map)) {
+                continue;
+            }
+            Map<String, Object> result = (Map<String, Object>) item;
+            String host = result.get("host") instanceof String ? (String) result.get("host") : target;
+            if (host == null || !(result.get("port") instanceof Number) || "CLOSED".equals(result.get("state"))) {
+                continue;
+            }
+            //A UDP port says nothing about the TCP port of the same number
+            if ("udp".equals(result.get("protocol"))) {
+                continue;
+            }
+
+            String banner = result.get("banner") instanceof String ? (String) result.get("banner") : "";
+            banners |= !banner.isEmpty();
+            ports.computeIfAbsent(host, h -> new TreeMap<>())
+                .put(((Number) result.get("port")).intValue(), banner);
+        }
+
+        return new BaselineDiff(file, time, ports, banners);
+    }
+
+    /**
+     * Verify phase: probes the ports open in the baseline and prints the
+     * newly closed ports and changed banners
+     *
+     * @param targets Hosts of the new scan (baseline hosts outside it are ignored)
+     * @param scanPorts Ports of the new scan (baseline ports outside it are ignored)
+     * @param threadCount Probes run at once
+     * @param grabBanners Whether banners are grabbed (always on if the baseline has banners)
+     * @return States of the verified ports, to be skipped by the sweep
+     */
+
+    public Map<String, PortStateStore> verify(TargetSpec targets, int[] scanPorts,
+            int threadCount, boolean grabBanners){
+        boolean compareBanners = grabBanners || hasBanners;
+        long start = System.currentTimeMillis();
+
+        BitSet inScan = new BitSet(65536);
+        for (int port : scanPorts) {
+            inScan.set(port);
+        }
+
+        //Known-open ports that are part of this scan
+        List<String> hosts = new ArrayList<>();
+        List<Integer> ports = new ArrayList<>();
+        for (Map.Entry<String, Map<Integer, String>> entry : baseline.entrySet()) {
+            if (!targets.contains(entry.getKey())) {
+                continue;
+            }
+            for (int port : entry.getValue().keySet()) {
+                if (inScan.get(port)) {
+                    hosts.add(entry.getKey());
+                    ports.add(port);
+                }
+            }
+        }
+
+        System.out.println("Baseline: " + file + " (" + baselineTime + ")");
+        System.out.println(" Verifying " + ports.size() + " known-open ports...");
+
+        Map<String, PortStateStore> verified = new LinkedHashMap<>();
+        if (ports.isEmpty()) {
+            System.out.println();
+            return verified;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threadCount, ports.size())));
+        List<Future<ScanResult>> probes = new ArrayList<>();
+        for (int i = 0; i < ports.size(); i++) {
+            String host = hosts.get(i);
+            int port = ports.get(i);
+            probes.add(executor.submit(() -> PortChecker.checkPort(host, port, compareBanners)));
+        }
+        executor.shutdown();
+
+        for (int i = 0; i < probes.size(); i++) {
+            String host = hosts.get(i);
+            int port = ports.get(i);
+            ScanResult result;
+            try {
+                result = probes.get(i).get();
+            } catch (Exception e) {
+                //Treat a failed probe as unanswered
+                result = new ScanResult(host, port, false, 0, "", true);
+            }
+
+            PortStateStore store = verified.computeIfAbsent(host, PortStateStore::new);
+            store.record(result);
+
+            String oldBanner = baseline.get(host).get(port);
+            if (!result.isOpen()) {
+                verifyDiff.add(String.format("  - %s:%-6d OPEN -> %s", host, port, result.getState()));
+            } else if (compareBanners && !oldBanner.equals(result.getBanner())) {
+                stillOpen++;
+                verifyDiff.add(String.format("  ~ %s:%-6d banner \"%s\" -> \"%s\"",
+                    host, port, oldBanner, result.getBanner()));
+            } else {
+                stillOpen++;
+            }
+        }
+
+        System.out.printf(" Verify phase done in %.2f seconds: %d still open, %d closed, %d banner changes%n",
+            (System.currentTimeMillis() - start) / 1000.0, stillOpen, ports.size() - stillOpen,
+            verifyDiff.size() - (ports.size() - stillOpen));
+        for (String line : verifyDiff) {
+            System.out.println(line);
+        }
+        System.out.println();
+
+        return verified;
+    }
+
+    /**
+     * Records an open port found by the sweep (scanner listener)
+     * Verified ports are skipped by the sweep, so every one is new
+     *
+     * @param result Open-port result
+     */
+
+    @Override
+    public void accept(ScanResult result) {
+        Map<Integer, String> known = baseline.get(result.getHost());
+        if (result.isOpen() && (known == null || !known.containsKey(result.getPort()))) {
+            newlyOpened.add(result);
+        }
+    }
+
+    /**
+     * Prints the complete diff once the sweep is done
+     */
+
+    public void printDiff() {
+        List<ScanResult> opened;
+        synchronized (newlyOpened) {
+            opened = new ArrayList<>(newlyOpened);
+        }
+        opened.sort((a, b) -> a.getHost().equals(b.getHost())
+            ? Integer.compare(a.getPort(), b.getPort()) : a.getHost().compareTo(b.getHost()));
+
+        System.out.println("════════════════════════════════════════");
+        System.out.println("           BASELINE DIFF");
+        System.out.println("════════════════════════════════════════");
+        System.out.println(" Baseline: " + file + " (" + baselineTime + ")");
+
+        if (opened.isEmpty() && verifyDiff.isEmpty()) {
+            System.out.println("\n No changes since the baseline");
+        }
+        for (ScanResult result : opened) {
+            System.out.printf("  + %s:%-6d OPEN (%s)%n", result.getHost(), result.getPort(), result.getService());
+        }
+        for (String line : verifyDiff) {
+            System.out.println(line);
+        }
+        System.out.println("════════════════════════════════════════\n");
+    }
+
+    /**
+     * Minimal JSON parser for scan exports (objects, arrays, strings,
+     * numbers, booleans and null)
+     */
+    private static class JsonReader {
+        private final String text;
+        private int pos;
+
+        JsonReader(String text){
+            this.text = text;
+        }
+
+        Object readDocument(){
+            Object value = readValue();
+            skipWhitespace();
+            if (pos < text.length()) {
+                throw error("Unexpected content after JSON document");
+            }
+            return value;
+        }
+
+        private Object readValue(){
+            skipWhitespace();
+            if (pos >= text.length()) {
+                throw error("Unexpected end of JSON");
+            }
+
+            char c = text.charAt(pos);
+            if (c == '{') {
+                return readObject();
+            }
+            if (c == '[') {
+                return readArray();
+            }
+            if (c == '"') {
+                return readString();
+            }
+            if (text.startsWith("true", pos)) {
+                pos += 4;
+                return Boolean.TRUE;
+            }
+            if (text.startsWith("false", pos)) {
+                pos += 5;
+                return Boolean.FALSE;
+            }
+            if (text.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            }
+            return readNumber();
+        }
+
+        private Map<String, Object> readObject(){
+            Map<String, Object> object = new LinkedHashMap<>();
+            pos++;
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return object;
+            }
+            while (true) {
+                skipWhitespace();
+                String key = readString();
+                skipWhitespace();
+                expect(':');
+                object.put(key, readValue());
+                skipWhitespace();
+                if (peek() == ',') {
+                    pos++;
+                } else {
+                    expect('}');
+                    return object;
+                }
+            }
+        }
+
+        private List<Object> readArray(){
+            List<Object> array = new ArrayList<>();
+            pos++;
+            skipWhitespace();
+            if (peek() == ']') {
+                pos++;
+                return array;
+            }
+            while (true) {
+                array.add(readValue());
+                skipWhitespace();
+                if (peek() == ',') {
+                    pos++;
+                } else {
+                    expect(']');
+                    return array;
+                }
+            }
+        }
+
+        private String readString(){
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (pos < text.length()) {
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (pos >= text.length()) {
+                    break;
+                }
+                char escaped = text.charAt(pos++);
+                switch (escaped) {
+                    case 'n': value.append('\n'); break;
+                    case 'r': value.append('\r'); break;
+                    case 't': value.append('\t'); break;
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw error("Invalid unicode escape");
+                        }
+                        value.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default: value.append(escaped);
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        private Number readNumber(){
+            int start = pos;
+            while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+                pos++;
+            }
+            String number = text.substring(start, pos);
+            try {
+                if (number.matches("-?\\d+")) {
+                    return Long.parseLong(number);
+                }
+                return Double.parseDouble(number);
+            } catch (NumberFormatException e) {
+                throw error("Invalid value");
+            }
+        }
+
+        private void skipWhitespace(){
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private char peek(){
+            return pos < text.length() ? text.charAt(pos) : '\0';
+        }
+
+        private void expect(char c){
+            if (peek() != c) {
+                throw error("Expected '" + c + "'");
+            }
+            pos++;
+        }
+
+        private IllegalArgumentException error(String message){
+            return new IllegalArgumentException(message + " at offset " + pos);
+        }
+    }
+}
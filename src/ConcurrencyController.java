@@ -0,0 +1,159 @@
+/**
+ * ConcurrencyController - Adaptive limit on probes in flight (AIMD)
+ *
+ * Works like TCP congestion control. Each window of completed probes
+ * (one window = the current limit) is checked for losses, i.e. timeouts
+ * and errors:
+ *
+ *   - no spike: the limit grows, doubling per window until the first cut
+ *     (slow start), then by a fixed step (additive increase)
+ *   - spike: the limit is halved (multiplicative decrease)
+ *
+ * A spike is a loss rate clearly above the usual rate of the target, so a
+ * host with many filtered ports is not mistaken for a congested one.
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class ConcurrencyController {
+
+    //Additive increase per window once out of slow start
+    private static final int ADDITIVE_STEP = 8;
+
+    //Loss rate above the baseline that counts as a spike
+    private static final double SPIKE_THRESHOLD = 0.10;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    //Current state
+    private double limit;
+    private int inFlight;
+    private boolean slowStart = true;
+
+    //Current window
+    private int windowCompleted;
+    private int windowLosses;
+    private double baselineLossRate = -1;
+
+    //Statistics for the summary
+    private int peakLimit;
+    private int decreases;
+
+    /**
+     * Constructor
+     *
+     * @param initialLimit Starting number of probes in flight
+     * @param minLimit Lower bound for the limit
+     * @param maxLimit Upper bound for the limit
+     */
+
+    public ConcurrencyController(int initialLimit, int minLimit, int maxLimit){
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+        this.peakLimit = (int) limit;
+    }
+
+    /**
+     * Waits until a probe may start
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+
+    public synchronized void acquire() throws InterruptedException {
+        while (inFlight >= (int) limit){
+            wait();
+        }
+        inFlight++;
+    }
+
+    /**
+     * Reports a finished probe and adjusts the limit at the end of a window
+     *
+     * @param lost true if the probe timed out or failed
+     */
+
+    public synchronized void release(boolean lost){
+        inFlight--;
+        windowCompleted++;
+        if (lost){
+            windowLosses++;
+        }
+
+        if (windowCompleted >= (int) limit){
+            adjust();
+        }
+
+        notifyAll();
+    }
+
+    /**
+     * Applies additive increase or multiplicative decrease for the finished window
+     */
+
+    private void adjust(){
+        double lossRate = (double) windowLosses / windowCompleted;
+
+        if (baselineLossRate < 0){
+            baselineLossRate = lossRate;
+        }
+
+        if (lossRate > baselineLossRate + SPIKE_THRESHOLD){
+            //Multiplicative decrease
+            limit = Math.max(minLimit, limit / 2);
+            slowStart = false;
+            decreases++;
+        } else {
+            //Additive increase (doubling during slow start)
+            limit = Math.min(maxLimit, slowStart ? limit * 2 : limit + ADDITIVE_STEP);
+            baselineLossRate = 0.9 * baselineLossRate + 0.1 * lossRate;
+        }
+
+        peakLimit = Math.max(peakLimit, (int) limit);
+        windowCompleted = 0;
+        windowLosses = 0;
+    }
+
+    /**
+     * Gets the current limit on probes in flight
+     *
+     * @return Current limit
+     */
+
+    public synchronized int getLimit(){
+        return (int) limit;
+    }
+
+    /**
+     * Gets the highest limit reached during the scan
+     *
+     * @return Peak limit
+     */
+
+    public synchronized int getPeakLimit(){
+        return peakLimit;
+    }
+
+    /**
+     * Gets how many times the limit was cut
+     *
+     * @return Number of multiplicative decreases
+     */
+
+    public synchronized int getDecreases(){
+        return decreases;
+    }
+
+    /**
+     * Formats the controller state for scan summaries
+     *
+     * @return e.g. "settled at 184 in flight (peak 256, 2 cuts)"
+     */
+
+    @Override
+    public synchronized String toString(){
+        return String.format("settled at %d in flight (peak %d, %d cuts)", (int) limit, peakLimit, decreases);
+    }
+}
@@ -0,0 +1,220 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ConsoleRenderer - Draws scan output from its own thread
+ *
+ * Workers never touch the console: they bump a LongAdder progress counter
+ * and queue result lines. The renderer thread wakes up at a fixed refresh
+ * rate, samples the counter, and writes the queued lines plus one redrawn
+ * progress bar (with live ports/sec and ETA) in a single buffered write.
+ *
+ * The rate is an exponentially weighted moving average of the per-refresh
+ * rate, so the ETA follows the scan without jumping around. The average
+ * only decays towards 0 when progress stops, so below a floor rate, or
+ * after 5 seconds without progress, no ETA is shown at all.
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class ConsoleRenderer {
+
+    //Redraw interval
+    private static final long REFRESH_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    //Weight of the newest sample in the rate average
+    private static final double RATE_ALPHA = 0.2;
+
+    //No ETA below this rate (ports/s) or after this many refreshes without progress
+    private static final double MIN_ETA_RATE = 0.01;
+    private static final int STALL_REFRESHES = 50;
+
+    //ANSI codes
+    private static final String GREEN = "\u001B[32m";
+    private static final String BLUE = "\u001B[34m";
+    private static final String RESET = "\u001B[0m";
+    private static final String CLEAR_LINE = "\r\u001B[K";
+
+    private static final int BAR_LENGTH = 40;
+
+    private final long total;
+    private final LongAdder progress = new LongAdder();
+    private final ConcurrentLinkedQueue<String> lines = new ConcurrentLinkedQueue<>();
+    private final StringBuilder frame = new StringBuilder(1024);
+
+    private Thread thread;
+    private volatile boolean running;
+
+    //Rate sampling, renderer thread only
+    private long lastCount;
+    private long lastSampleNanos;
+    private double rate = -1;
+    private int refreshesWithoutProgress;
+
+    /**
+     * Constructor
+     *
+     * @param total Number of probes the scan will run
+     */
+
+    public ConsoleRenderer(long total){
+        this.total = Math.max(1, total);
+    }
+
+    /**
+     * Starts the renderer thread
+     */
+
+    public void start(){
+        running = true;
+        lastSampleNanos = System.nanoTime();
+        thread = new Thread(this::run, "console-renderer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Counts one finished probe (any thread, never blocks)
+     */
+
+    public void increment(){
+        progress.increment();
+    }
+
+    /**
+     * Queues a line to print above the progress bar (any thread, never blocks)
+     *
+     * @param line Text without line terminator
+     */
+
+    public void println(String line){
+        lines.add(line);
+    }
+
+    /**
+     * Stops the renderer after drawing the final state
+     */
+
+    public void stop(){
+        running = false;
+        if (thread == null){
+            return;
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the number of probes counted so far
+     *
+     * @return Finished probes
+     */
+
+    public long getProgress(){
+        return progress.sum();
+    }
+
+    /**
+     * Renderer loop
+     */
+
+    private void run(){
+        long next = System.nanoTime();
+        while (running){
+            next += REFRESH_NANOS;
+            render();
+
+            long wait = next - System.nanoTime();
+            if (wait > 0){
+                LockSupport.parkNanos(this, wait);
+            } else {
+                next = System.nanoTime();
+            }
+        }
+        //Last frame with the final counts
+        render();
+    }
+
+    /**
+     * Writes queued lines and the progress bar in one write
+     */
+
+    private void render(){
+        long current = Math.min(progress.sum(), total);
+        updateRate(current);
+
+        frame.setLength(0);
+        frame.append(CLEAR_LINE);
+
+        String line;
+        while ((line = lines.poll()) != null){
+            frame.append(line).append('\n');
+        }
+
+        appendBar(frame, current);
+
+        System.out.print(frame);
+        System.out.flush();
+    }
+
+    private void updateRate(long current){
+        long now = System.nanoTime();
+        long elapsed = now - lastSampleNanos;
+        if (elapsed <= 0){
+            return;
+        }
+
+        refreshesWithoutProgress = current == lastCount ? refreshesWithoutProgress + 1 : 0;
+
+        double sample = (current - lastCount) * 1e9 / elapsed;
+        rate = rate < 0 ? sample : RATE_ALPHA * sample + (1 - RATE_ALPHA) * rate;
+
+        lastCount = current;
+        lastSampleNanos = now;
+    }
+
+    private void appendBar(StringBuilder out, long current){
+        long percentage = (current * 100) / total;
+        long filled = (BAR_LENGTH * current) / total;
+
+        out.append("Progress: [").append(GREEN);
+        for (int i = 0; i < BAR_LENGTH; i++){
+            if (i == filled){
+                out.append(RESET);
+            }
+            out.append(i < filled ? "█" : "░");
+        }
+        if (filled >= BAR_LENGTH){
+            out.append(RESET);
+        }
+
+        out.append("]").append(BLUE).append(percentage).append("%").append(RESET)
+            .append(" (").append(current).append("/").append(total).append(")")
+            .append(String.format(" %.0f ports/s", Math.max(0, rate)));
+
+        if (current < total){
+            out.append(" ETA ").append(formatEta(total - current));
+        }
+    }
+
+    private String formatEta(long remaining){
+        if (refreshesWithoutProgress >= STALL_REFRESHES){
+            return "--:-- (stalled)";
+        }
+        if (rate < MIN_ETA_RATE){
+            return "--:--";
+        }
+        long seconds = (long) Math.ceil(remaining / rate);
+        if (seconds >= 3600){
+            return String.format("%d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+        }
+        return String.format("%d:%02d", seconds / 60, seconds % 60);
+    }
+}
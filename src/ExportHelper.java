@@ -1,5 +1,9 @@
+import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -18,6 +22,9 @@ public class ExportHelper {
     
     private static final DateTimeFormatter dateFormat = 
         DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    //CSV columns of both exports (Hostname last, filled with -R only)
+    public static final String CSV_HEADER = "Target,Port,State,Service,Time(ms),Banner,Hostname\n";
     
     /**
      * Exports scan results to CSV format
@@ -32,26 +39,25 @@ public class ExportHelper {
                                        String filename, double scanTime) {
         try {
             String outputFile = filename.endsWith(".csv") ? filename : filename + ".csv";
-            FileWriter writer = new FileWriter(outputFile);
+            BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile, StandardCharsets.UTF_8));
             
             // Write header
-            writer.write("Target,Port,State,Service,Time(ms),Banner\n");
+            writer.write(CSV_HEADER);
             
-            // Write data rows
-            for (ScanResult result : results) {
-                if (result.isOpen()) {
-                    String banner = result.getBanner() != null ? 
-                        "\"" + result.getBanner().replace("\"", "\"\"") + "\"" : "";
-                    
-                    writer.write(String.format(
-                        "%s,%d,OPEN,%s,%d,%s\n",
-                        targetHost,
-                        result.getPort(),
-                        ServiceIdentifier.identifyService(result.getPort()),
-                        result.getResponseTime(),
-                        banner
-                    ));
-                }
+            // Write data rows, grouped by host
+            for (ScanResult result : sortedOpen(results)) {
+                String banner = result.getBanner() != null ? 
+                    "\"" + result.getBanner().replace("\"", "\"\"") + "\"" : "";
+                
+                writer.write(String.format(
+                    "%s,%d,OPEN,%s,%d,%s,%s\n",
+                    hostOf(result, targetHost),
+                    result.getPort(),
+                    result.getService(),
+                    result.getResponseTime(),
+                    banner,
+                    result.getHostname() != null ? result.getHostname() : ""
+                ));
             }
             
             writer.write("\n# Scan Summary\n");
@@ -87,7 +93,7 @@ public class ExportHelper {
                                         String filename, double scanTime) {
         try {
             String outputFile = filename.endsWith(".json") ? filename : filename + ".json";
-            FileWriter writer = new FileWriter(outputFile);
+            BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile, StandardCharsets.UTF_8));
             
             // Write JSON structure
             writer.write("{\n");
@@ -102,29 +108,27 @@ public class ExportHelper {
             
             writer.write("  \"results\": [\n");
             
-            List<ScanResult> openPorts = new java.util.ArrayList<>();
-            for (ScanResult result : results) {
-                if (result.isOpen()) {
-                    openPorts.add(result);
-                }
-            }
+            List<ScanResult> openPorts = sortedOpen(results);
             
             for (int i = 0; i < openPorts.size(); i++) {
                 ScanResult result = openPorts.get(i);
                 writer.write("    {\n");
+                writer.write(String.format("      \"host\": \"%s\",\n", hostOf(result, targetHost)));
+                if (result.getHostname() != null) {
+                    writer.write(String.format("      \"hostname\": \"%s\",\n", escapeJson(result.getHostname())));
+                }
                 writer.write(String.format("      \"port\": %d,\n", result.getPort()));
+                if (result.isUdp()) {
+                    writer.write("      \"protocol\": \"udp\",\n");
+                }
                 writer.write(String.format("      \"state\": \"OPEN\",\n"));
                 writer.write(String.format("      \"service\": \"%s\",\n", 
-                    ServiceIdentifier.identifyService(result.getPort())));
+                    result.getService()));
                 writer.write(String.format("      \"response_time_ms\": %d",
                     result.getResponseTime()));
                 
                 if (result.getBanner() != null && !result.getBanner().isEmpty()) {
-                    String banner = result.getBanner()
-                        .replace("\\", "\\\\")
-                        .replace("\"", "\\\"")
-                        .replace("\n", "\\n")
-                        .replace("\r", "\\r");
+                    String banner = escapeJson(result.getBanner());
                     writer.write(String.format(",\n      \"banner\": \"%s\"", banner));
                 }
                 
@@ -149,6 +153,69 @@ public class ExportHelper {
         }
     }
     
+    /**
+     * Escapes a string for use inside a JSON string literal
+     * Banners are raw bytes (binary greetings included), so every control
+     * character is escaped, not only line breaks
+     * 
+     * @param value Raw string (null is treated as empty)
+     * @return Escaped string, without surrounding quotes
+     */
+    public static String escapeJson(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder escaped = new StringBuilder(value.length() + 16);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': escaped.append("\\\\"); break;
+                case '"': escaped.append("\\\""); break;
+                case '\n': escaped.append("\\n"); break;
+                case '\r': escaped.append("\\r"); break;
+                case '\t': escaped.append("\\t"); break;
+                case '\b': escaped.append("\\b"); break;
+                case '\f': escaped.append("\\f"); break;
+                default:
+                    if (c < 0x20) {
+                        escaped.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Gets the open ports sorted by host, then port
+     * 
+     * @param results List of scan results
+     * @return New list of open results, grouped by host
+     */
+    private static List<ScanResult> sortedOpen(List<ScanResult> results) {
+        List<ScanResult> openPorts = new ArrayList<>();
+        for (ScanResult result : results) {
+            if (result.isOpen()) {
+                openPorts.add(result);
+            }
+        }
+        openPorts.sort(Comparator.comparing((ScanResult r) -> r.getHost() != null ? r.getHost() : "")
+            .thenComparingInt(ScanResult::getPort));
+        return openPorts;
+    }
+
+    /**
+     * Gets the host a result belongs to
+     * 
+     * @param result Scan result
+     * @param targetHost Target given for the scan, used if the result has no host
+     * @return Host of the result
+     */
+    private static String hostOf(ScanResult result, String targetHost) {
+        return result.getHost() != null ? result.getHost() : targetHost;
+    }
+
     /**
      * Helper method to count open ports
      * 
@@ -173,6 +240,7 @@ public class ExportHelper {
      */
     public static boolean export(List<ScanResult> results, String targetHost, 
                                   String filename, String format, double scanTime) {
+        long start = System.nanoTime();
         boolean success = true;
         
         if (format.equalsIgnoreCase("csv")) {
@@ -188,6 +256,7 @@ public class ExportHelper {
             success = false;
         }
         
+        ScanMetrics.get().recordExport(System.nanoTime() - start);
         return success;
     }
 }
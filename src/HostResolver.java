@@ -0,0 +1,225 @@
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * HostResolver - Cached forward and reverse DNS for the scanners
+ *
+ * Every target name is resolved once and the address is reused by all of
+ * its probes, instead of going through the blocking resolver on every
+ * connect. Failures are cached too (negative caching), so an unknown host
+ * costs one lookup rather than one per port.
+ *
+ *   - concurrent lookups of the same name share a single query
+ *   - resolveAll resolves a list of names in parallel before the scan
+ *   - reverseLookupAll does the PTR lookups of many addresses in parallel
+ *
+ * IP literals never reach the resolver and are not cached.
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class HostResolver {
+
+    //How long answers are reused
+    private static final long POSITIVE_TTL_NANOS = 300_000_000_000L; //5 minutes
+    private static final long NEGATIVE_TTL_NANOS = 30_000_000_000L;  //30 seconds
+
+    //Most lookups run at once by resolveAll/reverseLookupAll
+    private static final int MAX_PARALLEL_LOOKUPS = 64;
+
+    /**
+     * One cached lookup, shared by everyone asking while it runs
+     * The value is null when the lookup failed.
+     */
+    private static class Lookup<T> {
+        final CompletableFuture<T> value = new CompletableFuture<>();
+        volatile long expiresAt = Long.MAX_VALUE;
+
+        boolean isExpired(long now){
+            return value.isDone() && now - expiresAt > 0;
+        }
+    }
+
+    private static final ConcurrentMap<String, Lookup<InetAddress>> addresses = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Lookup<String>> names = new ConcurrentHashMap<>();
+
+    /**
+     * Resolves a host, from the cache when possible
+     *
+     * @param host Hostname or IP address
+     * @return The address
+     * @throws UnknownHostException if the name does not resolve (now or in the last 30s)
+     */
+
+    public static InetAddress resolve(String host) throws UnknownHostException {
+        if (isLiteral(host)){
+            return InetAddress.getByName(host);
+        }
+
+        InetAddress address = cached(addresses, host, HostResolver::lookupAddress);
+        if (address == null){
+            throw new UnknownHostException(host);
+        }
+        return address;
+    }
+
+    /**
+     * Resolves many hosts in parallel, filling the cache before a scan
+     *
+     * @param hosts Hostnames to resolve
+     * @param parallelism Most lookups at once
+     * @return The hosts that did not resolve
+     */
+
+    public static List<String> resolveAll(Collection<String> hosts, int parallelism){
+        //The lookup returns the host only when it failed
+        return new ArrayList<>(runAll(hosts, parallelism, host -> {
+            try {
+                resolve(host);
+                return null;
+            } catch (UnknownHostException e) {
+                return host;
+            }
+        }).keySet());
+    }
+
+    /**
+     * Gets the PTR name of a host, from the cache when possible
+     *
+     * @param host Hostname or IP address
+     * @return Canonical name, or null if the address has no PTR record
+     */
+
+    public static String reverseLookup(String host){
+        return cached(names, host, HostResolver::lookupName);
+    }
+
+    /**
+     * Gets the PTR names of many hosts in parallel
+     *
+     * @param hosts Hostnames or IP addresses
+     * @param parallelism Most lookups at once
+     * @return Map from host to name, sorted, hosts without PTR record left out
+     */
+
+    public static Map<String, String> reverseLookupAll(Collection<String> hosts, int parallelism){
+        return runAll(hosts, parallelism, HostResolver::reverseLookup);
+    }
+
+    /**
+     * Empties both caches
+     */
+
+    public static void clear(){
+        addresses.clear();
+        names.clear();
+    }
+
+    /**
+     * Gets a cached value, running the lookup if it is missing or expired
+     */
+
+    private static <T> T cached(ConcurrentMap<String, Lookup<T>> cache, String key, Function<String, T> lookup){
+        while (true){
+            Lookup<T> entry = cache.get(key);
+            if (entry != null && !entry.isExpired(System.nanoTime())){
+                return entry.value.join();
+            }
+
+            //First caller runs the lookup, the others wait for its result
+            Lookup<T> fresh = new Lookup<>();
+            boolean owner = entry == null ? cache.putIfAbsent(key, fresh) == null : cache.replace(key, entry, fresh);
+            if (!owner){
+                continue;
+            }
+
+            T value = null;
+            try {
+                value = lookup.apply(key);
+            } finally {
+                fresh.expiresAt = System.nanoTime() + (value != null ? POSITIVE_TTL_NANOS : NEGATIVE_TTL_NANOS);
+                fresh.value.complete(value);
+            }
+            return value;
+        }
+    }
+
+    private static InetAddress lookupAddress(String host){
+        try {
+            return InetAddress.getByName(host);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    private static String lookupName(String host){
+        try {
+            InetAddress address = resolve(host);
+            String name = address.getCanonicalHostName();
+            //Without a PTR record the address itself comes back
+            return name.equals(address.getHostAddress()) ? null : name;
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Runs a lookup over many hosts on a small pool
+     *
+     * @return Map from host to non-null result, sorted by host
+     */
+
+    private static Map<String, String> runAll(Collection<String> hosts, int parallelism,
+            Function<String, String> lookup){
+        Map<String, String> results = new TreeMap<>();
+        if (hosts.isEmpty()){
+            return results;
+        }
+
+        int threads = Math.max(1, Math.min(Math.min(parallelism, MAX_PARALLEL_LOOKUPS), hosts.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "dns-lookup");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            Map<String, Future<String>> pending = new TreeMap<>();
+            for (String host : hosts){
+                if (!pending.containsKey(host)){
+                    pending.put(host, executor.submit(() -> lookup.apply(host)));
+                }
+            }
+            for (Map.Entry<String, Future<String>> entry : pending.entrySet()){
+                try {
+                    String value = entry.getValue().get();
+                    if (value != null){
+                        results.put(entry.getKey(), value);
+                    }
+                } catch (Exception e) {
+                    //Treat a failed lookup as no answer
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    private static boolean isLiteral(String host){
+        return host.indexOf(':') >= 0 || host.matches("[0-9.]+");
+    }
+}
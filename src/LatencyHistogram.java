@@ -0,0 +1,163 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram - Lock-free histogram of durations in nanoseconds
+ *
+ * Values go into log-linear buckets, the way HdrHistogram lays them out:
+ * every power of two is split into SUB_BUCKETS equal buckets, so a value
+ * is known to within 1/SUB_BUCKETS (about 3%) whatever its magnitude,
+ * from 1ns to hours, in a fixed array of 1920 counters.
+ *
+ *   value < 32           -> bucket = value (exact)
+ *   2^e <= value < 2^e+1 -> bucket = (e - 4) * 32 + next 5 bits after the leading one
+ *
+ * Recording is one atomic increment, so any number of threads can record
+ * without locks. Percentiles are computed from a pass over the counters.
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class LatencyHistogram {
+
+    //Buckets per power of two (precision 1/32)
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration
+     *
+     * @param nanos Duration in nanoseconds (negative values count as 0)
+     */
+
+    public void record(long nanos){
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        //Only contended while the maximum is still climbing
+        if (value > max.get()){
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * Gets the number of recorded values
+     *
+     * @return Total count
+     */
+
+    public long getCount(){
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++){
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Gets the largest recorded value
+     *
+     * @return Maximum in nanoseconds, 0 if empty
+     */
+
+    public long getMax(){
+        return max.get();
+    }
+
+    /**
+     * Gets the value below which a percentage of the recorded values fall
+     *
+     * @param percentile Percentile (0-100], e.g. 99 or 99.9
+     * @return Upper bound of the bucket holding that percentile in nanoseconds
+     *         (never above the maximum), 0 if empty
+     */
+
+    public long getValueAtPercentile(double percentile){
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++){
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0){
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++){
+            seen += snapshot[i];
+            if (seen >= rank){
+                return Math.min(highestValueOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Clears every counter
+     * Values recorded while resetting may be kept or dropped.
+     */
+
+    public void reset(){
+        for (int i = 0; i < BUCKETS; i++){
+            counts.set(i, 0);
+        }
+        max.set(0);
+    }
+
+    /**
+     * Formats the percentiles for scan summaries
+     *
+     * @return e.g. "p50 0.21ms, p90 0.48ms, p99 2.10ms, max 12ms (5000 samples)"
+     */
+
+    @Override
+    public String toString(){
+        return "p50 " + formatNanos(getValueAtPercentile(50))
+            + ", p90 " + formatNanos(getValueAtPercentile(90))
+            + ", p99 " + formatNanos(getValueAtPercentile(99))
+            + ", max " + formatNanos(getMax())
+            + " (" + getCount() + " samples)";
+    }
+
+    /**
+     * Formats a duration in milliseconds, with decimals below 10ms
+     *
+     * @param nanos Duration in nanoseconds
+     * @return e.g. "0.04ms", "3.25ms", "2001ms"
+     */
+
+    public static String formatNanos(long nanos){
+        double millis = nanos / 1e6;
+        return millis < 10 ? String.format("%.2fms", millis) : String.format("%.0fms", millis);
+    }
+
+    private static int bucketOf(long value){
+        if (value < SUB_BUCKETS){
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Largest value that falls into a bucket
+     */
+
+    private static long highestValueOf(int bucket){
+        int block = bucket / SUB_BUCKETS;
+        int sub = bucket % SUB_BUCKETS;
+        if (block == 0){
+            return sub;
+        }
+        int shift = block - 1;
+        long lowest = (long) (SUB_BUCKETS + sub) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,263 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * LoopbackServices - Local stand-in targets for benchmarks
+ *
+ * Lays out a contiguous block of ports on 127.0.0.1 where every port has
+ * a known behaviour:
+ *   - open        a listener that accepts and closes each connection
+ *   - blackholed  a listener whose accept queue is kept full, so new
+ *                 connects are dropped and wait for the full timeout
+ *   - refused     nothing listens, the kernel answers with RST
+ *
+ * Open and blackholed ports are spread evenly over the block, so every
+ * slice of the range sees the same mix. The layout only depends on the
+ * counts, which keeps benchmark runs comparable.
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class LoopbackServices implements Closeable {
+
+    public static final String HOST = "127.0.0.1";
+
+    //Port state in the layout
+    public static final int OPEN = 1;
+    public static final int REFUSED = 2;
+    public static final int BLACKHOLED = 3;
+
+    //Connections parked in each blackholed accept queue (backlog 1 holds 2)
+    private static final int BLACKHOLE_FILL = 3;
+
+    //Where to start looking for a free block
+    private static final int SEARCH_FROM = 20000;
+    private static final int SEARCH_TO = 60000;
+
+    private final int firstPort;
+    private final int[] layout;
+    private final List<Closeable> resources = new ArrayList<>();
+    private final Selector acceptor;
+    private final Thread acceptThread;
+
+    private LoopbackServices(int firstPort, int[] layout) throws IOException {
+        this.firstPort = firstPort;
+        this.layout = layout;
+        this.acceptor = Selector.open();
+
+        try {
+            for (int i = 0; i < layout.length; i++){
+                if (layout[i] == OPEN){
+                    openListener(firstPort + i);
+                } else if (layout[i] == BLACKHOLED){
+                    openBlackhole(firstPort + i);
+                }
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+
+        acceptThread = new Thread(this::acceptLoop, "loopback-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * Starts the stand-in services on a free block of ports
+     *
+     * @param portCount Size of the block
+     * @param openCount Ports with an accepting listener
+     * @param blackholedCount Ports that never answer
+     * @return The running services
+     * @throws IOException if no free block is found or a listener cannot start
+     */
+
+    public static LoopbackServices start(int portCount, int openCount, int blackholedCount) throws IOException {
+        if (openCount + blackholedCount > portCount){
+            throw new IllegalArgumentException("More open and blackholed ports than ports in the block");
+        }
+
+        int[] layout = buildLayout(portCount, openCount, blackholedCount);
+
+        for (int first = SEARCH_FROM; first + portCount <= SEARCH_TO; first += portCount){
+            if (isFree(first, portCount)){
+                return new LoopbackServices(first, layout);
+            }
+        }
+        throw new IOException("No free block of " + portCount + " ports on " + HOST);
+    }
+
+    /**
+     * Spreads open and blackholed ports evenly, everything else refuses
+     */
+
+    private static int[] buildLayout(int portCount, int openCount, int blackholedCount){
+        int[] layout = new int[portCount];
+        for (int i = 0; i < portCount; i++){
+            layout[i] = REFUSED;
+        }
+        spread(layout, openCount, OPEN, 0);
+        spread(layout, blackholedCount, BLACKHOLED, 1);
+        return layout;
+    }
+
+    private static void spread(int[] layout, int count, int state, int offset){
+        for (int k = 0; k < count; k++){
+            int index = (int) (((long) k * layout.length) / count + offset) % layout.length;
+            //Step over slots already taken by the other state
+            while (layout[index] != REFUSED){
+                index = (index + 1) % layout.length;
+            }
+            layout[index] = state;
+        }
+    }
+
+    private static boolean isFree(int first, int count){
+        List<ServerSocket> probes = new ArrayList<>();
+        try {
+            for (int port = first; port < first + count; port++){
+                ServerSocket socket = new ServerSocket();
+                probes.add(socket);
+                socket.bind(new InetSocketAddress(InetAddress.getByName(HOST), port));
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            for (ServerSocket socket : probes){
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    //Nothing useful to do
+                }
+            }
+        }
+    }
+
+    private void openListener(int port) throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        resources.add(server);
+        server.bind(new InetSocketAddress(HOST, port), 1024);
+        server.configureBlocking(false);
+        server.register(acceptor, SelectionKey.OP_ACCEPT);
+    }
+
+    private void openBlackhole(int port) throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        resources.add(server);
+        server.bind(new InetSocketAddress(HOST, port), 1);
+
+        //Never accepted, these fill the queue so later SYNs are dropped
+        for (int i = 0; i < BLACKHOLE_FILL; i++){
+            SocketChannel filler = SocketChannel.open();
+            resources.add(filler);
+            filler.configureBlocking(false);
+            filler.connect(new InetSocketAddress(HOST, port));
+        }
+    }
+
+    /**
+     * Accepts and immediately closes connections on the open ports
+     */
+
+    private void acceptLoop(){
+        try {
+            while (acceptor.isOpen()){
+                acceptor.select();
+                Iterator<SelectionKey> keys = acceptor.selectedKeys().iterator();
+                while (keys.hasNext()){
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    SocketChannel client = ((ServerSocketChannel) key.channel()).accept();
+                    if (client != null){
+                        client.close();
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            //Services closed
+        }
+    }
+
+    /**
+     * Gets the first port of the block
+     *
+     * @return First port
+     */
+
+    public int getFirstPort(){
+        return firstPort;
+    }
+
+    /**
+     * Gets the last port of the block
+     *
+     * @return Last port
+     */
+
+    public int getLastPort(){
+        return firstPort + layout.length - 1;
+    }
+
+    /**
+     * Gets the expected state of a port in the block
+     *
+     * @param port Port number
+     * @return OPEN, REFUSED or BLACKHOLED
+     */
+
+    public int getState(int port){
+        return layout[port - firstPort];
+    }
+
+    /**
+     * Counts the ports of a given state
+     *
+     * @param state OPEN, REFUSED or BLACKHOLED
+     * @return Number of ports in that state
+     */
+
+    public int count(int state){
+        int count = 0;
+        for (int value : layout){
+            if (value == state){
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Stops every listener and releases the ports
+     */
+
+    @Override
+    public void close(){
+        try {
+            acceptor.close();
+        } catch (IOException e) {
+            //Nothing useful to do
+        }
+        for (Closeable resource : resources){
+            try {
+                resource.close();
+            } catch (IOException e) {
+                //Nothing useful to do
+            }
+        }
+        resources.clear();
+    }
+}
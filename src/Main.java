@@ -1,3 +1,12 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
 /**
  * Simple Port Scanner - Main Entry Point
  * 
@@ -24,11 +33,32 @@ public class Main {
 
         //Parse options
         boolean useMultithreading = false;
+        boolean useNio = false;
+        boolean useUdp = false;
         int threadCount = 100;
+        boolean threadCountSet = false;
+        boolean useVirtualThreads = false;
+        boolean adaptiveConcurrency = false;
+        int maxInFlight = 2000;
+        int udpInFlight = PortScannerUdp.DEFAULT_MAX_IN_FLIGHT;
         boolean grabBanners = false;
+        int bannerThreads = 0;
         int timeout = 2000; // Default: 2 seconds
+        boolean adaptiveTimeout = false;
         String exportFormat = null;
         String exportFilename = null;
+        String streamFormat = null;
+        String streamFilename = null;
+        String journalFile = null;
+        String resumeFile = null;
+        String baselineFile = null;
+        String cacheFile = null;
+        int topPorts = 0;
+        Long randomSeed = null;
+        long cacheTtl = ResultCache.DEFAULT_TTL_SECONDS;
+        double maxRate = 0;
+        double maxHostRate = 0;
+        boolean reverseDns = false;
         int argOffset = 0;
 
         // Process all flags
@@ -42,16 +72,60 @@ public class Main {
                 // Check if next arg is a thread count
                 if (argOffset < args.length && args[argOffset].matches("\\d+")) {
                     threadCount = Integer.parseInt(args[argOffset]);
+                    threadCountSet = true;
+                    argOffset++;
+                }
+            } else if (arg.equals("--vthreads")) {
+                useMultithreading = true;
+                useVirtualThreads = true;
+                argOffset++;
+            } else if (arg.equals("--aimd")) {
+                useMultithreading = true;
+                adaptiveConcurrency = true;
+                argOffset++;
+            } else if (arg.equals("-n") || arg.equals("--nio")) {
+                useNio = true;
+                argOffset++;
+
+                // Check if next arg is an in-flight limit
+                if (argOffset < args.length && args[argOffset].matches("\\d+")) {
+                    maxInFlight = Integer.parseInt(args[argOffset]);
+                    argOffset++;
+
+                    if (maxInFlight < 1 || maxInFlight > 50000) {
+                        System.err.println("Error: In-flight connect limit must be between 1 and 50000");
+                        System.exit(1);
+                    }
+                }
+            } else if (arg.equals("-U") || arg.equals("--udp")) {
+                useUdp = true;
+                argOffset++;
+
+                // Check if next arg is an in-flight limit
+                if (argOffset < args.length && args[argOffset].matches("\\d+")) {
+                    udpInFlight = Integer.parseInt(args[argOffset]);
                     argOffset++;
-                    
-                    if (threadCount < 1 || threadCount > 1000) {
-                        System.err.println("Error: Thread count must be between 1 and 1000");
+
+                    if (udpInFlight < 1 || udpInFlight > 50000) {
+                        System.err.println("Error: In-flight UDP probe limit must be between 1 and 50000");
                         System.exit(1);
                     }
                 }
             } else if (arg.equals("-b") || arg.equals("--banner")) {
                 grabBanners = true;
                 argOffset++;
+            } else if (arg.equals("--banner-threads")) {
+                argOffset++;
+                try {
+                    bannerThreads = Integer.parseInt(args[argOffset]);
+                    if (bannerThreads < 1 || bannerThreads > 1000) {
+                        throw new NumberFormatException();
+                    }
+                    argOffset++;
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    System.err.println("Error: --banner-threads requires a number between 1 and 1000");
+                    System.exit(1);
+                }
             } else if (arg.equals("-o") || arg.equals("--timeout")) {
                 argOffset++;
                 if (argOffset >= args.length) {
@@ -69,6 +143,12 @@ public class Main {
                     System.err.println("Error: Timeout must be a number");
                     System.exit(1);
                 }
+            } else if (arg.equals("-R") || arg.equals("--reverse-dns")) {
+                reverseDns = true;
+                argOffset++;
+            } else if (arg.equals("-a") || arg.equals("--adaptive-timeout")) {
+                adaptiveTimeout = true;
+                argOffset++;
             } else if (arg.equals("-e") || arg.equals("--export")) {
                 argOffset++;
                 if (argOffset >= args.length) {
@@ -86,12 +166,121 @@ public class Main {
                 }
                 exportFilename = args[argOffset];
                 argOffset++;
+            } else if (arg.equals("-s") || arg.equals("--stream")) {
+                argOffset++;
+                if (argOffset + 1 >= args.length) {
+                    System.err.println("Error: --stream requires format and filename");
+                    System.err.println("Usage: --stream <format> <filename>");
+                    System.err.println("Formats: ndjson, csv");
+                    System.exit(1);
+                }
+                streamFormat = args[argOffset];
+                streamFilename = args[argOffset + 1];
+                argOffset += 2;
+            } else if (arg.equals("-j") || arg.equals("--journal")) {
+                argOffset++;
+                if (argOffset >= args.length) {
+                    System.err.println("Error: --journal requires a filename");
+                    System.exit(1);
+                }
+                journalFile = args[argOffset];
+                argOffset++;
+            } else if (arg.equals("-r") || arg.equals("--resume")) {
+                argOffset++;
+                if (argOffset >= args.length) {
+                    System.err.println("Error: --resume requires a journal filename");
+                    System.exit(1);
+                }
+                resumeFile = args[argOffset];
+                argOffset++;
+            } else if (arg.equals("--baseline")) {
+                argOffset++;
+                if (argOffset >= args.length) {
+                    System.err.println("Error: --baseline requires a JSON export filename");
+                    System.exit(1);
+                }
+                baselineFile = args[argOffset];
+                argOffset++;
+            } else if (arg.equals("--top-ports")) {
+                argOffset++;
+                try {
+                    topPorts = Integer.parseInt(args[argOffset]);
+                    if (topPorts < 1 || topPorts > 65535) {
+                        throw new NumberFormatException();
+                    }
+                    argOffset++;
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    System.err.println("Error: --top-ports requires a number between 1 and 65535");
+                    System.exit(1);
+                }
+            } else if (arg.equals("--randomize")) {
+                argOffset++;
+
+                // Check if next arg is a seed
+                if (argOffset < args.length && args[argOffset].matches("-?\\d+")) {
+                    try {
+                        randomSeed = Long.parseLong(args[argOffset]);
+                    } catch (NumberFormatException e) {
+                        System.err.println("Error: --randomize seed must be a 64-bit number");
+                        System.exit(1);
+                    }
+                    argOffset++;
+                } else {
+                    randomSeed = new Random().nextLong();
+                }
+            } else if (arg.equals("--cache")) {
+                argOffset++;
+                if (argOffset >= args.length) {
+                    System.err.println("Error: --cache requires a filename");
+                    System.exit(1);
+                }
+                cacheFile = args[argOffset];
+                argOffset++;
+            } else if (arg.equals("--cache-ttl")) {
+                argOffset++;
+                try {
+                    cacheTtl = Long.parseLong(args[argOffset]);
+                    if (cacheTtl < 0) {
+                        throw new NumberFormatException();
+                    }
+                    argOffset++;
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    System.err.println("Error: --cache-ttl requires a number of seconds");
+                    System.exit(1);
+                }
+            } else if (arg.equals("--max-rate") || arg.equals("--max-host-rate")) {
+                argOffset++;
+                try {
+                    double rate = Double.parseDouble(args[argOffset]);
+                    if (!(rate > 0) || Double.isInfinite(rate)) {
+                        throw new NumberFormatException();
+                    }
+                    if (arg.equals("--max-rate")) {
+                        maxRate = rate;
+                    } else {
+                        maxHostRate = rate;
+                    }
+                    argOffset++;
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    System.err.println("Error: " + arg + " requires a positive number of connects per second");
+                    System.exit(1);
+                }
             } else {
                 // Not a flag, must be the host
                 break;
             }
         }
 
+        //Validate thread count (virtual threads are cheap, allow far more)
+        if (useVirtualThreads && !threadCountSet) {
+            threadCount = 1000;
+        }
+        int maxThreads = useVirtualThreads ? 100000 : 1000;
+        if (threadCount < 1 || threadCount > maxThreads) {
+            System.err.println("Error: Thread count must be between 1 and " + maxThreads);
+            System.exit(1);
+        }
+
         //Validate remaining arguments
         if(argOffset >= args.length) {
             printUsage();
@@ -105,6 +294,12 @@ public class Main {
         argOffset++;
 
         //Parse port range if provided
+        boolean rangeGiven = argOffset < args.length;
+        if (topPorts > 0 && !rangeGiven) {
+            //Top ports are picked from the whole port space
+            startPort = 1;
+            endPort = 65535;
+        }
         if(argOffset < args.length) {
             try {
                 String[] range = args[argOffset].split("-");
@@ -128,31 +323,279 @@ public class Main {
             }
         }
 
+        //Parse target specification (host, CIDR, range or comma list)
+        TargetSpec targets = null;
+        try {
+            targets = TargetSpec.parse(host);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println("Use a hostname, IP, CIDR (10.0.0.0/24), range (10.0.0.1-20) or comma list");
+            System.exit(1);
+        }
+
+        //Resolve every hostname once, in parallel, so probes never wait on DNS
+        List<String> hostnames = targets.getHostnames();
+        List<String> unknownHosts = HostResolver.resolveAll(hostnames, threadCount);
+        for (String unknown : unknownHosts) {
+            System.err.println("Error: Unknown host " + unknown);
+        }
+        if (!unknownHosts.isEmpty() && unknownHosts.size() == targets.size()) {
+            System.exit(1);
+        }
+
+        //UDP has its own scanner, the journal, baseline and cache hold TCP states
+        if (useUdp && (journalFile != null || resumeFile != null || baselineFile != null || cacheFile != null)) {
+            System.err.println("Error: --journal, --resume, --baseline and --cache are not supported with --udp");
+            System.exit(1);
+        }
+
+        //Several hosts share one scheduler, the sequential scanner has none
+        if (targets.size() > 1 && !useNio && !useUdp && !useMultithreading) {
+            System.out.println("Multiple targets (" + targets.size() + " hosts): using multi-threaded mode\n");
+            useMultithreading = true;
+        }
+
+        //Journals and baselines work on the multi-threaded scanner's state stores
+        if ((journalFile != null || resumeFile != null || baselineFile != null) && !useMultithreading) {
+            if (useNio) {
+                System.err.println("Error: --journal, --resume and --baseline are not supported with --nio");
+                System.exit(1);
+            }
+            useMultithreading = true;
+        }
+        if (baselineFile != null && resumeFile != null) {
+            System.err.println("Error: --baseline cannot be combined with --resume");
+            System.exit(1);
+        }
+
         // Set timeout in PortChecker
         PortChecker.setTimeout(timeout);
+        PortChecker.setAdaptiveTimeout(adaptiveTimeout);
+        PortChecker.setMaxRate(maxRate);
+        PortChecker.setMaxHostRate(maxHostRate);
+
+        //Serve fresh results of earlier runs, saved back when the program exits
+        if (cacheFile != null) {
+            try {
+                ResultCache cache = ResultCache.open(cacheFile, cacheTtl, ResultCache.DEFAULT_MAX_ENTRIES);
+                PortChecker.setCache(cache);
+                Runtime.getRuntime().addShutdownHook(new Thread(cache::save));
+            } catch (IOException e) {
+                System.err.println("Error: Cannot read result cache: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        //Open streaming export before the scan, results are written as they arrive
+        StreamingExporter stream = null;
+        if (streamFormat != null) {
+            try {
+                stream = StreamingExporter.open(streamFilename, streamFormat);
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+                System.exit(1);
+            }
+            //Ctrl-C still leaves a closed, usable file
+            Runtime.getRuntime().addShutdownHook(new Thread(stream::close));
+        }
+        //Most frequently open ports first, so useful results show up early
+        int[] ports = useUdp ? ServiceIdentifier.orderByUdpFrequency(startPort, endPort)
+            : ServiceIdentifier.orderByFrequency(startPort, endPort);
+        String portDescription = startPort + "-" + endPort + " (most common first)";
+        if (topPorts > 0 && topPorts < ports.length) {
+            ports = Arrays.copyOf(ports, topPorts);
+            portDescription = "top " + topPorts + (rangeGiven ? " in " + startPort + "-" + endPort : "");
+        }
+        long totalProbes = targets.size() * ports.length;
+
+        //Load the interrupted scan, then keep appending to the same journal
+        Map<String, PortStateStore> restored = null;
+        ScanJournal journal = null;
+        try {
+            if (resumeFile != null) {
+                restored = ScanJournal.load(resumeFile);
+                journal = ScanJournal.append(resumeFile, restored);
+                System.out.println("Resuming from journal: " + resumeFile + "\n");
+            } else if (journalFile != null) {
+                journal = ScanJournal.create(journalFile);
+            }
+        } catch (IOException e) {
+            System.err.println("Error: Cannot open journal: " + e.getMessage());
+            System.exit(1);
+        }
+        if (journal != null) {
+            //Ctrl-C still checkpoints everything probed so far
+            Runtime.getRuntime().addShutdownHook(new Thread(journal::close));
+        }
+
+        //Baseline: known-open ports are verified first, the sweep skips them
+        BaselineDiff baseline = null;
+        if (baselineFile != null) {
+            try {
+                baseline = BaselineDiff.load(baselineFile);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Error: Cannot read baseline: " + e.getMessage());
+                System.exit(1);
+            }
+            restored = baseline.verify(targets, ports, threadCount, grabBanners);
+        }
+
+        //Probe counters and latency percentiles, live in jconsole/VisualVM
+        //(registered off the main thread, the JMX server takes ~0.2s to start)
+        Thread jmxRegistration = new Thread(ScanMetrics::register, "jmx-register");
+        jmxRegistration.setDaemon(true);
+        jmxRegistration.start();
 
         //Launch appropriate scanner 
-        if(useMultithreading) {
+        if(useUdp) {
+            //Version 2.3+ - UDP with protocol payloads
+            PortScannerUdp scanner = new PortScannerUdp(targets, startPort, endPort, udpInFlight);
+            scanner.setPorts(ports, portDescription);
+            if (randomSeed != null) {
+                scanner.setRandomOrder(randomSeed);
+            }
+            if (stream != null) {
+                scanner.addResultListener(stream);
+            }
+            scanner.scan();
+
+            if (stream != null) {
+                stream.close(totalProbes, scanner.getScanTime(), true);
+            }
+
+            List<ScanResult> results = scanner.getResults();
+            if (reverseDns) {
+                results = addReverseNames(results, threadCount);
+            }
+
+            // Export if requested
+            if (exportFormat != null) {
+                ExportHelper.export(results, host, exportFilename, exportFormat, scanner.getScanTime());
+            }
+        } else if(useNio) {
+            //Version 2.3+ - Non-blocking selectors
+            PortScannerNio scanner = new PortScannerNio(targets, startPort, endPort, maxInFlight, grabBanners);
+            scanner.setPorts(ports, portDescription);
+            scanner.setBannerThreads(bannerThreads);
+            if (randomSeed != null) {
+                scanner.setRandomOrder(randomSeed);
+            }
+            if (stream != null) {
+                scanner.addResultListener(stream);
+            }
+            scanner.scan();
+
+            if (stream != null) {
+                stream.close(totalProbes, scanner.getScanTime(), true);
+            }
+
+            List<ScanResult> results = scanner.getResults();
+            if (reverseDns) {
+                results = addReverseNames(results, threadCount);
+            }
+
+            // Export if requested
+            if (exportFormat != null) {
+                ExportHelper.export(results, host, exportFilename, exportFormat, scanner.getScanTime());
+            }
+        } else if(useMultithreading) {
             //Version 2.1+ - Multi-threaded
-            PortScannerMultithreaded scanner = new PortScannerMultithreaded(host, startPort, endPort, threadCount, grabBanners);
+            PortScannerMultithreaded scanner = new PortScannerMultithreaded(targets, startPort, endPort, threadCount, grabBanners);
+            scanner.setPorts(ports, portDescription);
+            if (randomSeed != null) {
+                scanner.setRandomOrder(randomSeed);
+            }
+            scanner.setUseVirtualThreads(useVirtualThreads);
+            scanner.setAdaptiveConcurrency(adaptiveConcurrency);
+            scanner.setBannerThreads(bannerThreads);
+            scanner.setJournal(journal);
+            if (restored != null) {
+                scanner.restore(restored, baseline != null ? "baseline verify" : "journal");
+            }
+            if (baseline != null) {
+                scanner.addResultListener(baseline);
+            }
+            if (stream != null) {
+                scanner.addResultListener(stream);
+            }
             scanner.scan();
+
+            if (baseline != null) {
+                baseline.printDiff();
+            }
+
+            if (stream != null) {
+                stream.close(totalProbes, scanner.getScanTime(), true);
+            }
             
+            List<ScanResult> results = scanner.getResults();
+            if (reverseDns) {
+                results = addReverseNames(results, threadCount);
+            }
+
             // Export if requested
             if (exportFormat != null) {
-                ExportHelper.export(scanner.getResults(), host, exportFilename, exportFormat, scanner.getScanTime());
+                ExportHelper.export(results, host, exportFilename, exportFormat, scanner.getScanTime());
             }
         } else {
             //Version 2.1+ - Sequential
             PortScanner scanner = new PortScanner(host, startPort, endPort, grabBanners);
+            scanner.setPorts(ports, portDescription);
+            if (randomSeed != null) {
+                scanner.setRandomOrder(randomSeed);
+            }
+            if (stream != null) {
+                scanner.addResultListener(stream);
+            }
             scanner.scan();
+
+            if (stream != null) {
+                stream.close(totalProbes, scanner.getScanTime(), true);
+            }
             
+            List<ScanResult> results = scanner.getResults();
+            if (reverseDns) {
+                results = addReverseNames(results, threadCount);
+            }
+
             // Export if requested
             if (exportFormat != null) {
-                ExportHelper.export(scanner.getResults(), host, exportFilename, exportFormat, scanner.getScanTime());
+                ExportHelper.export(results, host, exportFilename, exportFormat, scanner.getScanTime());
             }
         }
     }
 
+    /**
+     * Looks up the PTR names of the hosts with open ports, in parallel, and
+     * prints them
+     * 
+     * @param results Scan results
+     * @param parallelism Most lookups at once
+     * @return The results, open ports carrying the name of their host
+     */
+    private static List<ScanResult> addReverseNames(List<ScanResult> results, int parallelism) {
+        Set<String> hosts = new TreeSet<>();
+        for (ScanResult result : results) {
+            if (result.isOpen() && result.getHost() != null) {
+                hosts.add(result.getHost());
+            }
+        }
+
+        Map<String, String> names = HostResolver.reverseLookupAll(hosts, parallelism);
+        System.out.println("Reverse DNS: " + names.size() + " of " + hosts.size() + " host(s) named");
+        for (Map.Entry<String, String> entry : names.entrySet()) {
+            System.out.println("  " + entry.getKey() + "  " + entry.getValue());
+        }
+        System.out.println();
+
+        List<ScanResult> named = new ArrayList<>(results.size());
+        for (ScanResult result : results) {
+            String name = result.getHost() != null ? names.get(result.getHost()) : null;
+            named.add(name != null ? result.withHostname(name) : result);
+        }
+        return named;
+    }
+
     /**
      * Display application banner 
      */
@@ -180,25 +623,61 @@ public class Main {
         System.out.println("Options:");
         System.out.println("  -t, --threads [N]   Enable multi-threaded scanning (default: 100 threads)");
         System.out.println("                      Specify N for custom thread count (1-1000)");
+        System.out.println("  --vthreads          Use virtual threads (Java 21+), -t N sets probes in flight (1-100000, default: 1000; at most 1000 before Java 21)");
+        System.out.println("  --aimd              Adapt probes in flight to timeouts/errors (AIMD), -t N is the upper bound");
+        System.out.println("  -n, --nio [N]       Enable non-blocking scanning, one selector per core");
+        System.out.println("                      Specify N for max connects in flight (1-50000, default: 2000)");
+        System.out.println("  -U, --udp [N]       Scan UDP ports, sending each port's protocol request (DNS, NTP, SNMP...)");
+        System.out.println("                      Specify N for max probes in flight (1-50000, default: 2000)");
         System.out.println("  -b, --banner        Enable banner grabbing for version detection");
+        System.out.println("  --banner-threads [N] Banners read at once with -t or -n, apart from the probes (default: threads, max 256)");
         System.out.println("  -o, --timeout [MS]  Set connection timeout in milliseconds (100-30000, default: 2000)");
+        System.out.println("  -a, --adaptive-timeout  Derive the timeout from measured RTT, -o becomes the ceiling");
+        System.out.println("  -R, --reverse-dns   Look up the PTR name of every host with open ports (added to exports)");
         System.out.println("  -e, --export [F][N] Export results to file (format: csv|json|all, filename: output)");
+        System.out.println("  -s, --stream [F][N] Stream results to file while scanning (format: ndjson|csv)");
+        System.out.println("  -j, --journal [F]   Checkpoint probed ports to a journal (resumable with --resume)");
+        System.out.println("  -r, --resume [F]    Resume an interrupted scan, skipping ports already in the journal");
+        System.out.println("  --baseline [F]      Verify the open ports of a previous JSON export first, then report the diff");
+        System.out.println("  --top-ports [N]     Scan only the N most frequently open ports (of the range if given)");
+        System.out.println("  --randomize [SEED]  Probe hosts and ports in a pseudo-random order (same seed, same order)");
+        System.out.println("  --max-rate [N]      Never exceed N connects per second in total");
+        System.out.println("  --max-host-rate [N] Never exceed N connects per second to any single host");
+        System.out.println("  --cache [F]         Reuse results of earlier runs younger than the TTL (saved on exit)");
+        System.out.println("  --cache-ttl [S]     Cache entry lifetime in seconds (default: 3600, filtered ports: 60 at most)");
         System.out.println();
         System.out.println("Arguments:");
-        System.out.println("  <host>              Target hostname or IP address");
+        System.out.println("  <host>              Target hostname or IP address, CIDR (10.0.0.0/24),");
+        System.out.println("                      range (10.0.0.1-20) or comma list (host1,host2)");
         System.out.println("  [port-range]        Port range in format: start-end (optional, default: 1-1024)");
         System.out.println();
         System.out.println("Examples:");
         System.out.println("  java Main localhost                              # Sequential scan, ports 1-1024");
         System.out.println("  java Main -t localhost 1-100                     # Multi-threaded, 100 threads");
         System.out.println("  java Main -t -b localhost 80-443                 # With banner grabbing");
+        System.out.println("  java Main --vthreads -t 10000 localhost 1-65535  # Virtual threads, 10k in flight");
+        System.out.println("  java Main --aimd -t 1000 192.168.1.1 1-65535     # Adaptive concurrency, max 1000");
+        System.out.println("  java Main -n 5000 localhost 1-65535              # Non-blocking, 5000 in flight");
+        System.out.println("  java Main -U --top-ports 20 192.168.1.1          # Common UDP services");
         System.out.println("  java Main -o 5000 localhost 1-1000               # Custom 5s timeout");
+        System.out.println("  java Main -t -a 192.168.1.1 1-65535              # Adaptive timeout on a LAN");
         System.out.println("  java Main -t -e csv results localhost 1-1000     # Export to CSV");
         System.out.println("  java Main -t -e all results localhost 1-1000     # Export CSV and JSON");
+        System.out.println("  java Main -t -s ndjson live 10.0.0.0/16 1-1024   # Stream NDJSON while scanning");
+        System.out.println("  java Main -t 192.168.1.0/24 22-443               # Sweep a whole subnet");
+        System.out.println("  java Main -t -j scan.jnl 10.0.0.0/16 1-65535     # Resumable sweep");
+        System.out.println("  java Main -r scan.jnl 10.0.0.0/16 1-65535        # Continue after Ctrl-C");
+        System.out.println("  java Main --baseline old.json 10.0.0.0/24 22-443 # Nightly diff vs last export");
+        System.out.println("  java Main -t --top-ports 100 10.0.0.0/24         # Most common ports only");
+        System.out.println("  java Main -t --randomize 10.0.0.0/16 22-443      # Spread probes across hosts");
+        System.out.println("  java Main -n --max-rate 500 10.0.0.0/16 1-1024   # Rate-sensitive network");
+        System.out.println("  java Main -t -b --cache scan.db localhost 1-1024 # Near-instant repeat scans");
         System.out.println("  java Main scanme.nmap.org 20-80                  # Remote server scan");
         System.out.println();
         System.out.println("Performance:");
         System.out.println("  Sequential:     ~2 seconds per port");
         System.out.println("  Multi-threaded: ~40-100x faster (recommended for large ranges)");
+        System.out.println("  Non-blocking:   thousands of connects in flight on a few threads");
+        System.out.println("  UDP:            up to 3 tries per port, tens of thousands in flight on one thread");
     }    
 }    
\ No newline at end of file
@@ -1,7 +1,13 @@
+import java.net.ConnectException;
 import java.net.Socket;
 import java.net.InetSocketAddress;
 import java.net.SocketTimeoutException;
+import java.nio.channels.SocketChannel;
 import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * PortChecker - Test individual ports for connectivity
@@ -21,6 +27,18 @@ public class PortChecker {
     private static final int DEFAULT_TIMEOUT = 2000; //2 seconds
     private static int timeout = DEFAULT_TIMEOUT;
 
+    //Adaptive timeout: one RTT estimator per target host
+    private static boolean adaptiveTimeout = false;
+    private static final ConcurrentMap<String, RttEstimator> estimators = new ConcurrentHashMap<>();
+
+    //Results of earlier runs, null when caching is off
+    private static volatile ResultCache cache;
+
+    //Connect rate limits, shared by all workers (null / 0 = unlimited)
+    private static volatile RateLimiter rateLimiter;
+    private static volatile double hostRate;
+    private static final ConcurrentMap<String, RateLimiter> hostLimiters = new ConcurrentHashMap<>();
+
     /**
      * Sets the timeout for connection attempts
      * 
@@ -38,6 +56,144 @@ public class PortChecker {
         }
     }
 
+    /**
+     * Enables or disables the adaptive, RTT-driven timeout
+     * The configured timeout becomes the ceiling for every probe
+     * 
+     * @param enabled true to derive timeouts from measured RTT per host
+     */
+    public static void setAdaptiveTimeout(boolean enabled) {
+        adaptiveTimeout = enabled;
+        estimators.clear();
+    }
+
+    /**
+     * Serves probe results from a cache while they are fresh
+     * 
+     * @param resultCache Cache shared across runs, or null to disable
+     */
+    public static void setCache(ResultCache resultCache) {
+        cache = resultCache;
+    }
+
+    /**
+     * Gets the result cache
+     * 
+     * @return The cache, or null if caching is off
+     */
+    public static ResultCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Caps the connects per second of the whole scan
+     * 
+     * @param connectsPerSecond Maximum rate, or 0 for no limit
+     */
+    public static void setMaxRate(double connectsPerSecond) {
+        rateLimiter = connectsPerSecond > 0 ? RateLimiter.perSecond(connectsPerSecond) : null;
+    }
+
+    /**
+     * Caps the connects per second sent to any single host
+     * 
+     * @param connectsPerSecond Maximum rate per host, or 0 for no limit
+     */
+    public static void setMaxHostRate(double connectsPerSecond) {
+        hostRate = Math.max(0, connectsPerSecond);
+        hostLimiters.clear();
+    }
+
+    /**
+     * Gets the limiter of the whole scan
+     * 
+     * @return The limiter, or null if the rate is not limited
+     */
+    public static RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Gets the limiter of a host, creating it on first use
+     * 
+     * @param host Target hostname or IP address
+     * @return The host's limiter, or null if the per-host rate is not limited
+     */
+    public static RateLimiter getHostLimiter(String host) {
+        double rate = hostRate;
+        if (rate <= 0) {
+            return null;
+        }
+        return hostLimiters.computeIfAbsent(host, h -> RateLimiter.perSecond(rate));
+    }
+
+    /**
+     * Formats the achieved versus target rates for scan summaries
+     * 
+     * @return e.g. "998.7/s achieved, target 1000/s (12000 connects)", or null without limits
+     */
+    public static String getRateSummary() {
+        StringBuilder summary = new StringBuilder();
+        RateLimiter limiter = rateLimiter;
+        if (limiter != null) {
+            summary.append(limiter);
+        }
+        if (hostRate > 0) {
+            double busiest = 0;
+            for (RateLimiter hostLimiter : hostLimiters.values()) {
+                busiest = Math.max(busiest, hostLimiter.getAchievedRate());
+            }
+            summary.append(summary.length() > 0 ? "; " : "")
+                .append(String.format("per host %.1f/s achieved (busiest), target %s/s",
+                    busiest, RateLimiter.formatRate(hostRate)));
+        }
+        return summary.length() > 0 ? summary.toString() : null;
+    }
+
+    /**
+     * Waits for the rate limits to allow one more connect
+     * An interrupted wait lets the connect go (the interrupt is kept)
+     * 
+     * @param host Target hostname or IP address
+     */
+    private static void throttle(String host) {
+        try {
+            //Per host first, so a host-limited probe does not hold a global slot
+            RateLimiter hostLimiter = getHostLimiter(host);
+            if (hostLimiter != null) {
+                hostLimiter.acquire(1);
+            }
+            RateLimiter limiter = rateLimiter;
+            if (limiter != null) {
+                limiter.acquire(1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Checks if the adaptive timeout is enabled
+     * 
+     * @return true if timeouts follow the measured RTT
+     */
+    public static boolean isAdaptiveTimeout() {
+        return adaptiveTimeout;
+    }
+
+    /**
+     * Gets the RTT estimator for a host, creating it on first use
+     * 
+     * @param host Target hostname or IP address
+     * @return The host's estimator, or null if adaptive timeout is disabled
+     */
+    public static RttEstimator getEstimator(String host) {
+        if (!adaptiveTimeout) {
+            return null;
+        }
+        return estimators.computeIfAbsent(host, h -> new RttEstimator(timeout));
+    }
+
     /**
      * Simple check if a port is open (returns boolean only)
      * 
@@ -47,10 +203,9 @@ public class PortChecker {
      */
 
     public static boolean isPortOpen(String host, int port){
-        try{
-            Socket socket = new Socket();
-            socket.connect(new InetSocketAddress(host, port), timeout);
-            socket.close();
+        throttle(host);
+        try (Socket socket = new Socket()) {
+            connect(socket, host, port);
             return true;
 
         } catch (IOException e){
@@ -68,25 +223,94 @@ public class PortChecker {
      */
 
     public static ScanResult checkPort(String host, int port){
-        long startTime = System.currentTimeMillis();
-
-        try{
-            //Create socket with timeout
-            Socket socket = new Socket();
+        throttle(host);
+        long startTime = System.nanoTime();
 
+        try (Socket socket = new Socket()) {
             //Attempt connection
-            socket.connect(new InetSocketAddress(host, port), timeout);
-            long responseTime = System.currentTimeMillis() - startTime;
-            socket.close();
-            return new ScanResult(port, true, responseTime);
+            connect(socket, host, port);
+            long responseTime = elapsedMillis(startTime);
+            return new ScanResult(host, port, true, responseTime, "", false);
 
-        } catch (IOException e){
+        } catch (ConnectException e){
             //Connection refused = port is closed
-            long responseTime = System.currentTimeMillis() - startTime;
-            return new ScanResult(port, false, responseTime);
+            long responseTime = elapsedMillis(startTime);
+            return new ScanResult(host, port, false, responseTime, "", false);
+
+        } catch (IOException e){
+            //No answer = filtered
+            long responseTime = elapsedMillis(startTime);
+            return new ScanResult(host, port, false, responseTime, "", true);
+        }
+    }
+
+    /**
+     * Creates an unconnected socket for a probe
+     * TLS ports get a channel-backed socket when banners are grabbed, so
+     * TlsProber can run the handshake over the same connection.
+     * 
+     * @param port Port number to probe
+     * @param grabBanner Whether the banner will be read over the socket
+     * @return New socket
+     * @throws IOException if the channel cannot be opened
+     */
+    private static Socket newSocket(int port, boolean grabBanner) throws IOException {
+        if (grabBanner && TlsProber.isTlsPort(port)) {
+            return SocketChannel.open().socket();
+        }
+        return new Socket();
+    }
+
+    /**
+     * Connects a socket, using the adaptive timeout when enabled
+     * The host is resolved once through HostResolver, not on every probe.
+     * Open and refused connects both took a full round trip and feed the
+     * estimator. Every outcome is recorded in ScanMetrics.
+     * 
+     * @param socket Unconnected socket
+     * @param host Target hostname or IP address
+     * @param port Port number
+     * @throws IOException if the connection fails or times out
+     */
+    private static void connect(Socket socket, String host, int port) throws IOException {
+        RttEstimator estimator = getEstimator(host);
+        int probeTimeout = estimator != null ? estimator.getTimeout() : timeout;
+        ScanMetrics metrics = ScanMetrics.get();
+        metrics.probeStarted();
+        long start = System.nanoTime();
+
+        try {
+            socket.connect(new InetSocketAddress(HostResolver.resolve(host), port), probeTimeout);
+            long elapsed = System.nanoTime() - start;
+            metrics.recordOpen(elapsed);
+            if (estimator != null) {
+                estimator.addSample(elapsed);
+            }
+        } catch (ConnectException e) {
+            //Refused = the RST came back, that is an RTT sample too
+            long elapsed = System.nanoTime() - start;
+            metrics.recordRefused(elapsed);
+            if (estimator != null) {
+                estimator.addSample(elapsed);
+            }
+            throw e;
+        } catch (SocketTimeoutException e) {
+            metrics.recordTimeout();
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            metrics.recordError();
+            throw e;
         }
     }
 
+    /**
+     * Gets the milliseconds elapsed since a System.nanoTime() reading
+     * (monotonic, unlike the wall clock)
+     */
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
     /**
      * Gets the configured timeout value
      * 
@@ -97,6 +321,18 @@ public class PortChecker {
         return timeout;
     }
 
+    /**
+     * Gets the timeout the next probe to a host will use
+     * 
+     * @param host Target hostname or IP address
+     * @return Adaptive timeout if enabled, configured timeout otherwise
+     */
+
+    public static int getTimeout(String host){
+        RttEstimator estimator = getEstimator(host);
+        return estimator != null ? estimator.getTimeout() : timeout;
+    }
+
     /**
      * Validates if a hostname/IP and port combination is valid before scanning
      * 
@@ -119,6 +355,8 @@ public class PortChecker {
 
     /**
  * Complete port check with optional banner grabbing
+ * The banner is read over the probe connection itself, so an open port
+ * is only connected once and the banner comes from the scanned host.
  * 
  * @param host Target hostname or IP address
  * @param port Port number to check
@@ -126,24 +364,150 @@ public class PortChecker {
  * @return ScanResult object with detailed information
  */
     public static ScanResult checkPort(String host, int port, boolean grabBanner) {
-        long startTime = System.currentTimeMillis();
+        return checkPort(host, port, grabBanner, null);
+    }
+
+    /**
+     * Port check that records closed/filtered ports into a state store
+     * Only open ports get a ScanResult, so a large sweep allocates nothing
+     * per refused or silent port.
+     * 
+     * @param host Target hostname or IP address
+     * @param port Port number to check
+     * @param grabBanner Whether to attempt banner grabbing
+     * @param store Store for closed/filtered ports, or null to always return a result
+     * @return ScanResult for an open port; for closed/filtered ports a result
+     *         without store, null with store
+     */
+    public static ScanResult checkPort(String host, int port, boolean grabBanner, PortStateStore store) {
+        //Fresh result from an earlier run: no connect, no banner read
+        ResultCache resultCache = cache;
+        if (resultCache != null) {
+            ResultCache.Entry cached = resultCache.get(host, port, grabBanner);
+            if (cached != null) {
+                return toResult(host, port, cached.getState(), cached.getResponseTime(), cached.getBanner(), store);
+            }
+        }
+
+        throttle(host);
+        long startTime = System.nanoTime();
+        long responseTime;
+        int state;
+        String banner = "";
     
-        try {
-            Socket socket = new Socket();
-            socket.connect(new InetSocketAddress(host, port), timeout);
-        
-            long responseTime = System.currentTimeMillis() - startTime;
-            socket.close();
-        
-            return new ScanResult(port, true, responseTime, grabBanner);
-        
-        } catch (SocketTimeoutException e) {
-            long responseTime = System.currentTimeMillis() - startTime;
-            return new ScanResult(port, false, responseTime, false);
+        try (Socket socket = newSocket(port, grabBanner)) {
+            connect(socket, host, port);
+            responseTime = elapsedMillis(startTime);
+            state = PortStateStore.OPEN;
+
+            if (grabBanner) {
+                banner = BannerGrabber.grabVersion(socket, port);
+            }
         
+        } catch (ConnectException e) {
+            //Connection refused = port is closed
+            responseTime = elapsedMillis(startTime);
+            state = PortStateStore.CLOSED;
+
         } catch (IOException e) {
-            long responseTime = System.currentTimeMillis() - startTime;
-            return new ScanResult(port, false, responseTime, false);
+            //Timeout or other error = no answer, filtered
+            responseTime = elapsedMillis(startTime);
+            state = PortStateStore.FILTERED;
+        }
+
+        if (resultCache != null) {
+            resultCache.put(host, port, state, responseTime, banner, grabBanner);
+        }
+        return toResult(host, port, state, responseTime, banner, store);
+    }
+
+    /**
+     * Port check with banner grabbing left to a separate pipeline stage
+     * An open port's connection is queued on the banner stage instead of
+     * being read here, so the calling worker can probe its next port
+     * right away. Open ports reach onOpen, from the banner thread once the
+     * banner is read (or from this thread on a cache hit).
+     * 
+     * @param host Target hostname or IP address
+     * @param port Port number to check
+     * @param store Store for closed/filtered ports
+     * @param banners Banner stage (blocks while it is full)
+     * @param onOpen Receives the result of an open port
+     */
+    public static void checkPort(String host, int port, PortStateStore store, BannerStage banners,
+                                 Consumer<ScanResult> onOpen) {
+        ResultCache resultCache = cache;
+        if (resultCache != null) {
+            ResultCache.Entry cached = resultCache.get(host, port, true);
+            if (cached != null) {
+                ScanResult result = toResult(host, port, cached.getState(), cached.getResponseTime(),
+                    cached.getBanner(), store);
+                if (result != null) {
+                    onOpen.accept(result);
+                }
+                return;
+            }
+        }
+
+        throttle(host);
+        long startTime = System.nanoTime();
+        Socket socket = null;
+        try {
+            socket = newSocket(port, true);
+            connect(socket, host, port);
+        } catch (IOException e) {
+            long responseTime = elapsedMillis(startTime);
+            int state = e instanceof ConnectException ? PortStateStore.CLOSED : PortStateStore.FILTERED;
+            try {
+                if (socket != null) {
+                    socket.close();
+                }
+            } catch (IOException ignored) {
+                //Never connected
+            }
+            if (resultCache != null) {
+                resultCache.put(host, port, state, responseTime, "", true);
+            }
+            toResult(host, port, state, responseTime, "", store);
+            return;
+        }
+
+        //Open: the banner stage owns the socket from here on
+        long responseTime = elapsedMillis(startTime);
+        Consumer<String> onBanner = banner -> {
+            if (resultCache != null) {
+                resultCache.put(host, port, PortStateStore.OPEN, responseTime, banner, true);
+            }
+            onOpen.accept(toResult(host, port, PortStateStore.OPEN, responseTime, banner, store));
+        };
+        try {
+            banners.submit(socket, port, onBanner);
+        } catch (InterruptedException e) {
+            //Scan is stopping: still report the port, without banner
+            Thread.currentThread().interrupt();
+            onBanner.accept("");
+        }
+    }
+
+    /**
+     * Turns a probe outcome into a result, or into a store mark
+     * 
+     * @return ScanResult for an open port; for closed/filtered ports a result
+     *         without store, null with store
+     */
+    private static ScanResult toResult(String host, int port, int state, long responseTime, String banner,
+                                       PortStateStore store) {
+        if (state == PortStateStore.OPEN) {
+            return new ScanResult(host, port, true, responseTime, banner, false);
+        }
+        if (store != null) {
+            if (state == PortStateStore.CLOSED) {
+                store.markClosed(port);
+            } else {
+                store.markFiltered(port);
+            }
+            return null;
         }
+        return new ScanResult(host, port, false, responseTime, "", state == PortStateStore.FILTERED);
     }
 }
@@ -1,5 +1,7 @@
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 /**
  * PortScanner - Orchestrates port scanning operations
@@ -17,10 +19,14 @@ public class PortScanner{
     private String targetHost;
     private int startPort;
     private int endPort;
+    private int[] ports;
+    private String portDescription;
+    private Long randomSeed;
     private boolean grabBanners;
 
     //Results and timing
     private List<ScanResult> results;
+    private List<Consumer<ScanResult>> listeners = new ArrayList<>();
     private long scanStartTime;
     private long scanEndTime;
 
@@ -49,10 +55,46 @@ public class PortScanner{
         this.targetHost = targetHost;
         this.startPort = startPort;
         this.endPort = endPort;
+        this.ports = IntStream.rangeClosed(startPort, endPort).toArray();
+        this.portDescription = startPort + "-" + endPort;
         this.grabBanners = grabBanners;
         this.results = new ArrayList<>();
     }
 
+    /**
+     * Registers a listener called for every open port as soon as it is found
+     * (e.g. a StreamingExporter)
+     * 
+     * @param listener Consumer of open-port results
+     */
+
+    public void addResultListener(Consumer<ScanResult> listener){
+        listeners.add(listener);
+    }
+
+    /**
+     * Replaces the port range with an explicit list of ports, probed in list order
+     * (e.g. ServiceIdentifier.topPorts or orderByFrequency)
+     *
+     * @param ports Ports to scan
+     * @param description How the ports are shown in the scan info (e.g. "top 100")
+     */
+
+    public void setPorts(int[] ports, String description){
+        this.ports = ports.clone();
+        this.portDescription = description;
+    }
+
+    /**
+     * Probes the ports in a pseudo-random order instead of list order
+     *
+     * @param seed Same seed, same order
+     */
+
+    public void setRandomOrder(long seed){
+        this.randomSeed = seed;
+    }
+
     /**
      * Executes the port scan
      * Scans all ports in the specified range and displays results in real-time
@@ -66,7 +108,7 @@ public class PortScanner{
         scanStartTime = System.currentTimeMillis();
 
         //Calculate total ports to scan
-        int totalPorts = endPort - startPort + 1;
+        int totalPorts = ports.length;
         int scannedPorts = 0;
 
         System.out.println("Starting scan...\n");
@@ -74,13 +116,19 @@ public class PortScanner{
         System.out.println("────────────────────────────────────────────────");
 
         //Scan each port in the range
-        for(int port = startPort; port <= endPort; port++){
+        ProbePermutation order = randomSeed != null ? new ProbePermutation(totalPorts, randomSeed) : null;
+        for(int i = 0; i < totalPorts; i++){
+            int port = ports[order != null ? (int) order.get(i) : i];
+
             //Check the port 
             ScanResult result = PortChecker.checkPort(targetHost, port, grabBanners);
 
             //Store and display if open
             if(result.isOpen()){
                 results.add(result);
+                for (Consumer<ScanResult> listener : listeners){
+                    listener.accept(result);
+                }
                 System.out.println(result.toString());
             }
 
@@ -103,8 +151,12 @@ public class PortScanner{
 
     private void displayScanInfo(){
         System.out.println("\n Target: " + targetHost);
-        System.out.println("Port range: " + startPort + "-" + endPort);
-        System.out.println("Timeout: " + PortChecker.getTimeout() + "ms");
+        System.out.println("Port range: " + portDescription);
+        System.out.println("Timeout: " + PortChecker.getTimeout() + "ms"
+            + (PortChecker.isAdaptiveTimeout() ? " (adaptive ceiling)" : ""));
+        if (randomSeed != null){
+            System.out.println("Order: random (seed " + randomSeed + ")");
+        }
         System.out.println();
     }
 
@@ -129,7 +181,7 @@ public class PortScanner{
 
     private void displaySummary(){
         long duration = (scanEndTime - scanStartTime) / 1000;
-        int totalScanned = endPort - startPort + 1;
+        int totalScanned = ports.length;
         int openPorts = results.size();
 
     System.out.println("\n════════════════════════════════════════");
@@ -139,6 +191,25 @@ public class PortScanner{
         System.out.println(" Total ports scanned: " + totalScanned);
         System.out.println(" Open ports found: " + openPorts);
 
+        RttEstimator estimator = PortChecker.getEstimator(targetHost);
+        if (estimator != null){
+            System.out.println(" Adaptive timeout: " + estimator);
+        }
+
+        ResultCache cache = PortChecker.getCache();
+        if (cache != null){
+            System.out.println(" Result cache: " + cache);
+        }
+        String rateSummary = PortChecker.getRateSummary();
+        if (rateSummary != null){
+            System.out.println(" Rate limit: " + rateSummary);
+        }
+        String tlsSummary = TlsProber.getSummary();
+        if (tlsSummary != null){
+            System.out.println(" TLS: " + tlsSummary);
+        }
+        System.out.println(ScanMetrics.get().getSummary(" "));
+
         if (openPorts == 0){
             System.out.println("\n No open ports found in the specified range");
         }
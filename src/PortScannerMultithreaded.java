@@ -1,6 +1,13 @@
+import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 /**
  * PortScannerMultithreaded - Multi-threaded port scanner for improved performance
@@ -18,23 +25,54 @@ public class PortScannerMultithreaded {
 
     //Configuration
     private String targetHost;
+    private TargetSpec targets;
     private int startPort;
     private int endPort;
+    private int[] ports;
+    private String portDescription;
+    private Long randomSeed;
     private int threadPoolSize;
     private boolean grabBanners;
-
-    //Results and timing 
-    private List<ScanResult> results;
+    private int bannerThreads;
+    private boolean useVirtualThreads;
+    private boolean adaptiveConcurrency;
+    private ConcurrencyController controller;
+
+    //Results and timing: one compact state store per host
+    private final Map<String, PortStateStore> stores = new ConcurrentHashMap<>();
+    private ScanJournal journal;
+    private String restoredFrom;
+    private long restoredPorts;
+    private final List<Consumer<ScanResult>> listeners = new CopyOnWriteArrayList<>();
     private long scanStartTime;
     private long scanEndTime;
 
-    //Thread-safe counter for progress
-    private AtomicInteger scannedPorts;
-    private AtomicInteger totalPorts;
+    //With banners on, open connections are read here while workers keep probing
+    private BannerStage bannerStage;
+
+    //Workers publish open ports here, one consumer thread stores/prints/exports them
+    private ResultRingBuffer<ScanResult> ring;
+    private volatile boolean probesDone;
+
+    //Progress and result lines are drawn by the renderer thread
+    private ConsoleRenderer console;
+    private AtomicLong totalPorts;
 
     //Default thread pool size
     private static final int DEFAULT_THREAD_POOL_SIZE = 100;
 
+    //Most platform threads started at once (same cap as -t without --vthreads)
+    private static final int MAX_PLATFORM_THREADS = 1000;
+
+    //Longest scan before the remaining probes are cancelled
+    private static final long SCAN_TIMEOUT_MINUTES = 10;
+
+    //Slots in the result ring buffer
+    private static final int RESULT_RING_CAPACITY = 4096;
+
+    //Starting limit for adaptive concurrency
+    private static final int INITIAL_ADAPTIVE_LIMIT = 16;
+
 
     /**
      * Constructor with default thread pool size (100 threads)
@@ -72,18 +110,132 @@ public class PortScannerMultithreaded {
      */
 
     public PortScannerMultithreaded(String targetHost, int startPort, int endPort, int threadPoolSize, boolean grabBanners){
-        this.targetHost = targetHost;
+        this(TargetSpec.parse(targetHost), startPort, endPort, threadPoolSize, grabBanners);
+    }
+
+    /**
+     * Constructor for several targets sharing one thread pool
+     * Every (host, port) pair is scheduled on the same executor
+     * 
+     * @param targets Hosts to scan (single host, CIDR, ranges or comma list)
+     * @param startPort First port in range to scan
+     * @param endPort Last port in range to scan
+     * @param threadPoolSize Number of concurrent threads to use
+     * @param grabBanners Whether to attempt banner grabbing
+     */
+
+    public PortScannerMultithreaded(TargetSpec targets, int startPort, int endPort, int threadPoolSize, boolean grabBanners){
+        this.targetHost = targets.toString();
+        this.targets = targets;
         this.startPort = startPort;
         this.endPort = endPort;
+        this.ports = IntStream.rangeClosed(startPort, endPort).toArray();
+        this.portDescription = startPort + "-" + endPort;
         this.threadPoolSize = threadPoolSize;
         this.grabBanners = grabBanners;
 
-        //Thread-safe list for concurrent access
-        this.results = new CopyOnWriteArrayList<>();
+        this.ring = new ResultRingBuffer<>(RESULT_RING_CAPACITY);
+
+        this.totalPorts = new AtomicLong(targets.size() * (endPort - startPort + 1));
+    }
+
+    /**
+     * Registers a listener called for every open port as soon as it is found
+     * (e.g. a StreamingExporter)
+     * 
+     * @param listener Consumer of open-port results
+     */
 
-        //Thread-safe counters
-        this.scannedPorts = new AtomicInteger(0);
-        this.totalPorts = new AtomicInteger(endPort - startPort + 1);
+    public void addResultListener(Consumer<ScanResult> listener){
+        listeners.add(listener);
+    }
+
+    /**
+     * Replaces the port range with an explicit list of ports, probed in list order
+     * (e.g. ServiceIdentifier.topPorts or orderByFrequency)
+     * 
+     * @param ports Ports to scan
+     * @param description How the ports are shown in the scan info (e.g. "top 100")
+     */
+
+    public void setPorts(int[] ports, String description){
+        this.ports = ports.clone();
+        this.portDescription = description;
+        this.totalPorts.set(targets.size() * ports.length);
+    }
+
+    /**
+     * Probes the (host, port) pairs in a pseudo-random order instead of
+     * host by host, so no host sees a burst of consecutive probes
+     * 
+     * @param seed Same seed, same order
+     */
+
+    public void setRandomOrder(long seed){
+        this.randomSeed = seed;
+    }
+
+    /**
+     * Checkpoints every probed port to a journal during the scan
+     * 
+     * @param journal Journal to append to (closed when the scan ends)
+     */
+
+    public void setJournal(ScanJournal journal){
+        this.journal = journal;
+    }
+
+    /**
+     * Restores port states probed before this scan (an interrupted scan's
+     * journal, or a baseline verify phase)
+     * Ports already recorded are skipped and their open ports are kept
+     * in the results, and handed to the result listeners when the scan
+     * starts (so a stream export still lists them)
+     * 
+     * @param restored Stores loaded with ScanJournal.load or BaselineDiff.verify
+     * @param source Where the states come from, shown in the output (e.g. "journal")
+     */
+
+    public void restore(Map<String, PortStateStore> restored, String source){
+        stores.putAll(restored);
+        restoredFrom = source;
+    }
+
+    /**
+     * Sets how many banners are read at once
+     * Banner grabbing runs on its own threads, apart from the probes, so
+     * a slow service never holds up a probe slot. Defaults to the thread
+     * count, at most 256.
+     * 
+     * @param bannerThreads Banner threads, 0 for the default
+     */
+
+    public void setBannerThreads(int bannerThreads){
+        this.bannerThreads = bannerThreads;
+    }
+
+    /**
+     * Enables virtual-thread mode
+     * Each probe runs on its own virtual thread and the thread count
+     * becomes the number of probes allowed in flight (semaphore permits)
+     * 
+     * @param useVirtualThreads true to use a virtual-thread-per-task executor
+     */
+
+    public void setUseVirtualThreads(boolean useVirtualThreads){
+        this.useVirtualThreads = useVirtualThreads;
+    }
+
+    /**
+     * Enables adaptive concurrency (AIMD)
+     * The thread count becomes the upper bound, the number of probes in
+     * flight follows the timeout/error rate of the target
+     * 
+     * @param adaptiveConcurrency true to let a ConcurrencyController pick the limit
+     */
+
+    public void setAdaptiveConcurrency(boolean adaptiveConcurrency){
+        this.adaptiveConcurrency = adaptiveConcurrency;
     }
 
     /**
@@ -92,28 +244,88 @@ public class PortScannerMultithreaded {
      */
 
     public void scan(){
+        //Create executor first (fixed pool or virtual threads), the fallback may lower the thread count
+        ExecutorService executor = createExecutor();
+
         //Display scan information
         displayScanInfo();
 
         //Start timing 
         scanStartTime = System.currentTimeMillis();
 
+        //Banner stage, fed by the workers through a bounded queue
+        bannerStage = null;
+        if (grabBanners) {
+            int threads = getBannerThreads();
+            bannerStage = new BannerStage(threads, threads * BannerStage.QUEUE_PER_THREAD);
+        }
+
+        //Adaptive mode: the controller decides how many probes run at once
+        controller = adaptiveConcurrency
+            ? new ConcurrencyController(Math.min(INITIAL_ADAPTIVE_LIMIT, threadPoolSize), 1, threadPoolSize)
+            : null;
+
+        //Cap probes in flight with permits: virtual threads are unbounded, and a
+        //fixed pool would otherwise queue every (host, port) pair up front
+        Semaphore inFlight = controller == null ? new Semaphore(threadPoolSize) : null;
+
         System.out.println("Starting multi-threaded scan...");
-        System.out.println(" Using " + threadPoolSize + " concurrent threads\n");
+        if (controller != null) {
+            System.out.println(" Using adaptive concurrency, up to " + threadPoolSize + " probes in flight\n");
+        } else if (useVirtualThreads) {
+            System.out.println(" Using virtual threads, up to " + threadPoolSize + " probes in flight\n");
+        } else {
+            System.out.println(" Using " + threadPoolSize + " concurrent threads\n");
+        }
+
         System.out.println("PORT    STATE    SERVICE              TIME");
         System.out.println("────────────────────────────────────────────────");
 
-        //Create thread pool
-        ExecutorService executor = Executors.newFixedThreadPool(threadPoolSize);
+        //From here on workers never print, the renderer draws everything
+        console = new ConsoleRenderer(totalPorts.get());
+        console.start();
+
+        //Open ports restored from a journal are part of the results, listeners
+        //(stream export, baseline diff) get them like any port found live
+        for (PortStateStore store : stores.values()) {
+            for (ScanResult result : store.toScanResults()) {
+                for (Consumer<ScanResult> listener : listeners) {
+                    listener.accept(result);
+                }
+                console.println((targets.size() > 1 ? result.getHost() + "  " : "") + result + " (" + restoredFrom + ")");
+            }
+        }
 
-        //Submit scan tasks for each port
-        for (int port = startPort; port <= endPort; port++){
-            final int currentPort = port;
+        //Single consumer draining the result ring, started after the restored
+        //ports so listeners are only ever called from one thread
+        probesDone = false;
+        Thread consumer = new Thread(this::consumeResults, "result-consumer");
+        consumer.start();
 
-            //Submit task to thread pool
-            executor.submit(() -> {
-                scanPort(currentPort);
-            });
+        if (journal != null) {
+            journal.start(stores.values());
+        }
+
+        //Submit scan tasks for each (host, port) pair
+        restoredPorts = 0;
+        try {
+            if (randomSeed != null) {
+                //Walk the pair indexes in permuted order, nothing is materialized
+                ProbePermutation order = new ProbePermutation(totalPorts.get(), randomSeed);
+                for (long i = 0; i < order.size(); i++) {
+                    long pair = order.get(i);
+                    submitPair(executor, inFlight, targets.get(pair / ports.length), ports[(int) (pair % ports.length)]);
+                }
+            } else {
+                for (String host : targets) {
+                    for (int port : ports){
+                        submitPair(executor, inFlight, host, port);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            System.err.println("\n Scan Interrupted");
+            Thread.currentThread().interrupt();
         }
 
         //Shutdown executor (no new tasks accepted)
@@ -121,18 +333,42 @@ public class PortScannerMultithreaded {
 
         try {
             //Wait for all tasks to complete (max 10 minutes)
-            boolean finished = executor.awaitTermination(10, TimeUnit.MINUTES);
+            boolean finished = executor.awaitTermination(SCAN_TIMEOUT_MINUTES, TimeUnit.MINUTES);
 
             if (!finished) {
                 System.err.println("\n Warning: Scan timeout - forcing shutdown");
-                executor.shutdown();
+                stopProbes(executor);
             }
         } catch (InterruptedException e) {
             System.err.println("\n Scan Interrupted");
-            executor.shutdown();
+            stopProbes(executor);
             Thread.currentThread().interrupt();
         }
 
+        //Wait for the banners of the last open ports
+        if (bannerStage != null) {
+            try {
+                if (!bannerStage.finish(1, TimeUnit.MINUTES)) {
+                    System.err.println("\n Warning: Banner grabbing timeout - some banners are missing");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        //Let the consumer drain what is left
+        probesDone = true;
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        console.stop();
+
+        if (journal != null) {
+            journal.close();
+        }
+
         //End timing 
         scanEndTime = System.currentTimeMillis();
 
@@ -142,80 +378,208 @@ public class PortScannerMultithreaded {
 
     }
 
+    /**
+     * Cancels the queued probes and waits for the running ones, so their
+     * results still reach the stores before the final journal checkpoint
+     * A probe ends within its connect timeout, one still running after
+     * that is left out of the journal and probed again on --resume.
+     * 
+     * @param executor Executor running the probes
+     */
+
+    private void stopProbes(ExecutorService executor){
+        executor.shutdownNow();
+        boolean interrupted = Thread.interrupted();
+        try {
+            if (!executor.awaitTermination(PortChecker.getTimeout() + 1000L, TimeUnit.MILLISECONDS)) {
+                System.err.println(" Warning: Some probes are still running, their ports are not journaled");
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Submits the probe of one (host, port) pair, unless the pair was
+     * already probed before the scan (journal or baseline verify)
+     */
+
+    private void submitPair(ExecutorService executor, Semaphore inFlight, String host, int port)
+            throws InterruptedException {
+        PortStateStore restored = stores.get(host);
+        if (restored != null && restored.isProbed(port)) {
+            restoredPorts++;
+            console.increment();
+            return;
+        }
+        submitProbe(executor, inFlight, host, port);
+    }
+
+    /**
+     * Submits one probe, waiting first for a free slot if concurrency is limited
+     * 
+     * @param executor Executor running the probes
+     * @param inFlight Permits for probes in flight, or null in adaptive mode
+     * @param host Host to scan
+     * @param port Port number to scan
+     * @throws InterruptedException if interrupted while waiting for a slot
+     */
+
+    private void submitProbe(ExecutorService executor, Semaphore inFlight, String host, int port)
+            throws InterruptedException {
+        if (controller != null) {
+            controller.acquire();
+        } else if (inFlight != null) {
+            inFlight.acquire();
+        }
+
+        //Submit task to executor
+        executor.submit(() -> {
+            boolean lost = true;
+            try {
+                lost = scanPort(host, port);
+            } finally {
+                if (controller != null) {
+                    controller.release(lost);
+                } else if (inFlight != null) {
+                    inFlight.release();
+                }
+            }
+        });
+    }
+
+    /**
+     * Creates the executor for the configured execution mode
+     * Virtual threads need Java 21+, older runtimes fall back to a fixed
+     * pool capped to the platform-thread limit (one stack per thread)
+     * 
+     * @return ExecutorService running the probe tasks
+     */
+
+    private ExecutorService createExecutor(){
+        if (useVirtualThreads) {
+            try {
+                //Looked up reflectively so the project still compiles on Java 17
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("Warning: Virtual threads require Java 21+, using at most "
+                    + Math.min(threadPoolSize, MAX_PLATFORM_THREADS) + " platform threads");
+                useVirtualThreads = false;
+                threadPoolSize = Math.min(threadPoolSize, MAX_PLATFORM_THREADS);
+            }
+        }
+
+        return Executors.newFixedThreadPool(threadPoolSize);
+    }
+
     /**
      * Scans a single port (called by worker threads)
      * Thread-safe method for concurrent execution
      * 
+     * @param host Host to scan
      * @param port Port number to scan
+     * @return true if the port did not answer (timeout or error)
      */
 
-    private void scanPort(int port){
-        //Check the port
-        ScanResult result = PortChecker.checkPort(targetHost, port, grabBanners);
+    private boolean scanPort(String host, int port){
+        PortStateStore store = getStore(host);
 
-        //If open, store and display
-        if (result.isOpen()) {
-            results.add(result);
+        //Banners on: open ports go through the banner stage, which publishes them
+        if (bannerStage != null) {
+            PortChecker.checkPort(host, port, store, bannerStage, ring::publish);
+            console.increment();
+            return store.getState(port) == PortStateStore.FILTERED;
+        }
 
-            //Thread-safe display
-            synchronized (System.out) {
-                System.out.println(result.toString());
-            }
+        //Check the port, closed/filtered ports only set a bit in the store
+        ScanResult result = PortChecker.checkPort(host, port, grabBanners, store);
+
+        //If open, hand over to the result consumer (lock-free)
+        if (result != null) {
+            ring.publish(result);
         }
-        //Update progress (thread-safe)
-        int scanned = scannedPorts.incrementAndGet();
-        displayProgress(scanned, totalPorts.get());
+        //Count progress (LongAdder, no contention between workers)
+        console.increment();
+
+        return result == null && store.getState(port) == PortStateStore.FILTERED;
     }
 
     /**
-     * Displays initial scan configuration
+     * Gets the banner thread count, the configured one or the thread count (at most 256)
+     * 
+     * @return Banner threads to start
      */
-    private void displayScanInfo(){
-        System.out.println("\n Target: " + targetHost);
-        System.out.println(" Port range: " + startPort + "-" + endPort);
-        System.out.println(" Timeout: " + PortChecker.getTimeout() + "ms");
-        System.out.println(" Threads: " + threadPoolSize);
-        System.out.println();        
+
+    private int getBannerThreads(){
+        return BannerStage.threadsFor(bannerThreads, threadPoolSize);
     }
 
     /**
-     * Displays scan progress (thread-safe)
+     * Gets (or creates) the state store of a host
      * 
-     * @param current Current number of ports scanned
-     * @param total Total number of ports to scan
+     * @param host Hostname or IP address
+     * @return The host's PortStateStore
+     */
+
+    private PortStateStore getStore(String host){
+        return stores.computeIfAbsent(host, PortStateStore::new);
+    }
+
+    /**
+     * Result consumer loop (single thread)
+     * Stores, displays and exports open ports published by the workers
      */
 
-    private synchronized void displayProgress(int current, int total){
-        //Update every 10 ports or at completion
-        if (current % 10 == 0 || current == total){
-            int percentage = (current * 100) / total;
-
-            //ANSI color codes
-            String GREEN = "\u001B[32m";
-            String BLUE = "\u001B[34m";
-            String RESET = "\u001B[0m";
-
-            //Create progress bar 
-            int barLength = 40;
-            int filled = (barLength * current) / total;
-            StringBuilder bar = new StringBuilder("\rProgress: [");
-
-            for(int i = 0; i < barLength; i++){
-                if(i < filled){
-                    bar.append(GREEN).append("█").append(RESET);
-                } else {
-                    bar.append("░");
+    private void consumeResults(){
+        while (true) {
+            //Read the flag first so nothing published before it is missed
+            boolean finished = probesDone;
+
+            if (ring.drain(this::handleResult) == 0) {
+                if (finished) {
+                    return;
                 }
+                LockSupport.parkNanos(200_000);
             }
-            bar.append("]")
-                .append(BLUE).append(percentage).append("%").append(RESET)
-                .append(" (").append(current).append("/").append(total).append(")");
-            
-            System.out.print(bar.toString());
-            System.out.flush();
         }
     }
 
+    /**
+     * Handles one open port on the consumer thread
+     * 
+     * @param result Open-port result
+     */
+
+    private void handleResult(ScanResult result){
+        getStore(result.getHost()).addOpen(result.getPort(), result.getResponseTime(), result.getBanner());
+        for (Consumer<ScanResult> listener : listeners) {
+            listener.accept(result);
+        }
+
+        console.println(targets.size() > 1 ? result.getHost() + "  " + result : result.toString());
+    }
+
+    /**
+     * Displays initial scan configuration
+     */
+    private void displayScanInfo(){
+        System.out.println("\n Target: " + targetHost
+            + (targets.size() > 1 ? " (" + targets.size() + " hosts)" : ""));
+        System.out.println(" Port range: " + portDescription);
+        System.out.println(" Timeout: " + PortChecker.getTimeout() + "ms"
+            + (PortChecker.isAdaptiveTimeout() ? " (adaptive ceiling)" : ""));
+        System.out.println(" Threads: " + threadPoolSize + (useVirtualThreads ? " (virtual)" : "")
+            + (grabBanners ? ", " + getBannerThreads() + " for banners" : ""));
+        if (randomSeed != null) {
+            System.out.println(" Order: random (seed " + randomSeed + ")");
+        }
+        System.out.println();        
+    }
+
     /**
      * Displays final scan summary with statistics
      */ 
@@ -223,19 +587,63 @@ public class PortScannerMultithreaded {
     private void displaySummary(){
         long durationMs = scanEndTime - scanStartTime;
         double durationSec = durationMs / 1000.0;
-        int totalScanned = totalPorts.get();
-        int openPorts = results.size();
+        long totalScanned = totalPorts.get();
+        int openPorts = 0;
+        long storeBytes = 0;
+        for (PortStateStore store : stores.values()) {
+            openPorts += store.countOpen();
+            storeBytes += store.estimateBytes();
+        }
 
-        //Calculate ports per second
-        double portsPerSecond = totalScanned / durationSec;
+        //Calculate ports per second (ports restored from a journal were not probed)
+        double portsPerSecond = (totalScanned - restoredPorts) / durationSec;
 
         System.out.println("════════════════════════════════════════");
         System.out.println("           SCAN SUMMARY");
         System.out.println("════════════════════════════════════════");
         System.out.printf(" Scan completed in %.2f seconds%n", durationSec);
-        System.out.println(" Total ports scanned: " + totalScanned);
+        if (targets.size() > 1) {
+            System.out.println(" Hosts scanned: " + targets.size());
+        }
+        System.out.println(" Total ports scanned: " + totalScanned
+            + (restoredPorts > 0 ? " (" + restoredPorts + " from " + restoredFrom + ")" : ""));
         System.out.println(" Open ports found: " + openPorts);
         System.out.printf("⚡ Speed: %.2f ports/second%n", portsPerSecond);
+        System.out.println(" Execution: " + (useVirtualThreads ? "virtual threads" : "fixed pool")
+            + " (" + threadPoolSize + " in flight)");
+
+        System.out.printf(" Port state: %.1f KB for %d host(s)%n", storeBytes / 1024.0, stores.size());
+
+        if (journal != null) {
+            System.out.println(" Journal: " + journal.getFile() + " (" + journal.getEntries() + " entries written)");
+        }
+
+        if (controller != null) {
+            System.out.println(" Concurrency: " + controller);
+        }
+
+        if (bannerStage != null) {
+            System.out.println(" Banner stage: " + bannerStage);
+        }
+
+        RttEstimator estimator = targets.size() == 1 ? PortChecker.getEstimator(targets.get(0)) : null;
+        if (estimator != null) {
+            System.out.println(" Adaptive timeout: " + estimator);
+        }
+
+        ResultCache cache = PortChecker.getCache();
+        if (cache != null) {
+            System.out.println(" Result cache: " + cache);
+        }
+        String rateSummary = PortChecker.getRateSummary();
+        if (rateSummary != null) {
+            System.out.println(" Rate limit: " + rateSummary);
+        }
+        String tlsSummary = TlsProber.getSummary();
+        if (tlsSummary != null) {
+            System.out.println(" TLS: " + tlsSummary);
+        }
+        System.out.println(ScanMetrics.get().getSummary(" "));
 
         if(openPorts == 0) {
             System.out.println("\n No open ports found in the specified range");
@@ -246,13 +654,44 @@ public class PortScannerMultithreaded {
 
     /**
      * Gets the list of scan results (only open ports)
+     * Built on demand from the state stores, hosts in sorted order
      * 
-     * @return List of ScanResult objects for open ports
+     * @return Snapshot of the ScanResult objects for open ports
      */
     public List<ScanResult> getResults() {
+        List<ScanResult> results = new ArrayList<>();
+        for (List<ScanResult> hostResults : getResultsByHost().values()) {
+            results.addAll(hostResults);
+        }
         return results;
     }
 
+    /**
+     * Gets the open ports grouped by host
+     * 
+     * @return Map from host to its open ports, hosts in sorted order
+     */
+    public Map<String, List<ScanResult>> getResultsByHost() {
+        Map<String, List<ScanResult>> byHost = new TreeMap<>();
+        for (PortStateStore store : stores.values()) {
+            List<ScanResult> hostResults = store.toScanResults();
+            if (!hostResults.isEmpty()) {
+                byHost.put(store.getHost(), hostResults);
+            }
+        }
+        return byHost;
+    }
+
+    /**
+     * Gets the recorded state of every probed port of a host
+     * 
+     * @param host Hostname or IP address
+     * @return The host's store, or null if the host was not scanned
+     */
+    public PortStateStore getPortStates(String host) {
+        return stores.get(host);
+    }
+
     /**
      * Gets the scan duration in milliseconds
      * 
@@ -0,0 +1,670 @@
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * PortScannerNio - Non-blocking port scanner built on NIO selectors
+ *
+ * Instead of one blocked thread per probe, connections are opened with
+ * non-blocking SocketChannels and completed through OP_CONNECT events.
+ * (host, port) pairs are striped across one Selector per CPU core, so
+ * thousands of connects can be in flight on a handful of threads.
+ *
+ * Produces the same ScanResult objects as the other scanners, so the
+ * results can be displayed and exported the same way.
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class PortScannerNio {
+
+    //Configuration
+    private String targetHost;
+    private TargetSpec targets;
+    private int startPort;
+    private int endPort;
+    private int[] ports;
+    private String portDescription;
+    private ProbePermutation permutation;
+    private int maxInFlight;
+    private boolean grabBanners;
+    private int bannerThreads;
+    private int shardCount;
+
+    //Results and timing
+    private List<ScanResult> results;
+    private final List<Consumer<ScanResult>> listeners = new CopyOnWriteArrayList<>();
+    private long scanStartTime;
+    private long scanEndTime;
+
+    //Progress and result lines are drawn by the renderer thread
+    private ConsoleRenderer console;
+    private long totalPorts;
+    private int portCount;
+
+    //Blocking banner reads run here, off the selector threads
+    private BannerStage bannerStage;
+
+    //Default number of connects in flight across all selectors
+    private static final int DEFAULT_MAX_IN_FLIGHT = 2000;
+
+    //Connects started per event loop pass
+    private static final int CONNECT_BATCH = 64;
+
+    /**
+     * Constructor with default in-flight limit (2000 connects)
+     *
+     * @param targetHost The target hostname or IP address
+     * @param startPort First port in range to scan
+     * @param endPort Last port in range to scan
+     */
+
+    public PortScannerNio(String targetHost, int startPort, int endPort){
+        this(targetHost, startPort, endPort, DEFAULT_MAX_IN_FLIGHT, false);
+    }
+
+    /**
+     * Constructor with custom in-flight limit and banner grabbing
+     *
+     * @param targetHost The target hostname or IP address
+     * @param startPort First port in range to scan
+     * @param endPort Last port in range to scan
+     * @param maxInFlight Maximum number of pending connects across all selectors
+     * @param grabBanners Whether to attempt banner grabbing
+     */
+
+    public PortScannerNio(String targetHost, int startPort, int endPort, int maxInFlight, boolean grabBanners){
+        this(TargetSpec.parse(targetHost), startPort, endPort, maxInFlight, grabBanners);
+    }
+
+    /**
+     * Constructor for several targets sharing the same selectors
+     *
+     * @param targets Hosts to scan (single host, CIDR, ranges or comma list)
+     * @param startPort First port in range to scan
+     * @param endPort Last port in range to scan
+     * @param maxInFlight Maximum number of pending connects across all selectors
+     * @param grabBanners Whether to attempt banner grabbing
+     */
+
+    public PortScannerNio(TargetSpec targets, int startPort, int endPort, int maxInFlight, boolean grabBanners){
+        this.targetHost = targets.toString();
+        this.targets = targets;
+        this.startPort = startPort;
+        this.endPort = endPort;
+        this.ports = IntStream.rangeClosed(startPort, endPort).toArray();
+        this.portDescription = startPort + "-" + endPort;
+        this.maxInFlight = maxInFlight;
+        this.grabBanners = grabBanners;
+
+        this.results = Collections.synchronizedList(new ArrayList<>());
+        updateTotals();
+    }
+
+    private void updateTotals(){
+        this.portCount = ports.length;
+        this.totalPorts = targets.size() * portCount;
+
+        //One selector per core, but never more shards than (host, port) pairs
+        this.shardCount = (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), totalPorts));
+    }
+
+    /**
+     * Replaces the port range with an explicit list of ports, probed in list order
+     * (e.g. ServiceIdentifier.topPorts or orderByFrequency)
+     * 
+     * @param ports Ports to scan
+     * @param description How the ports are shown in the scan info (e.g. "top 100")
+     */
+
+    public void setPorts(int[] ports, String description){
+        this.ports = ports.clone();
+        this.portDescription = description;
+        updateTotals();
+        if (permutation != null){
+            permutation = new ProbePermutation(totalPorts, permutation.getSeed());
+        }
+    }
+
+    /**
+     * Probes the (host, port) pairs in a pseudo-random order instead of
+     * host by host, so no host sees a burst of consecutive probes
+     *
+     * @param seed Same seed, same order
+     */
+
+    public void setRandomOrder(long seed){
+        this.permutation = new ProbePermutation(totalPorts, seed);
+    }
+
+    /**
+     * Sets how many banners are read at once
+     * Defaults to the connects in flight, at most 256, like the
+     * multi-threaded scanner's banner stage.
+     *
+     * @param bannerThreads Banner threads, 0 for the default
+     */
+
+    public void setBannerThreads(int bannerThreads){
+        this.bannerThreads = bannerThreads;
+    }
+
+    /**
+     * Registers a listener called for every open port as soon as it is found
+     * (e.g. a StreamingExporter)
+     *
+     * @param listener Consumer of open-port results
+     */
+
+    public void addResultListener(Consumer<ScanResult> listener){
+        listeners.add(listener);
+    }
+
+    /**
+     * Executes the non-blocking scan
+     * Starts one selector thread per shard and waits for all of them
+     */
+
+    public void scan(){
+        displayScanInfo();
+
+        scanStartTime = System.currentTimeMillis();
+
+        System.out.println("Starting non-blocking scan...");
+        System.out.println(" Using " + shardCount + " selector(s), up to " + maxInFlight + " connects in flight"
+            + (grabBanners ? ", " + BannerStage.threadsFor(bannerThreads, maxInFlight) + " threads for banners" : "") + "\n");
+        System.out.println("PORT    STATE    SERVICE              TIME");
+        System.out.println("────────────────────────────────────────────────");
+
+        console = new ConsoleRenderer(totalPorts);
+        console.start();
+
+        //Banner grabbing is blocking, keep it off the selector threads
+        bannerStage = null;
+        if (grabBanners){
+            int threads = BannerStage.threadsFor(bannerThreads, maxInFlight);
+            bannerStage = new BannerStage(threads, threads * BannerStage.QUEUE_PER_THREAD);
+        }
+
+        List<Thread> shards = new ArrayList<>();
+        int perShardLimit = Math.max(1, maxInFlight / shardCount);
+
+        for (int shard = 0; shard < shardCount; shard++){
+            final int firstIndex = shard;
+            Thread thread = new Thread(() -> runShard(firstIndex, perShardLimit),
+                "nio-shard-" + shard);
+            shards.add(thread);
+            thread.start();
+        }
+
+        try {
+            for (Thread thread : shards){
+                thread.join();
+            }
+
+            //Wait for the banners of the last open ports
+            if (bannerStage != null && !bannerStage.finish(1, TimeUnit.MINUTES)){
+                System.err.println("\n Warning: Banner grabbing timeout - some banners are missing");
+            }
+        } catch (InterruptedException e) {
+            System.err.println("\n Scan Interrupted");
+            Thread.currentThread().interrupt();
+        }
+        console.stop();
+
+        scanEndTime = System.currentTimeMillis();
+
+        System.out.println("\n");
+        displaySummary();
+    }
+
+    /**
+     * Pending connect attempt tracked by a shard
+     */
+    private static class Probe {
+        final String host;
+        final int port;
+        final SocketChannel channel;
+        final long startNanos;
+        final long deadlineNanos;
+        boolean done;
+        long elapsedNanos;
+
+        Probe(String host, int port, SocketChannel channel, long startNanos, long deadlineNanos){
+            this.host = host;
+            this.port = port;
+            this.channel = channel;
+            this.startNanos = startNanos;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+    /**
+     * Event loop of a single shard
+     * Handles every shardCount-th (host, port) pair starting at firstIndex.
+     * Pair i is host i / portCount and port ports[i % portCount], after
+     * going through the permutation in random order.
+     *
+     * @param firstIndex First pair index owned by this shard
+     * @param limit Maximum connects in flight for this shard
+     */
+
+    private void runShard(long firstIndex, int limit){
+        //Adaptive timeouts vary per probe, so order pending probes by deadline
+        PriorityQueue<Probe> pending = new PriorityQueue<>((a, b) -> Long.compare(a.deadlineNanos, b.deadlineNanos));
+        //Open connections waiting to be handed to the banner stage
+        List<Probe> handoffs = new ArrayList<>();
+        ResultCache cache = PortChecker.getCache();
+        ScanMetrics metrics = ScanMetrics.get();
+        long nextIndex = firstIndex;
+        int inFlight = 0;
+
+        //Global rate limit: tokens are taken a batch at a time and spent by this shard
+        RateLimiter limiter = PortChecker.getRateLimiter();
+        int budget = 0;
+        //Pair already looked up in the cache, waiting for a token
+        long cacheMissed = -1;
+
+        try (Selector selector = Selector.open()) {
+            while (nextIndex < totalPorts || inFlight > 0){
+                //Fill the window, a batch at a time so completions are seen promptly
+                int started = 0;
+                long throttleNanos = 0;
+                while (inFlight < limit && nextIndex < totalPorts && started++ < CONNECT_BATCH){
+                    long pair = permutation != null ? permutation.get(nextIndex) : nextIndex;
+                    String host = targets.get(pair / portCount);
+                    int port = ports[(int) (pair % portCount)];
+
+                    //Fresh result from an earlier run
+                    if (nextIndex != cacheMissed){
+                        ResultCache.Entry cached = cache != null ? cache.get(host, port, grabBanners) : null;
+                        if (cached != null){
+                            recordResult(host, port, cached.getState(),
+                                TimeUnit.MILLISECONDS.toNanos(cached.getResponseTime()), cached.getBanner(), false);
+                            nextIndex += shardCount;
+                            continue;
+                        }
+                        cacheMissed = nextIndex;
+                    }
+
+                    //Rate limits: without a token the pair waits for a later round
+                    if (limiter != null && budget == 0 && (budget = limiter.tryAcquire(CONNECT_BATCH)) == 0){
+                        //At least 1ns: a throttled round always waits in select()
+                        throttleNanos = Math.max(1, limiter.nanosUntilAvailable());
+                        break;
+                    }
+                    RateLimiter hostLimiter = PortChecker.getHostLimiter(host);
+                    if (hostLimiter != null && hostLimiter.tryAcquire(1) == 0){
+                        throttleNanos = Math.max(1, hostLimiter.nanosUntilAvailable());
+                        break;
+                    }
+                    if (limiter != null){
+                        budget--;
+                    }
+                    nextIndex += shardCount;
+
+                    InetAddress address;
+                    try {
+                        address = HostResolver.resolve(host);
+                    } catch (UnknownHostException e) {
+                        //Reported before the scan, see Main
+                        console.increment();
+                        continue;
+                    }
+
+                    long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(PortChecker.getTimeout(host));
+                    Probe probe = startConnect(selector, address, host, port, timeoutNanos, handoffs);
+                    if (probe != null){
+                        pending.add(probe);
+                        inFlight++;
+                    }
+                }
+
+                //Wait until the oldest probe expires (or the next token) at the latest,
+                //don't wait with room left
+                if (throttleNanos == 0 && inFlight < limit && nextIndex < totalPorts){
+                    selector.selectNow();
+                } else {
+                    long waitMs = throttleNanos > 0 ? TimeUnit.NANOSECONDS.toMillis(throttleNanos) : Long.MAX_VALUE;
+                    Probe oldest = firstPending(pending);
+                    if (oldest != null){
+                        waitMs = Math.min(waitMs, TimeUnit.NANOSECONDS.toMillis(oldest.deadlineNanos - System.nanoTime()));
+                    }
+                    selector.select(waitMs == Long.MAX_VALUE ? 1 : Math.max(1, waitMs));
+                }
+
+                //Completed connects
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()){
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    Probe probe = (Probe) key.attachment();
+                    boolean open;
+                    boolean answered = true;
+                    try {
+                        open = probe.channel.finishConnect();
+                    } catch (ConnectException e) {
+                        //Connection refused = port is closed
+                        open = false;
+                    } catch (IOException e) {
+                        open = false;
+                        answered = false;
+                    }
+
+                    if (open || !probe.channel.isConnectionPending()){
+                        //Open and refused connects both took one round trip
+                        long elapsed = System.nanoTime() - probe.startNanos;
+                        RttEstimator estimator = PortChecker.getEstimator(probe.host);
+                        if (estimator != null && answered){
+                            estimator.addSample(elapsed);
+                        }
+                        if (open){
+                            metrics.recordOpen(elapsed);
+                        } else if (answered){
+                            metrics.recordRefused(elapsed);
+                        } else {
+                            metrics.recordError();
+                        }
+                        key.cancel();
+                        int state = open ? PortStateStore.OPEN : answered ? PortStateStore.CLOSED : PortStateStore.FILTERED;
+                        complete(probe, state, handoffs);
+                        inFlight--;
+                    }
+                }
+
+                //Timed out connects = closed/filtered
+                long now = System.nanoTime();
+                while (!pending.isEmpty() && (pending.peek().done || pending.peek().deadlineNanos <= now)){
+                    Probe probe = pending.poll();
+                    if (!probe.done){
+                        metrics.recordTimeout();
+                        complete(probe, PortStateStore.FILTERED, handoffs);
+                        inFlight--;
+                    }
+                }
+
+                if (!handoffs.isEmpty()){
+                    //Flush cancelled keys so the channels can switch to blocking mode
+                    selector.selectNow();
+                    for (Probe probe : handoffs){
+                        handOff(probe);
+                    }
+                    handoffs.clear();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("\n Selector error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Opens a non-blocking connection and registers it for OP_CONNECT
+     *
+     * @return The pending probe, or null if the attempt finished immediately
+     */
+
+    private Probe startConnect(Selector selector, InetAddress address, String host, int port, long timeoutNanos,
+                               List<Probe> handoffs){
+        ScanMetrics metrics = ScanMetrics.get();
+        metrics.probeStarted();
+        long start = System.nanoTime();
+        SocketChannel channel = null;
+
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+
+            Probe probe = new Probe(host, port, channel, start, start + timeoutNanos);
+
+            //Loopback connects can complete right away
+            if (channel.connect(new InetSocketAddress(address, port))){
+                metrics.recordOpen(System.nanoTime() - start);
+                complete(probe, PortStateStore.OPEN, handoffs);
+                return null;
+            }
+
+            channel.register(selector, SelectionKey.OP_CONNECT, probe);
+            return probe;
+
+        } catch (ConnectException e) {
+            //Refused right away (loopback)
+            long elapsed = System.nanoTime() - start;
+            metrics.recordRefused(elapsed);
+            closeQuietly(channel);
+            recordResult(host, port, PortStateStore.CLOSED, elapsed, "", true);
+            return null;
+        } catch (IOException e) {
+            metrics.recordError();
+            closeQuietly(channel);
+            recordResult(host, port, PortStateStore.FILTERED, System.nanoTime() - start, "", true);
+            return null;
+        }
+    }
+
+    /**
+     * Finishes a probe
+     * Open ports are queued for banner grabbing over the same connection
+     * when enabled, everything else is closed and recorded right away.
+     */
+
+    private void complete(Probe probe, int state, List<Probe> handoffs){
+        probe.done = true;
+
+        if (state == PortStateStore.OPEN && bannerStage != null){
+            probe.elapsedNanos = System.nanoTime() - probe.startNanos;
+            handoffs.add(probe);
+            return;
+        }
+
+        closeQuietly(probe.channel);
+        recordResult(probe.host, probe.port, state, System.nanoTime() - probe.startNanos, "", true);
+    }
+
+    /**
+     * Hands an open connection to the banner stage, which reads the banner
+     * over it and records the result
+     * Blocks the selector while the stage is full (backpressure).
+     */
+
+    private void handOff(Probe probe){
+        try {
+            probe.channel.configureBlocking(true);
+            bannerStage.submit(probe.channel.socket(), probe.port,
+                banner -> recordResult(probe.host, probe.port, PortStateStore.OPEN, probe.elapsedNanos, banner, true));
+            return;
+        } catch (IOException e) {
+            //Port is still open, just no banner
+            closeQuietly(probe.channel);
+        } catch (InterruptedException e) {
+            //Socket closed by the stage
+            Thread.currentThread().interrupt();
+        }
+        recordResult(probe.host, probe.port, PortStateStore.OPEN, probe.elapsedNanos, "", true);
+    }
+
+    /**
+     * Records a result and updates progress
+     *
+     * @param state PortStateStore.OPEN, CLOSED or FILTERED
+     * @param probed true if measured now (stored in the result cache), false if served from it
+     */
+
+    private void recordResult(String host, int port, int state, long elapsedNanos, String banner, boolean probed){
+        long responseTime = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        ResultCache cache = PortChecker.getCache();
+        if (probed && cache != null){
+            cache.put(host, port, state, responseTime, banner, grabBanners);
+        }
+
+        if (state == PortStateStore.OPEN){
+            addResult(new ScanResult(host, port, true, responseTime, banner, false));
+        }
+        console.increment();
+    }
+
+    /**
+     * Stores and displays an open port
+     */
+
+    private void addResult(ScanResult result){
+        results.add(result);
+        for (Consumer<ScanResult> listener : listeners){
+            listener.accept(result);
+        }
+
+        console.println(targets.size() > 1 ? result.getHost() + "  " + result : result.toString());
+    }
+
+    /**
+     * Returns the oldest probe still waiting, discarding finished ones
+     */
+
+    private static Probe firstPending(PriorityQueue<Probe> pending){
+        while (!pending.isEmpty() && pending.peek().done){
+            pending.poll();
+        }
+        return pending.peek();
+    }
+
+    private static void closeQuietly(SocketChannel channel){
+        if (channel == null){
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            //Nothing useful to do
+        }
+    }
+
+    /**
+     * Displays initial scan configuration
+     */
+    private void displayScanInfo(){
+        System.out.println("\n Target: " + targetHost
+            + (targets.size() > 1 ? " (" + targets.size() + " hosts)" : ""));
+        System.out.println(" Port range: " + portDescription);
+        System.out.println(" Timeout: " + PortChecker.getTimeout() + "ms"
+            + (PortChecker.isAdaptiveTimeout() ? " (adaptive ceiling)" : ""));
+        System.out.println(" Selectors: " + shardCount);
+        System.out.println(" Max in flight: " + maxInFlight);
+        if (permutation != null){
+            System.out.println(" Order: random (seed " + permutation.getSeed() + ")");
+        }
+        System.out.println();
+    }
+
+    /**
+     * Displays final scan summary with statistics
+     */
+
+    private void displaySummary(){
+        double durationSec = Math.max(0.001, (scanEndTime - scanStartTime) / 1000.0);
+        int openPorts = results.size();
+
+        System.out.println("════════════════════════════════════════");
+        System.out.println("           SCAN SUMMARY");
+        System.out.println("════════════════════════════════════════");
+        System.out.printf(" Scan completed in %.2f seconds%n", durationSec);
+        if (targets.size() > 1) {
+            System.out.println(" Hosts scanned: " + targets.size());
+        }
+        System.out.println(" Total ports scanned: " + totalPorts);
+        System.out.println(" Open ports found: " + openPorts);
+        System.out.printf("⚡ Speed: %.2f ports/second%n", totalPorts / durationSec);
+
+        RttEstimator estimator = targets.size() == 1 ? PortChecker.getEstimator(targets.get(0)) : null;
+        if (estimator != null) {
+            System.out.println(" Adaptive timeout: " + estimator);
+        }
+
+        ResultCache cache = PortChecker.getCache();
+        if (cache != null) {
+            System.out.println(" Result cache: " + cache);
+        }
+        String rateSummary = PortChecker.getRateSummary();
+        if (rateSummary != null){
+            System.out.println(" Rate limit: " + rateSummary);
+        }
+        String tlsSummary = TlsProber.getSummary();
+        if (tlsSummary != null){
+            System.out.println(" TLS: " + tlsSummary);
+        }
+        if (bannerStage != null){
+            System.out.println(" Banner stage: " + bannerStage);
+        }
+        System.out.println(ScanMetrics.get().getSummary(" "));
+
+        if (openPorts == 0) {
+            System.out.println("\n No open ports found in the specified range");
+        }
+
+        System.out.println("════════════════════════════════════════\n");
+    }
+
+    /**
+     * Gets the list of scan results (only open ports)
+     *
+     * @return List of ScanResult objects for open ports
+     */
+    public List<ScanResult> getResults() {
+        return results;
+    }
+
+    /**
+     * Gets the open ports grouped by host
+     *
+     * @return Map from host to its open ports, hosts in sorted order
+     */
+    public Map<String, List<ScanResult>> getResultsByHost() {
+        Map<String, List<ScanResult>> byHost = new TreeMap<>();
+        synchronized (results) {
+            for (ScanResult result : results) {
+                byHost.computeIfAbsent(result.getHost(), h -> new ArrayList<>()).add(result);
+            }
+        }
+        return byHost;
+    }
+
+    /**
+     * Gets the scan duration in milliseconds
+     *
+     * @return Scan duration, or 0 if scan hasn't completed
+     */
+    public long getScanDuration(){
+        if (scanEndTime > 0 && scanStartTime > 0){
+            return scanEndTime - scanStartTime;
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the scan duration in seconds
+     *
+     * @return Scan duration in seconds, or 0.0 if scan hasn't completed
+     */
+    public double getScanTime(){
+        if (scanEndTime > 0 && scanStartTime > 0){
+            return (scanEndTime - scanStartTime) / 1000.0;
+        }
+        return 0.0;
+    }
+}
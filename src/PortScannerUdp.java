@@ -0,0 +1,599 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * PortScannerUdp - UDP port scanner on a single selector thread
+ *
+ * Every probe is a connected, non-blocking DatagramChannel carrying the
+ * request of its port's protocol (see UdpPayloads). Connecting the channel
+ * lets the kernel drop datagrams from anyone else and report the ICMP
+ * "port unreachable" of a closed port as a PortUnreachableException.
+ *
+ *   - reply carrying the probe id       -> OPEN (the reply is decoded)
+ *   - ICMP port unreachable             -> CLOSED
+ *   - no answer after MAX_TRIES sends   -> OPEN|FILTERED
+ *
+ * Unanswered probes are sent again after a doubling wait (timeout/4, /2,
+ * then the full timeout). Probes wait in a deadline queue, not on threads,
+ * so one thread keeps tens of thousands of them outstanding.
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class PortScannerUdp {
+
+    //Configuration
+    private String targetHost;
+    private TargetSpec targets;
+    private int[] ports;
+    private String portDescription;
+    private ProbePermutation permutation;
+    private int maxInFlight;
+
+    //Results and timing
+    private List<ScanResult> results;
+    private final List<Consumer<ScanResult>> listeners = new CopyOnWriteArrayList<>();
+    private final List<String> openFiltered = new ArrayList<>();
+    private long scanStartTime;
+    private long scanEndTime;
+
+    //Statistics (scan thread only)
+    private long closedPorts;
+    private long filteredPorts;
+    private long datagramsSent;
+    private long retransmits;
+    private int peakInFlight;
+
+    //Progress and result lines are drawn by the renderer thread
+    private ConsoleRenderer console;
+    private long totalPorts;
+    private int portCount;
+
+    //Default number of probes waiting for a reply
+    public static final int DEFAULT_MAX_IN_FLIGHT = 2000;
+
+    //Sends per probe before it is reported open|filtered
+    public static final int MAX_TRIES = 3;
+
+    //New probes started per event loop pass
+    private static final int SEND_BATCH = 64;
+
+    //Open|filtered ports listed one by one in the summary, up to this count
+    private static final int MAX_LISTED = 20;
+
+    /**
+     * Constructor
+     *
+     * @param targets Hosts to scan (single host, CIDR, ranges or comma list)
+     * @param startPort First port in range to scan
+     * @param endPort Last port in range to scan
+     * @param maxInFlight Maximum number of probes waiting for a reply
+     */
+
+    public PortScannerUdp(TargetSpec targets, int startPort, int endPort, int maxInFlight){
+        this.targetHost = targets.toString();
+        this.targets = targets;
+        this.ports = IntStream.rangeClosed(startPort, endPort).toArray();
+        this.portDescription = startPort + "-" + endPort;
+        this.maxInFlight = maxInFlight;
+
+        this.results = Collections.synchronizedList(new ArrayList<>());
+        updateTotals();
+    }
+
+    private void updateTotals(){
+        this.portCount = ports.length;
+        this.totalPorts = targets.size() * portCount;
+    }
+
+    /**
+     * Replaces the port range with an explicit list of ports, probed in list order
+     * (e.g. ServiceIdentifier.orderByUdpFrequency)
+     *
+     * @param ports Ports to scan
+     * @param description How the ports are shown in the scan info (e.g. "top 100")
+     */
+
+    public void setPorts(int[] ports, String description){
+        this.ports = ports.clone();
+        this.portDescription = description;
+        updateTotals();
+        if (permutation != null){
+            permutation = new ProbePermutation(totalPorts, permutation.getSeed());
+        }
+    }
+
+    /**
+     * Probes the (host, port) pairs in a pseudo-random order instead of
+     * host by host
+     *
+     * @param seed Same seed, same order
+     */
+
+    public void setRandomOrder(long seed){
+        this.permutation = new ProbePermutation(totalPorts, seed);
+    }
+
+    /**
+     * Registers a listener called for every open port as soon as it is found
+     * (e.g. a StreamingExporter)
+     *
+     * @param listener Consumer of open-port results
+     */
+
+    public void addResultListener(Consumer<ScanResult> listener){
+        listeners.add(listener);
+    }
+
+    /**
+     * Executes the UDP scan on the calling thread
+     */
+
+    public void scan(){
+        displayScanInfo();
+
+        scanStartTime = System.currentTimeMillis();
+
+        System.out.println("Starting UDP scan...");
+        System.out.println(" Up to " + maxInFlight + " probes in flight, " + MAX_TRIES + " tries per port\n");
+        System.out.println("PORT    STATE    SERVICE              TIME");
+        System.out.println("────────────────────────────────────────────────");
+
+        console = new ConsoleRenderer(totalPorts);
+        console.start();
+        try {
+            runEventLoop();
+        } catch (IOException e) {
+            System.err.println("\n Selector error: " + e.getMessage());
+        }
+        console.stop();
+
+        scanEndTime = System.currentTimeMillis();
+
+        System.out.println("\n");
+        displaySummary();
+    }
+
+    /**
+     * Probe waiting for a reply
+     */
+    private static class Probe {
+        final String host;
+        final int port;
+        final int id;
+        final ByteBuffer payload;
+        final DatagramChannel channel;
+        final long startNanos;
+        long sentNanos;
+        long deadlineNanos;
+        int tries;
+        boolean done;
+
+        Probe(String host, int port, int id, DatagramChannel channel, long startNanos){
+            this.host = host;
+            this.port = port;
+            this.id = id;
+            this.payload = ByteBuffer.wrap(UdpPayloads.payload(port, id));
+            this.channel = channel;
+            this.startNanos = startNanos;
+        }
+    }
+
+    /**
+     * Sends probes, reads replies and retransmits until every pair is decided
+     * Pair i is host i / portCount and port ports[i % portCount], after
+     * going through the permutation in random order.
+     */
+
+    private void runEventLoop() throws IOException {
+        //Probes ordered by their next retransmit (or give up) time
+        PriorityQueue<Probe> pending = new PriorityQueue<>((a, b) -> Long.compare(a.deadlineNanos, b.deadlineNanos));
+        //Replies are read one at a time into the same buffer
+        byte[] replyBytes = new byte[4096];
+        ByteBuffer reply = ByteBuffer.wrap(replyBytes);
+        long nextIndex = 0;
+        int inFlight = 0;
+        int limit = maxInFlight;
+
+        //Global rate limit: tokens are taken a batch at a time
+        RateLimiter limiter = PortChecker.getRateLimiter();
+        int budget = 0;
+
+        try (Selector selector = Selector.open()) {
+            while (nextIndex < totalPorts || inFlight > 0){
+                //Fill the window, a batch at a time so replies are seen promptly
+                int started = 0;
+                long throttleNanos = 0;
+                while (inFlight < limit && nextIndex < totalPorts && started++ < SEND_BATCH){
+                    long pair = permutation != null ? permutation.get(nextIndex) : nextIndex;
+                    String host = targets.get(pair / portCount);
+                    int port = ports[(int) (pair % portCount)];
+
+                    //Rate limits: without a token the pair waits for a later round
+                    if (limiter != null && budget == 0 && (budget = limiter.tryAcquire(SEND_BATCH)) == 0){
+                        //At least 1ns: a throttled round always waits in select()
+                        throttleNanos = Math.max(1, limiter.nanosUntilAvailable());
+                        break;
+                    }
+                    RateLimiter hostLimiter = PortChecker.getHostLimiter(host);
+                    if (hostLimiter != null && hostLimiter.tryAcquire(1) == 0){
+                        throttleNanos = Math.max(1, hostLimiter.nanosUntilAvailable());
+                        break;
+                    }
+
+                    InetAddress address;
+                    try {
+                        address = HostResolver.resolve(host);
+                    } catch (UnknownHostException e) {
+                        //Reported before the scan, see Main
+                        nextIndex++;
+                        console.increment();
+                        continue;
+                    }
+
+                    DatagramChannel channel;
+                    try {
+                        channel = DatagramChannel.open();
+                    } catch (IOException e) {
+                        if (inFlight == 0){
+                            throw e;
+                        }
+                        //Out of file descriptors: keep the window where it is, retry this pair later
+                        if (limit == maxInFlight){
+                            System.err.println("\nWarning: " + e.getMessage() + ", limiting UDP probes in flight to " + inFlight);
+                        }
+                        limit = inFlight;
+                        break;
+                    }
+                    if (limiter != null){
+                        budget--;
+                    }
+                    nextIndex++;
+
+                    Probe probe = startProbe(selector, channel, address, host, port);
+                    if (probe != null){
+                        pending.add(probe);
+                        inFlight++;
+                        peakInFlight = Math.max(peakInFlight, inFlight);
+                    }
+                }
+
+                //Wait until the next retransmit (or token) at the latest,
+                //don't wait with room left
+                if (throttleNanos == 0 && inFlight < limit && nextIndex < totalPorts){
+                    selector.selectNow();
+                } else {
+                    long waitMs = throttleNanos > 0 ? TimeUnit.NANOSECONDS.toMillis(throttleNanos) : Long.MAX_VALUE;
+                    Probe next = firstPending(pending);
+                    if (next != null){
+                        waitMs = Math.min(waitMs, TimeUnit.NANOSECONDS.toMillis(next.deadlineNanos - System.nanoTime()));
+                    }
+                    selector.select(waitMs == Long.MAX_VALUE ? 1 : Math.max(1, waitMs));
+                }
+
+                //Replies and ICMP errors
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()){
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    Probe probe = (Probe) key.attachment();
+                    int state = receive(probe, reply);
+                    if (state >= 0){
+                        String banner = state == PortStateStore.OPEN
+                            ? UdpPayloads.describe(probe.port, replyBytes, reply.position()) : "";
+                        complete(probe, state, banner);
+                        inFlight--;
+                    }
+                }
+
+                //Unanswered probes: send again, or give up after the last try
+                long now = System.nanoTime();
+                while (!pending.isEmpty() && (pending.peek().done || pending.peek().deadlineNanos <= now)){
+                    Probe probe = pending.poll();
+                    if (probe.done){
+                        continue;
+                    }
+                    if (probe.tries < MAX_TRIES){
+                        retransmits++;
+                        if (send(probe)){
+                            pending.add(probe);
+                            continue;
+                        }
+                    } else {
+                        openFiltered.add(targets.size() > 1 ? probe.host + ":" + probe.port : String.valueOf(probe.port));
+                        complete(probe, -1, "");
+                    }
+                    inFlight--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Connects a channel to the port, registers it and sends the first request
+     *
+     * @return The pending probe, or null if it was decided right away
+     */
+
+    private Probe startProbe(Selector selector, DatagramChannel channel, InetAddress address, String host, int port){
+        long start = System.nanoTime();
+        Probe probe = new Probe(host, port, ThreadLocalRandom.current().nextInt(), channel, start);
+        probe.sentNanos = start;
+        ScanMetrics.get().probeStarted();
+        try {
+            channel.configureBlocking(false);
+            channel.connect(new InetSocketAddress(address, port));
+            channel.register(selector, SelectionKey.OP_READ, probe);
+        } catch (IOException e) {
+            complete(probe, PortStateStore.FILTERED, "");
+            return null;
+        }
+        return send(probe) ? probe : null;
+    }
+
+    /**
+     * Sends (or resends) the request of a probe and schedules the next try
+     *
+     * @return true if the probe still waits for a reply
+     */
+
+    private boolean send(Probe probe){
+        try {
+            probe.payload.rewind();
+            probe.channel.write(probe.payload);
+        } catch (PortUnreachableException e) {
+            //ICMP of an earlier try, delivered on this write
+            complete(probe, PortStateStore.CLOSED, "");
+            return false;
+        } catch (IOException e) {
+            complete(probe, PortStateStore.FILTERED, "");
+            return false;
+        }
+        datagramsSent++;
+
+        //timeout/4, timeout/2, then timeout: the last wait is the longest
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(PortChecker.getTimeout(probe.host));
+        probe.sentNanos = System.nanoTime();
+        probe.deadlineNanos = probe.sentNanos + (timeoutNanos >> (MAX_TRIES - 1 - probe.tries));
+        probe.tries++;
+        return true;
+    }
+
+    /**
+     * Reads what arrived on a probe channel
+     *
+     * @param reply Buffer for the datagram, its position is the reply length after OPEN
+     * @return PortStateStore.OPEN, CLOSED or FILTERED, or -1 to keep waiting
+     */
+
+    private int receive(Probe probe, ByteBuffer reply){
+        //Several datagrams may be queued, e.g. a stray one before the reply
+        while (true){
+            reply.clear();
+            try {
+                if (probe.channel.read(reply) <= 0){
+                    return -1;
+                }
+            } catch (PortUnreachableException e) {
+                sampleRtt(probe);
+                return PortStateStore.CLOSED;
+            } catch (IOException e) {
+                //Other ICMP errors (host or network unreachable, prohibited)
+                return PortStateStore.FILTERED;
+            }
+            if (UdpPayloads.matches(probe.port, probe.id, reply.array(), reply.position())){
+                sampleRtt(probe);
+                return PortStateStore.OPEN;
+            }
+        }
+    }
+
+    /**
+     * Feeds the adaptive timeout with the time since the last send
+     */
+
+    private static void sampleRtt(Probe probe){
+        RttEstimator estimator = PortChecker.getEstimator(probe.host);
+        if (estimator != null){
+            estimator.addSample(System.nanoTime() - probe.sentNanos);
+        }
+    }
+
+    /**
+     * Closes a finished probe and records it
+     * Latencies in ScanMetrics run from the last send, the response time
+     * of the result from the first one.
+     *
+     * @param state PortStateStore.OPEN, CLOSED or FILTERED, -1 for open|filtered
+     */
+
+    private void complete(Probe probe, int state, String banner){
+        probe.done = true;
+        try {
+            //Also cancels its selection key
+            probe.channel.close();
+        } catch (IOException e) {
+            //Nothing useful to do
+        }
+
+        ScanMetrics metrics = ScanMetrics.get();
+        long now = System.nanoTime();
+        if (state == PortStateStore.OPEN){
+            metrics.recordOpen(now - probe.sentNanos);
+            long responseTime = TimeUnit.NANOSECONDS.toMillis(now - probe.startNanos);
+            addResult(ScanResult.udp(probe.host, probe.port, responseTime, banner));
+        } else if (state == PortStateStore.CLOSED){
+            metrics.recordRefused(now - probe.sentNanos);
+            closedPorts++;
+        } else if (state == PortStateStore.FILTERED){
+            metrics.recordError();
+            filteredPorts++;
+        } else {
+            metrics.recordTimeout();
+        }
+        console.increment();
+    }
+
+    /**
+     * Stores and displays an open port
+     */
+
+    private void addResult(ScanResult result){
+        results.add(result);
+        for (Consumer<ScanResult> listener : listeners){
+            listener.accept(result);
+        }
+
+        console.println(targets.size() > 1 ? result.getHost() + "  " + result : result.toString());
+    }
+
+    /**
+     * Returns the probe with the nearest deadline, discarding finished ones
+     */
+
+    private static Probe firstPending(PriorityQueue<Probe> pending){
+        while (!pending.isEmpty() && pending.peek().done){
+            pending.poll();
+        }
+        return pending.peek();
+    }
+
+    /**
+     * Displays initial scan configuration
+     */
+    private void displayScanInfo(){
+        System.out.println("\n Target: " + targetHost
+            + (targets.size() > 1 ? " (" + targets.size() + " hosts)" : ""));
+        System.out.println(" Port range: " + portDescription + " (UDP)");
+        System.out.println(" Timeout: " + PortChecker.getTimeout() + "ms"
+            + (PortChecker.isAdaptiveTimeout() ? " (adaptive ceiling)" : "")
+            + ", " + MAX_TRIES + " tries");
+        System.out.println(" Max in flight: " + maxInFlight);
+        if (permutation != null){
+            System.out.println(" Order: random (seed " + permutation.getSeed() + ")");
+        }
+        System.out.println();
+    }
+
+    /**
+     * Displays final scan summary with statistics
+     */
+
+    private void displaySummary(){
+        double durationSec = Math.max(0.001, (scanEndTime - scanStartTime) / 1000.0);
+        int openPorts = results.size();
+
+        System.out.println("════════════════════════════════════════");
+        System.out.println("           SCAN SUMMARY");
+        System.out.println("════════════════════════════════════════");
+        System.out.printf(" Scan completed in %.2f seconds%n", durationSec);
+        if (targets.size() > 1) {
+            System.out.println(" Hosts scanned: " + targets.size());
+        }
+        System.out.println(" Total ports scanned: " + totalPorts + " (UDP)");
+        System.out.println(" Open ports found: " + openPorts);
+        System.out.println(" Closed (port unreachable): " + closedPorts);
+        if (filteredPorts > 0) {
+            System.out.println(" Filtered (ICMP error): " + filteredPorts);
+        }
+        System.out.println(" Open|filtered (no reply): " + openFiltered.size()
+            + (openFiltered.isEmpty() || openFiltered.size() > MAX_LISTED ? "" : "  " + String.join(", ", openFiltered)));
+        System.out.println(" Datagrams sent: " + datagramsSent + " (" + retransmits + " retransmits), peak "
+            + peakInFlight + " in flight");
+        System.out.printf("⚡ Speed: %.2f ports/second%n", totalPorts / durationSec);
+
+        RttEstimator estimator = targets.size() == 1 ? PortChecker.getEstimator(targets.get(0)) : null;
+        if (estimator != null) {
+            System.out.println(" Adaptive timeout: " + estimator);
+        }
+        String rateSummary = PortChecker.getRateSummary();
+        if (rateSummary != null){
+            System.out.println(" Rate limit: " + rateSummary);
+        }
+        System.out.println(ScanMetrics.get().getSummary(" "));
+
+        if (openPorts == 0) {
+            System.out.println("\n No open ports found in the specified range");
+        }
+
+        System.out.println("════════════════════════════════════════\n");
+    }
+
+    /**
+     * Gets the list of scan results (only open ports)
+     *
+     * @return List of ScanResult objects for open ports
+     */
+    public List<ScanResult> getResults() {
+        return results;
+    }
+
+    /**
+     * Gets the ports that never answered, as "port" or "host:port"
+     *
+     * @return Open|filtered ports, in the order they were given up on
+     */
+    public List<String> getOpenFiltered() {
+        return Collections.unmodifiableList(openFiltered);
+    }
+
+    /**
+     * Gets the open ports grouped by host
+     *
+     * @return Map from host to its open ports, hosts in sorted order
+     */
+    public Map<String, List<ScanResult>> getResultsByHost() {
+        Map<String, List<ScanResult>> byHost = new TreeMap<>();
+        synchronized (results) {
+            for (ScanResult result : results) {
+                byHost.computeIfAbsent(result.getHost(), h -> new ArrayList<>()).add(result);
+            }
+        }
+        return byHost;
+    }
+
+    /**
+     * Gets the scan duration in milliseconds
+     *
+     * @return Scan duration, or 0 if scan hasn't completed
+     */
+    public long getScanDuration(){
+        if (scanEndTime > 0 && scanStartTime > 0){
+            return scanEndTime - scanStartTime;
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the scan duration in seconds
+     *
+     * @return Scan duration in seconds, or 0.0 if scan hasn't completed
+     */
+    public double getScanTime(){
+        if (scanEndTime > 0 && scanStartTime > 0){
+            return (scanEndTime - scanStartTime) / 1000.0;
+        }
+        return 0.0;
+    }
+}
@@ -0,0 +1,423 @@
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * PortStateStore - Compact per-host record of every probed port
+ *
+ * Keeps three bitsets over the 0-65535 port space (open, closed, filtered)
+ * instead of one ScanResult per probed port, plus a fourth flagging the
+ * ports changed since a reader last looked. The bitsets are split into
+ * chunks of 1024 ports, allocated the first time a port in them is
+ * recorded, so a host only pays for the ranges actually probed. Open
+ * ports, the only ones that answer with a connection, also get their
+ * response time, banner and time of discovery in primitive/parallel arrays.
+ *
+ * Closed and filtered marks are lock-free (CAS on the bitset words and the
+ * chunk slots) so any worker can record them. Every newly recorded port is
+ * also flagged as changed, so a reader such as ScanJournal can take just
+ * the ports recorded since its last visit. Open ports are added by a
+ * single writer (the scanner's result consumer). Full ScanResult objects
+ * are only built on demand, e.g. for export.
+ *
+ * A full-range scan costs about 33 KB per host (64 chunks of 4 x 16 words),
+ * a single port well under 1 KB, so a /16 sweep of a few ports fits in
+ * tens of MB.
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class PortStateStore {
+
+    //Port states
+    public static final int UNKNOWN = 0;
+    public static final int OPEN = 1;
+    public static final int CLOSED = 2;
+    public static final int FILTERED = 3;
+
+    private static final int PORT_SPACE = 65536;
+
+    //Number of 64-bit words covering the port space
+    public static final int WORDS = PORT_SPACE / 64;
+
+    //Chunks of 1024 ports (CHUNK_WORDS words), each holding the open, closed,
+    //filtered and changed words in turn
+    private static final int CHUNK_SHIFT = 10;
+    public static final int CHUNK_WORDS = (1 << CHUNK_SHIFT) / 64;
+    private static final int CHUNKS = PORT_SPACE >>> CHUNK_SHIFT;
+
+    //Word offsets of each bitset inside a chunk
+    private static final int OPEN_BITS = 0;
+    private static final int CLOSED_BITS = CHUNK_WORDS;
+    private static final int FILTERED_BITS = 2 * CHUNK_WORDS;
+    private static final int CHANGED_BITS = 3 * CHUNK_WORDS;
+    private static final int CHUNK_LENGTH = 4 * CHUNK_WORDS;
+
+    private static final int[] NO_INTS = new int[0];
+    private static final long[] NO_LONGS = new long[0];
+    private static final String[] NO_STRINGS = new String[0];
+
+    private static final DateTimeFormatter dateFormat =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final String host;
+
+    //One bit per port and state, null until a port of the chunk is recorded
+    private final AtomicReferenceArray<AtomicLongArray> chunks = new AtomicReferenceArray<>(CHUNKS);
+
+    //One bit per chunk with changed ports not taken yet
+    private final AtomicLong changedChunks = new AtomicLong();
+
+    //Open ports only, parallel arrays in discovery order (empty until the first one)
+    private int openCount;
+    private int[] openPorts = NO_INTS;
+    private int[] responseTimes = NO_INTS;
+    private long[] foundAt = NO_LONGS;
+    private String[] banners = NO_STRINGS;
+
+    /**
+     * Constructor
+     *
+     * @param host Host this store belongs to
+     */
+
+    public PortStateStore(String host){
+        this.host = host;
+    }
+
+    /**
+     * Records a refused port (any thread, lock-free)
+     *
+     * @param port Port number
+     */
+
+    public void markClosed(int port){
+        setBit(CLOSED_BITS, port);
+    }
+
+    /**
+     * Records a port that did not answer (any thread, lock-free)
+     *
+     * @param port Port number
+     */
+
+    public void markFiltered(int port){
+        setBit(FILTERED_BITS, port);
+    }
+
+    /**
+     * Records an open port with its details
+     *
+     * @param port Port number
+     * @param responseTime Connect time in milliseconds
+     * @param banner Service version info, or empty
+     */
+
+    public synchronized void addOpen(int port, long responseTime, String banner){
+        if (testBit(OPEN_BITS, port)){
+            return;
+        }
+        setBit(OPEN_BITS, port);
+
+        if (openCount == openPorts.length){
+            int size = Math.max(8, openCount * 2);
+            openPorts = Arrays.copyOf(openPorts, size);
+            responseTimes = Arrays.copyOf(responseTimes, size);
+            foundAt = Arrays.copyOf(foundAt, size);
+            banners = Arrays.copyOf(banners, size);
+        }
+
+        openPorts[openCount] = port;
+        responseTimes[openCount] = (int) Math.min(Integer.MAX_VALUE, responseTime);
+        foundAt[openCount] = System.currentTimeMillis();
+        //Most ports have no banner, share the empty string
+        banners[openCount] = banner == null || banner.isEmpty() ? "" : banner;
+        openCount++;
+    }
+
+    /**
+     * Records a full result (e.g. one replayed from a journal)
+     *
+     * @param result Scan result for this host
+     */
+
+    public void record(ScanResult result){
+        if (result.isOpen()){
+            addOpen(result.getPort(), result.getResponseTime(), result.getBanner());
+        } else if (result.isFiltered()){
+            markFiltered(result.getPort());
+        } else {
+            markClosed(result.getPort());
+        }
+    }
+
+    /**
+     * Gets the recorded state of a port
+     *
+     * @param port Port number
+     * @return OPEN, CLOSED, FILTERED or UNKNOWN if not probed yet
+     */
+
+    public int getState(int port){
+        AtomicLongArray chunk = chunks.get(port >>> CHUNK_SHIFT);
+        if (chunk == null){
+            return UNKNOWN;
+        }
+        int word = (port >>> 6) & (CHUNK_WORDS - 1);
+        long mask = 1L << (port & 63);
+        if ((chunk.get(OPEN_BITS + word) & mask) != 0){
+            return OPEN;
+        }
+        if ((chunk.get(CLOSED_BITS + word) & mask) != 0){
+            return CLOSED;
+        }
+        if ((chunk.get(FILTERED_BITS + word) & mask) != 0){
+            return FILTERED;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Checks if a port already has a recorded state
+     *
+     * @param port Port number
+     * @return true if the port was probed
+     */
+
+    public boolean isProbed(int port){
+        return getState(port) != UNKNOWN;
+    }
+
+    /**
+     * Gets 64 ports worth of "already probed" bits (any state)
+     * Port p is bit (p & 63) of word (p >>> 6)
+     *
+     * @param word Word index, 0 to WORDS-1
+     * @return Bits set for every port with a recorded state
+     */
+
+    public long probedWord(int word){
+        AtomicLongArray chunk = chunks.get(word / CHUNK_WORDS);
+        if (chunk == null){
+            return 0;
+        }
+        int offset = word & (CHUNK_WORDS - 1);
+        return chunk.get(OPEN_BITS + offset) | chunk.get(CLOSED_BITS + offset) | chunk.get(FILTERED_BITS + offset);
+    }
+
+    /**
+     * Takes the chunks holding ports recorded since the last call
+     * Chunk c covers words c*CHUNK_WORDS to (c+1)*CHUNK_WORDS-1 (1024 ports).
+     * A set bit may come with no changed word left (taken in the meantime).
+     *
+     * @return One bit per chunk, 0 if nothing changed (a single read)
+     */
+
+    public long takeChangedChunks(){
+        return changedChunks.get() == 0 ? 0 : changedChunks.getAndSet(0);
+    }
+
+    /**
+     * Takes the ports of a word recorded since the last call
+     * Call after takeChangedChunks: a port recorded in between is flagged
+     * again and reported next time, never lost.
+     *
+     * @param word Word index, 0 to WORDS-1
+     * @return Bits set for every newly recorded port
+     */
+
+    public long takeChangedWord(int word){
+        AtomicLongArray chunk = chunks.get(word / CHUNK_WORDS);
+        if (chunk == null){
+            return 0;
+        }
+        int index = CHANGED_BITS + (word & (CHUNK_WORDS - 1));
+        return chunk.get(index) == 0 ? 0 : chunk.getAndSet(index, 0);
+    }
+
+    /**
+     * Flags a recorded port as changed again (e.g. to retry writing it later)
+     *
+     * @param port Port number
+     */
+
+    public void markChanged(int port){
+        setBit(CHANGED_BITS, port);
+        long mask = 1L << (port >>> CHUNK_SHIFT);
+        if ((changedChunks.get() & mask) == 0){
+            changedChunks.getAndUpdate(bits -> bits | mask);
+        }
+    }
+
+    /**
+     * Forgets every change recorded so far (e.g. states loaded from a journal)
+     */
+
+    public void clearChanges(){
+        long taken = takeChangedChunks();
+        while (taken != 0){
+            int chunk = Long.numberOfTrailingZeros(taken);
+            taken &= taken - 1;
+            for (int i = 0; i < CHUNK_WORDS; i++){
+                takeChangedWord(chunk * CHUNK_WORDS + i);
+            }
+        }
+    }
+
+    /**
+     * Builds a ScanResult view of one open port
+     *
+     * @param port Port number
+     * @return The result, or null if the port is not recorded as open
+     */
+
+    public synchronized ScanResult getOpenResult(int port){
+        for (int i = 0; i < openCount; i++){
+            if (openPorts[i] == port){
+                return toScanResult(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds ScanResult views of the open ports (on demand, e.g. for export)
+     *
+     * @return New list of open-port results in discovery order
+     */
+
+    public synchronized List<ScanResult> toScanResults(){
+        List<ScanResult> views = new ArrayList<>(openCount);
+        for (int i = 0; i < openCount; i++){
+            views.add(toScanResult(i));
+        }
+        return views;
+    }
+
+    private ScanResult toScanResult(int i){
+        String timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(foundAt[i]), ZoneId.systemDefault())
+            .format(dateFormat);
+        return new ScanResult(host, openPorts[i], true, responseTimes[i], banners[i], false, timestamp);
+    }
+
+    /**
+     * Gets the host this store belongs to
+     *
+     * @return Hostname or IP address
+     */
+
+    public String getHost(){
+        return host;
+    }
+
+    /**
+     * Gets the number of open ports
+     *
+     * @return Open port count
+     */
+
+    public synchronized int countOpen(){
+        return openCount;
+    }
+
+    /**
+     * Gets the number of refused ports
+     *
+     * @return Closed port count
+     */
+
+    public int countClosed(){
+        return countBits(CLOSED_BITS);
+    }
+
+    /**
+     * Gets the number of ports that never answered
+     *
+     * @return Filtered port count
+     */
+
+    public int countFiltered(){
+        return countBits(FILTERED_BITS);
+    }
+
+    /**
+     * Estimates the memory held by this store
+     *
+     * @return Approximate size in bytes
+     */
+
+    public synchronized long estimateBytes(){
+        long bytes = 16 + CHUNKS * 4L + openPorts.length * (4L + 4L + 8L + 8L);
+        for (int i = 0; i < CHUNKS; i++){
+            if (chunks.get(i) != null){
+                bytes += 16 + CHUNK_LENGTH * 8L;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Sets a port's bit, flagging the port as changed if it was not set
+     *
+     * @return true if the bit was set by this call
+     */
+
+    private boolean setBit(int bits, int port){
+        AtomicLongArray chunk = chunkOf(port);
+        int word = bits + ((port >>> 6) & (CHUNK_WORDS - 1));
+        long mask = 1L << (port & 63);
+        long current;
+        do {
+            current = chunk.get(word);
+            if ((current & mask) != 0){
+                return false;
+            }
+        } while (!chunk.compareAndSet(word, current, current | mask));
+
+        if (bits != CHANGED_BITS){
+            markChanged(port);
+        }
+        return true;
+    }
+
+    private boolean testBit(int bits, int port){
+        AtomicLongArray chunk = chunks.get(port >>> CHUNK_SHIFT);
+        return chunk != null && (chunk.get(bits + ((port >>> 6) & (CHUNK_WORDS - 1))) & (1L << (port & 63))) != 0;
+    }
+
+    /**
+     * Gets the chunk holding a port, allocating it on first use
+     */
+
+    private AtomicLongArray chunkOf(int port){
+        int index = port >>> CHUNK_SHIFT;
+        AtomicLongArray chunk = chunks.get(index);
+        if (chunk == null){
+            //Racing writers: the first one wins, the others use its chunk
+            AtomicLongArray created = new AtomicLongArray(CHUNK_LENGTH);
+            chunk = chunks.compareAndSet(index, null, created) ? created : chunks.get(index);
+        }
+        return chunk;
+    }
+
+    private int countBits(int bits){
+        int count = 0;
+        for (int i = 0; i < CHUNKS; i++){
+            AtomicLongArray chunk = chunks.get(i);
+            if (chunk != null){
+                for (int j = 0; j < CHUNK_WORDS; j++){
+                    count += Long.bitCount(chunk.get(bits + j));
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * ProbePermutation - Pseudo-random order over the (host, port) index space
+ *
+ * Maps every index 0..size-1 to a distinct index 0..size-1, so scanners can
+ * walk pairs in a shuffled order without storing a shuffled list. Probes
+ * to the same host are spread over the whole scan instead of arriving in
+ * one burst, which keeps rate-based IDS and per-source throttling quiet.
+ *
+ * Built as a small-domain block cipher:
+ *   - a balanced Feistel network over the smallest even number of bits
+ *     covering size (so the domain is at most 4x size)
+ *   - cycle walking: outputs past size are encrypted again until they
+ *     land inside, which keeps the mapping a permutation of 0..size-1
+ *
+ * Memory is constant whatever the size (billions of pairs included), and
+ * the same seed always gives the same order.
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class ProbePermutation {
+
+    //Feistel rounds, 4 are enough for a pseudo-random permutation
+    private static final int ROUNDS = 4;
+
+    private final long size;
+    private final long seed;
+    private final int halfBits;
+    private final long halfMask;
+    private final long[] roundKeys = new long[ROUNDS];
+
+    /**
+     * Constructor
+     *
+     * @param size Number of indexes to permute (hosts x ports)
+     * @param seed Same seed, same order
+     */
+
+    public ProbePermutation(long size, long seed){
+        if (size < 1){
+            throw new IllegalArgumentException("Permutation size must be positive");
+        }
+        this.size = size;
+        this.seed = seed;
+
+        //Bits needed for the largest index, rounded up to an even count
+        int bits = Math.max(2, 64 - Long.numberOfLeadingZeros(size - 1));
+        this.halfBits = (bits + 1) / 2;
+        this.halfMask = (1L << halfBits) - 1;
+
+        long state = seed;
+        for (int round = 0; round < ROUNDS; round++){
+            state += 0x9E3779B97F4A7C15L;
+            roundKeys[round] = mix(state);
+        }
+    }
+
+    /**
+     * Gets the index visited at a given position
+     *
+     * @param position Position in the walk, 0 to size-1
+     * @return Index to probe, 0 to size-1 (each returned exactly once)
+     */
+
+    public long get(long position){
+        if (position < 0 || position >= size){
+            throw new IndexOutOfBoundsException("Position " + position + " out of " + size);
+        }
+
+        //Cycle walking: the domain is a power of four, re-encrypt until inside
+        long value = encrypt(position);
+        while (value >= size){
+            value = encrypt(value);
+        }
+        return value;
+    }
+
+    /**
+     * Gets the number of permuted indexes
+     *
+     * @return Size of the permutation
+     */
+
+    public long size(){
+        return size;
+    }
+
+    /**
+     * Gets the seed of this order
+     *
+     * @return Seed
+     */
+
+    public long getSeed(){
+        return seed;
+    }
+
+    private long encrypt(long value){
+        long left = (value >>> halfBits) & halfMask;
+        long right = value & halfMask;
+
+        for (int round = 0; round < ROUNDS; round++){
+            long next = left ^ (mix(right ^ roundKeys[round]) & halfMask);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    /**
+     * SplitMix64 finalizer, a fast 64-bit mixing function
+     */
+
+    private static long mix(long z){
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,202 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * RateLimiter - Token bucket capping connects per second
+ *
+ * Implemented as GCRA (the "virtual scheduling" form of a token bucket):
+ * instead of a token count refilled by a timer, the bucket keeps the time
+ * at which its next token becomes available. Taking N tokens is a single
+ * CAS that moves this time N intervals forward, so a whole batch is paid
+ * for at once and nothing ever runs in the background.
+ *
+ *   - acquire: reserves the next slot, then waits until it comes up
+ *     (parks for long waits, spins the last few microseconds)
+ *   - tryAcquire: takes only the tokens available right now, for the
+ *     selector threads that must never block
+ *
+ * An idle bucket saves up to burst tokens, so short gaps are not lost.
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class RateLimiter {
+
+    //Below this, waiting spins instead of parking (park overshoots by ~50us)
+    private static final long SPIN_THRESHOLD_NANOS = 50_000;
+
+    private final double ratePerSecond;
+    private final long intervalNanos;
+    private final long burstNanos;
+
+    //Time (System.nanoTime) at which the next token is available
+    private final AtomicLong nextFree;
+
+    //Statistics
+    private final LongAdder acquired = new LongAdder();
+    private final AtomicLong firstAcquire = new AtomicLong(Long.MIN_VALUE);
+    private volatile long lastAcquire;
+
+    /**
+     * Constructor
+     *
+     * @param ratePerSecond Tokens per second
+     * @param burst Tokens an idle bucket can save up (at least 1)
+     */
+
+    public RateLimiter(double ratePerSecond, int burst){
+        if (ratePerSecond <= 0){
+            throw new IllegalArgumentException("Rate must be positive");
+        }
+        this.ratePerSecond = ratePerSecond;
+        this.intervalNanos = Math.max(1, Math.round(1_000_000_000.0 / ratePerSecond));
+        this.burstNanos = (Math.max(1, burst) - 1) * intervalNanos;
+        this.nextFree = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Creates a limiter with a burst of 10ms worth of tokens
+     * Enough to absorb scheduling jitter, too short to be noticed by the target
+     *
+     * @param ratePerSecond Tokens per second
+     * @return The limiter
+     */
+
+    public static RateLimiter perSecond(double ratePerSecond){
+        return new RateLimiter(ratePerSecond, (int) Math.min(Integer.MAX_VALUE, Math.ceil(ratePerSecond / 100)));
+    }
+
+    /**
+     * Takes tokens, waiting for them if the bucket is empty
+     *
+     * @param permits Tokens to take
+     * @throws InterruptedException if interrupted while waiting
+     */
+
+    public void acquire(int permits) throws InterruptedException {
+        long now = System.nanoTime();
+        long cost = permits * intervalNanos;
+        long slot;
+
+        //Reserve: the bucket may hold at most burst tokens of idle time
+        while (true){
+            long free = nextFree.get();
+            slot = Math.max(free, now - burstNanos);
+            if (nextFree.compareAndSet(free, slot + cost)){
+                break;
+            }
+        }
+
+        //Wait for the reserved slot
+        long wait;
+        while ((wait = slot - System.nanoTime()) > 0){
+            if (Thread.interrupted()){
+                throw new InterruptedException();
+            }
+            if (wait > SPIN_THRESHOLD_NANOS){
+                LockSupport.parkNanos(this, wait - SPIN_THRESHOLD_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+        record(permits);
+    }
+
+    /**
+     * Takes the tokens available right now, never waits
+     *
+     * @param max Most tokens wanted
+     * @return Tokens taken, 0 to max
+     */
+
+    public int tryAcquire(int max){
+        long now = System.nanoTime();
+
+        while (true){
+            long free = nextFree.get();
+            long slot = Math.max(free, now - burstNanos);
+            if (slot > now){
+                return 0;
+            }
+
+            int granted = (int) Math.min(max, (now - slot) / intervalNanos + 1);
+            if (nextFree.compareAndSet(free, slot + granted * intervalNanos)){
+                record(granted);
+                return granted;
+            }
+        }
+    }
+
+    /**
+     * Gets how long until the next token is available
+     * Saved up burst does not shorten the wait: tryAcquire grants nothing
+     * before nextFree, whatever the burst.
+     *
+     * @return Nanoseconds to wait, 0 if a token is available now
+     */
+
+    public long nanosUntilAvailable(){
+        return Math.max(0, nextFree.get() - System.nanoTime());
+    }
+
+    private void record(int permits){
+        long now = System.nanoTime();
+        acquired.add(permits);
+        firstAcquire.compareAndSet(Long.MIN_VALUE, now);
+        lastAcquire = now;
+    }
+
+    /**
+     * Gets the configured rate
+     *
+     * @return Tokens per second
+     */
+
+    public double getRate(){
+        return ratePerSecond;
+    }
+
+    /**
+     * Gets the number of tokens taken so far
+     *
+     * @return Tokens taken
+     */
+
+    public long getAcquired(){
+        return acquired.sum();
+    }
+
+    /**
+     * Gets the rate actually achieved between the first and last token
+     *
+     * @return Tokens per second, 0 before two tokens were taken
+     */
+
+    public double getAchievedRate(){
+        long first = firstAcquire.get();
+        long count = acquired.sum();
+        if (first == Long.MIN_VALUE || count < 2 || lastAcquire <= first){
+            return 0;
+        }
+        //count tokens span count - 1 intervals
+        return (count - 1) * 1_000_000_000.0 / (lastAcquire - first);
+    }
+
+    /**
+     * Formats the limiter statistics for scan summaries
+     *
+     * @return e.g. "998.7/s achieved, target 1000/s (12000 connects)"
+     */
+
+    @Override
+    public String toString(){
+        return String.format("%.1f/s achieved, target %s/s (%d connects)",
+            getAchievedRate(), formatRate(ratePerSecond), getAcquired());
+    }
+
+    static String formatRate(double rate){
+        return rate == Math.rint(rate) ? Long.toString((long) rate) : String.format("%.1f", rate);
+    }
+}
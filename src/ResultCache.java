@@ -0,0 +1,292 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ResultCache - On-disk cache of probe results shared across runs
+ *
+ * Keyed by (host, port), each entry keeps the port state, connect time,
+ * banner and when it was measured. Entries younger than the TTL are
+ * served instead of probing again, so repeated short scans of the same
+ * hosts skip both the connects and the banner reads. A FILTERED entry
+ * is only a timeout, which a single dropped packet can cause, so it is
+ * kept for a minute at most.
+ *
+ * The cache is bounded: it is kept in access order and the least recently
+ * used entry is evicted past the size limit. It is loaded once at start
+ * and written back (expired entries dropped) when the program exits.
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class ResultCache {
+
+    //Default freshness of an entry
+    public static final long DEFAULT_TTL_SECONDS = 3600;
+
+    //Freshness of a FILTERED entry (never more than the TTL)
+    public static final long FILTERED_TTL_SECONDS = 60;
+
+    //Default size bound, roughly 100 bytes of memory per entry
+    public static final int DEFAULT_MAX_ENTRIES = 100000;
+
+    /**
+     * Cached outcome of one probe
+     */
+    public static class Entry {
+        final int state;
+        final long responseTime;
+        final String banner;
+        final boolean bannerGrabbed;
+        final long storedAt;
+
+        Entry(int state, long responseTime, String banner, boolean bannerGrabbed, long storedAt){
+            this.state = state;
+            this.responseTime = responseTime;
+            this.banner = banner;
+            this.bannerGrabbed = bannerGrabbed;
+            this.storedAt = storedAt;
+        }
+
+        /**
+         * @return PortStateStore.OPEN, CLOSED or FILTERED
+         */
+        public int getState(){
+            return state;
+        }
+
+        /**
+         * @return Connect time in milliseconds when the entry was measured
+         */
+        public long getResponseTime(){
+            return responseTime;
+        }
+
+        /**
+         * @return Service version info, or empty
+         */
+        public String getBanner(){
+            return banner;
+        }
+    }
+
+    private final String file;
+    private final long ttlMillis;
+    private final long filteredTtlMillis;
+    private final int maxEntries;
+    private final LinkedHashMap<String, Entry> entries;
+
+    private long hits;
+    private long misses;
+
+    private ResultCache(String file, long ttlSeconds, int maxEntries){
+        this.file = file;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.filteredTtlMillis = Math.min(ttlMillis, FILTERED_TTL_SECONDS * 1000);
+        this.maxEntries = Math.max(1, maxEntries);
+
+        //Access order: iteration starts at the least recently used entry
+        this.entries = new LinkedHashMap<String, Entry>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest){
+                return size() > ResultCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Opens a cache file, loading the entries that are still fresh
+     * A missing file gives an empty cache that is created on save
+     *
+     * @param file Cache filename
+     * @param ttlSeconds Maximum age of a served entry
+     * @param maxEntries Size bound
+     * @return The cache
+     * @throws IOException if the file exists but cannot be read
+     */
+
+    public static ResultCache open(String file, long ttlSeconds, int maxEntries) throws IOException {
+        ResultCache cache = new ResultCache(file, ttlSeconds, maxEntries);
+        if (!new File(file).exists()){
+            return cache;
+        }
+
+        long now = System.currentTimeMillis();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null){
+                if (line.isEmpty() || line.startsWith("#")){
+                    continue;
+                }
+                //host, port, state, time, stored at, banner grabbed, banner
+                String[] fields = line.split("\t", 7);
+                if (fields.length < 6){
+                    continue;
+                }
+                try {
+                    int port = Integer.parseInt(fields[1]);
+                    int state = parseState(fields[2]);
+                    long storedAt = Long.parseLong(fields[4]);
+                    if (state < 0){
+                        continue;
+                    }
+                    String banner = fields.length == 7 ? ScanJournal.unescapeField(fields[6]) : "";
+                    Entry entry = new Entry(state, Long.parseLong(fields[3]), banner, fields[5].equals("1"), storedAt);
+                    if (!cache.isExpired(entry, now)){
+                        cache.entries.put(key(fields[0], port), entry);
+                    }
+                } catch (NumberFormatException e) {
+                    //Skip damaged line
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Gets a fresh entry
+     *
+     * @param host Target hostname or IP address
+     * @param port Port number
+     * @param needBanner true if an open port is only usable with its banner
+     * @return The entry, or null if missing, expired or lacking a banner
+     */
+
+    public synchronized Entry get(String host, int port, boolean needBanner){
+        String key = key(host, port);
+        Entry entry = entries.get(key);
+
+        if (entry != null && isExpired(entry, System.currentTimeMillis())){
+            entries.remove(key);
+            entry = null;
+        }
+        if (entry == null || (needBanner && entry.state == PortStateStore.OPEN && !entry.bannerGrabbed)){
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return entry;
+    }
+
+    /**
+     * Stores the outcome of a probe
+     *
+     * @param host Target hostname or IP address
+     * @param port Port number
+     * @param state PortStateStore.OPEN, CLOSED or FILTERED
+     * @param responseTime Connect time in milliseconds
+     * @param banner Service version info, or empty
+     * @param bannerGrabbed true if a banner read was attempted
+     */
+
+    public synchronized void put(String host, int port, int state, long responseTime, String banner,
+            boolean bannerGrabbed){
+        entries.put(key(host, port), new Entry(state, responseTime, banner == null ? "" : banner,
+            bannerGrabbed, System.currentTimeMillis()));
+    }
+
+    /**
+     * Writes the fresh entries back to the cache file
+     * Written to a temporary file first, so a crash never leaves half a cache
+     */
+
+    public synchronized void save(){
+        File target = new File(file);
+        File temp = new File(file + ".tmp");
+        long now = System.currentTimeMillis();
+
+        try {
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(temp, StandardCharsets.UTF_8))) {
+                writer.write("# PortScanner result cache v1");
+                writer.newLine();
+
+                //Least recently used first, so a reload keeps the same order
+                Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+                while (iterator.hasNext()){
+                    Map.Entry<String, Entry> item = iterator.next();
+                    Entry entry = item.getValue();
+                    if (isExpired(entry, now)){
+                        continue;
+                    }
+
+                    int split = item.getKey().lastIndexOf(':');
+                    writer.write(item.getKey().substring(0, split));
+                    writer.write('\t');
+                    writer.write(item.getKey().substring(split + 1));
+                    writer.write('\t');
+                    writer.write(formatState(entry.state));
+                    writer.write('\t');
+                    writer.write(Long.toString(entry.responseTime));
+                    writer.write('\t');
+                    writer.write(Long.toString(entry.storedAt));
+                    writer.write('\t');
+                    writer.write(entry.bannerGrabbed ? "1" : "0");
+                    writer.write('\t');
+                    writer.write(ScanJournal.escapeField(entry.banner));
+                    writer.newLine();
+                }
+            }
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Error: Cannot save result cache " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the number of entries held
+     *
+     * @return Entry count
+     */
+
+    public synchronized int size(){
+        return entries.size();
+    }
+
+    /**
+     * Formats the cache statistics for scan summaries
+     *
+     * @return e.g. "980 hits, 44 misses (1024 entries)"
+     */
+
+    @Override
+    public synchronized String toString(){
+        return hits + " hits, " + misses + " misses (" + entries.size() + " entries)";
+    }
+
+    /**
+     * Checks an entry against its TTL (shorter for FILTERED entries)
+     */
+
+    private boolean isExpired(Entry entry, long now){
+        long ttl = entry.state == PortStateStore.FILTERED ? filteredTtlMillis : ttlMillis;
+        return now - entry.storedAt > ttl;
+    }
+
+    private static String key(String host, int port){
+        return host + ":" + port;
+    }
+
+    private static String formatState(int state){
+        return state == PortStateStore.OPEN ? "OPEN" : state == PortStateStore.CLOSED ? "CLOSED" : "FILTERED";
+    }
+
+    private static int parseState(String state){
+        switch (state) {
+            case "OPEN": return PortStateStore.OPEN;
+            case "CLOSED": return PortStateStore.CLOSED;
+            case "FILTERED": return PortStateStore.FILTERED;
+            default: return -1;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * ResultRingBuffer - Bounded multi-producer / single-consumer ring buffer
+ *
+ * Disruptor-style hand-off between worker threads and one consumer:
+ *   - a producer claims a sequence number with one atomic increment, waits
+ *     only if the ring is full, then publishes into slot (sequence & mask)
+ *   - the consumer reads slots in sequence order, a null slot means
+ *     "not published yet", and frees each slot after reading it
+ *
+ * Producers never take a lock and never copy anything, unlike a
+ * CopyOnWriteArrayList whose every add copies the whole array.
+ *
+ * @param <T> Type of the published items
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class ResultRingBuffer<T> {
+
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+    private final int capacity;
+
+    //Next sequence to claim (shared by producers)
+    private final AtomicLong claimed = new AtomicLong(0);
+    //Sequences consumed so far (written by the consumer only)
+    private final AtomicLong consumed = new AtomicLong(0);
+
+    //Consumer position, only touched by the consumer thread
+    private long head = 0;
+
+    /**
+     * Constructor
+     *
+     * @param requestedCapacity Minimum number of slots, rounded up to a power of two
+     */
+
+    public ResultRingBuffer(int requestedCapacity){
+        int size = 2;
+        while (size < requestedCapacity){
+            size <<= 1;
+        }
+        this.capacity = size;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+    }
+
+    /**
+     * Publishes an item (any thread)
+     * Waits while the ring is full, so a slow consumer applies backpressure
+     *
+     * @param item Item to publish, must not be null
+     */
+
+    public void publish(T item){
+        long sequence = claimed.getAndIncrement();
+
+        //Slot is free once the consumer is less than one lap behind
+        int spins = 0;
+        while (sequence - consumed.get() >= capacity){
+            if (++spins < 100){
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(10_000);
+            }
+        }
+
+        slots.lazySet((int) (sequence & mask), item);
+    }
+
+    /**
+     * Hands every published item to the handler, in sequence order (consumer thread only)
+     *
+     * @param handler Called for each item
+     * @return Number of items drained
+     */
+
+    public int drain(Consumer<T> handler){
+        int drained = 0;
+
+        while (true){
+            int index = (int) (head & mask);
+            T item = slots.get(index);
+            if (item == null){
+                return drained;
+            }
+
+            slots.lazySet(index, null);
+            head++;
+            consumed.lazySet(head);
+
+            handler.accept(item);
+            drained++;
+        }
+    }
+
+    /**
+     * Gets the number of slots
+     *
+     * @return Ring capacity
+     */
+
+    public int getCapacity(){
+        return capacity;
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * RttEstimator - Adaptive connect timeout for a single target
+ *
+ * Tracks a smoothed round-trip time and its variance from the connects
+ * that got an answer (open or refused), the same way TCP computes its
+ * retransmission timeout (RFC 6298):
+ *
+ *   RTTVAR = 3/4 RTTVAR + 1/4 |SRTT - R|
+ *   SRTT   = 7/8 SRTT   + 1/8 R
+ *   RTO    = SRTT + 4 RTTVAR
+ *
+ * Timed out probes give no sample, a filtered port says nothing about the RTT.
+ * The configured timeout stays the ceiling and is used until enough samples exist.
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class RttEstimator {
+
+    //Lower bound, a LAN RTT under 1ms must not become a 1ms timeout
+    private static final long MIN_TIMEOUT_NANOS = 100_000_000L; //100ms
+
+    //Samples needed before the estimate replaces the ceiling
+    private static final int MIN_SAMPLES = 3;
+
+    private final long ceilingNanos;
+
+    //Estimator state (nanoseconds)
+    private double srtt;
+    private double rttvar;
+    private int samples;
+
+    /**
+     * Constructor
+     *
+     * @param ceilingMs Configured timeout, never exceeded (milliseconds)
+     */
+
+    public RttEstimator(int ceilingMs){
+        this.ceilingNanos = ceilingMs * 1_000_000L;
+    }
+
+    /**
+     * Adds a round-trip sample from an answered connect
+     *
+     * @param rttNanos Measured connect time in nanoseconds
+     */
+
+    public synchronized void addSample(long rttNanos){
+        if (samples == 0){
+            srtt = rttNanos;
+            rttvar = rttNanos / 2.0;
+        } else {
+            rttvar = 0.75 * rttvar + 0.25 * Math.abs(srtt - rttNanos);
+            srtt = 0.875 * srtt + 0.125 * rttNanos;
+        }
+        samples++;
+    }
+
+    /**
+     * Gets the connect timeout to use for the next probe
+     *
+     * @return Timeout in milliseconds, between 100ms and the ceiling
+     */
+
+    public synchronized int getTimeout(){
+        if (samples < MIN_SAMPLES){
+            return (int) (ceilingNanos / 1_000_000L);
+        }
+
+        long rto = (long) (srtt + 4 * rttvar);
+        rto = Math.max(MIN_TIMEOUT_NANOS, Math.min(ceilingNanos, rto));
+        return (int) Math.max(1, rto / 1_000_000L);
+    }
+
+    /**
+     * Gets the smoothed round-trip time
+     *
+     * @return SRTT in milliseconds, or 0.0 without samples
+     */
+
+    public synchronized double getSmoothedRtt(){
+        return srtt / 1_000_000.0;
+    }
+
+    /**
+     * Gets the number of samples collected so far
+     *
+     * @return Sample count
+     */
+
+    public synchronized int getSampleCount(){
+        return samples;
+    }
+
+    /**
+     * Formats the estimator state for scan summaries
+     *
+     * @return e.g. "120ms (srtt 0.35ms, 512 samples)"
+     */
+
+    @Override
+    public synchronized String toString(){
+        return String.format("%dms (srtt %.2fms, %d samples)", getTimeout(), getSmoothedRtt(), samples);
+    }
+}
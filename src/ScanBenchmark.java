@@ -0,0 +1,301 @@
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ScanBenchmark - Repeatable throughput benchmark against loopback stand-ins
+ *
+ * Starts LoopbackServices (open, refused and blackholed ports) and runs
+ * every scanner engine over a matrix of port range, thread count and
+ * timeout. Each configuration gets warmup runs, then measured runs; the
+ * median ports/sec is reported along with the connect latency of the
+ * open ports (p50/p99 in microseconds, from the ScanMetrics histogram
+ * of the measured runs), and a check that every open port was found.
+ *
+ * Usage: java ScanBenchmark [options]
+ *   --engines seq,mt,nio    scanners to run (default: seq,mt,nio)
+ *   --ranges 256,1024       port counts (default: 256,1024)
+ *   --threads 50,200        threads (mt) / connects in flight (nio)
+ *   --timeouts 200,1000     connect timeouts in ms
+ *   --open 5                percent of ports open (default: 5)
+ *   --blackholed 2          percent of ports that never answer (default: 2)
+ *   --warmup 1              warmup runs per configuration
+ *   --iterations 3          measured runs per configuration
+ *   --csv results.csv       also write the table as CSV
+ *
+ * The JMH benchmarks (jmh/, built with mvn -P jmh package) drive the same
+ * services and scans through startServices and scanServices, with JMH's
+ * forks, warmup and statistics.
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class ScanBenchmark {
+
+    //Console of the benchmark itself, scanners print to a null stream
+    private static final PrintStream out = System.out;
+    private static final PrintStream silent = new PrintStream(OutputStream.nullOutputStream());
+
+    /**
+     * Outcome of one configuration
+     */
+    private static class Measurement {
+        String engine;
+        int range;
+        String threads;
+        int timeout;
+        double portsPerSecond;
+        long p50Micros;
+        long p99Micros;
+        boolean complete;
+    }
+
+    public static void main(String[] args) {
+        List<String> engines = Arrays.asList("seq", "mt", "nio");
+        int[] ranges = {256, 1024};
+        int[] threads = {50, 200};
+        int[] timeouts = {200, 1000};
+        int openPercent = 5;
+        int blackholedPercent = 2;
+        int warmup = 1;
+        int iterations = 3;
+        String csvFile = null;
+
+        try {
+            for (int i = 0; i < args.length; i++){
+                String arg = args[i];
+                if (i + 1 >= args.length){
+                    throw new IllegalArgumentException(arg + " requires a value");
+                }
+                String value = args[++i];
+
+                if (arg.equals("--engines")) {
+                    engines = Arrays.asList(value.split(","));
+                } else if (arg.equals("--ranges")) {
+                    ranges = parseList(value);
+                } else if (arg.equals("--threads")) {
+                    threads = parseList(value);
+                } else if (arg.equals("--timeouts")) {
+                    timeouts = parseList(value);
+                } else if (arg.equals("--open")) {
+                    openPercent = Integer.parseInt(value);
+                } else if (arg.equals("--blackholed")) {
+                    blackholedPercent = Integer.parseInt(value);
+                } else if (arg.equals("--warmup")) {
+                    warmup = Integer.parseInt(value);
+                } else if (arg.equals("--iterations")) {
+                    iterations = Math.max(1, Integer.parseInt(value));
+                } else if (arg.equals("--csv")) {
+                    csvFile = value;
+                } else {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+
+        out.println("Scan benchmark");
+        out.println(" Java " + System.getProperty("java.version") + ", " + System.getProperty("os.name")
+            + ", " + Runtime.getRuntime().availableProcessors() + " CPU(s)");
+        out.println(" Mix: " + openPercent + "% open, " + blackholedPercent + "% blackholed, rest refused");
+        out.println(" Runs: " + warmup + " warmup + " + iterations + " measured per configuration");
+        out.println();
+        out.println(String.format("%-6s %7s %8s %8s %12s %8s %8s  %s",
+            "ENGINE", "PORTS", "THREADS", "TIMEOUT", "PORTS/SEC", "P50(us)", "P99(us)", "CHECK"));
+        out.println("──────────────────────────────────────────────────────────────────────────");
+
+        List<Measurement> measurements = new ArrayList<>();
+        PortChecker.setAdaptiveTimeout(false);
+
+        for (int range : ranges){
+            int open = range * openPercent / 100;
+            int blackholed = range * blackholedPercent / 100;
+
+            try (LoopbackServices services = LoopbackServices.start(range, open, blackholed)) {
+                for (int timeout : timeouts){
+                    PortChecker.setTimeout(timeout);
+
+                    for (String engine : engines){
+                        //The sequential scanner has no thread count
+                        int[] threadCounts = engine.equals("seq") ? new int[] {1} : threads;
+
+                        for (int threadCount : threadCounts){
+                            Measurement m = measure(engine, services, threadCount, warmup, iterations);
+                            m.timeout = timeout;
+                            measurements.add(m);
+                            print(m);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Error: Cannot start loopback services: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        if (csvFile != null) {
+            writeCsv(csvFile, measurements);
+        }
+    }
+
+    /**
+     * Starts the stand-in services and sets the timeout for an external
+     * harness (the JMH benchmarks, which cannot name classes of the
+     * unnamed package and look this up through a method handle)
+     *
+     * @param range Ports in the block
+     * @param openPercent Percent of ports open
+     * @param blackholedPercent Percent of ports that never answer
+     * @param timeout Connect timeout in milliseconds
+     * @return The running services, to pass to scanServices and close when done
+     * @throws IOException if the services cannot start
+     */
+
+    public static Closeable startServices(int range, int openPercent, int blackholedPercent, int timeout)
+            throws IOException {
+        PortChecker.setAdaptiveTimeout(false);
+        PortChecker.setTimeout(timeout);
+        return LoopbackServices.start(range, range * openPercent / 100, range * blackholedPercent / 100);
+    }
+
+    /**
+     * Runs one scan of services started with startServices
+     *
+     * @param engine seq, mt or nio
+     * @param services Services returned by startServices
+     * @param threadCount Threads (mt) / connects in flight (nio)
+     * @return Open ports found
+     * @throws IllegalStateException if an open port was missed
+     */
+
+    public static int scanServices(String engine, Closeable services, int threadCount){
+        LoopbackServices loopback = (LoopbackServices) services;
+        LongAdder openFound = new LongAdder();
+        runOnce(engine, loopback, threadCount, openFound);
+
+        int expected = loopback.count(LoopbackServices.OPEN);
+        if (openFound.sum() != expected){
+            throw new IllegalStateException("Found " + openFound.sum() + " of " + expected + " open ports");
+        }
+        return expected;
+    }
+
+    /**
+     * Runs one configuration: warmup runs, then measured runs
+     */
+
+    private static Measurement measure(String engine, LoopbackServices services, int threadCount,
+            int warmup, int iterations){
+        int expectedOpen = services.count(LoopbackServices.OPEN);
+        int range = services.getLastPort() - services.getFirstPort() + 1;
+
+        for (int i = 0; i < warmup; i++){
+            runOnce(engine, services, threadCount, new LongAdder());
+        }
+
+        //Only the measured runs go into the latency histogram
+        LatencyHistogram latency = ScanMetrics.get().getOpenLatency();
+        ScanMetrics.get().reset();
+
+        double[] rates = new double[iterations];
+        boolean complete = true;
+
+        for (int i = 0; i < iterations; i++){
+            LongAdder openFound = new LongAdder();
+            long durationMs = runOnce(engine, services, threadCount, openFound);
+
+            rates[i] = range * 1000.0 / Math.max(1, durationMs);
+            complete &= openFound.sum() == expectedOpen;
+        }
+
+        Arrays.sort(rates);
+
+        Measurement m = new Measurement();
+        m.engine = engine;
+        m.range = range;
+        m.threads = engine.equals("seq") ? "-" : String.valueOf(threadCount);
+        m.portsPerSecond = rates[rates.length / 2];
+        m.p50Micros = TimeUnit.NANOSECONDS.toMicros(latency.getValueAtPercentile(50));
+        m.p99Micros = TimeUnit.NANOSECONDS.toMicros(latency.getValueAtPercentile(99));
+        m.complete = complete;
+        return m;
+    }
+
+    /**
+     * Runs one scan with the scanner output discarded
+     *
+     * @param openFound Counts the open ports reported
+     * @return Scan duration in milliseconds
+     */
+
+    private static long runOnce(String engine, LoopbackServices services, int threadCount, LongAdder openFound){
+        String host = LoopbackServices.HOST;
+        int first = services.getFirstPort();
+        int last = services.getLastPort();
+
+        System.setOut(silent);
+        try {
+            if (engine.equals("seq")) {
+                PortScanner scanner = new PortScanner(host, first, last);
+                scanner.addResultListener(r -> openFound.increment());
+                scanner.scan();
+                return scanner.getScanDuration();
+            }
+            if (engine.equals("mt")) {
+                PortScannerMultithreaded scanner = new PortScannerMultithreaded(host, first, last, threadCount);
+                scanner.addResultListener(r -> openFound.increment());
+                scanner.scan();
+                return scanner.getScanDuration();
+            }
+            if (engine.equals("nio")) {
+                PortScannerNio scanner = new PortScannerNio(host, first, last, threadCount, false);
+                //Listeners run on several selector threads
+                scanner.addResultListener(r -> openFound.increment());
+                scanner.scan();
+                return scanner.getScanDuration();
+            }
+            throw new IllegalArgumentException("Unknown engine " + engine + " (supported: seq, mt, nio)");
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    private static void print(Measurement m){
+        out.println(String.format("%-6s %7d %8s %8d %12.1f %8d %8d  %s",
+            m.engine, m.range, m.threads, m.timeout, m.portsPerSecond, m.p50Micros, m.p99Micros,
+            m.complete ? "ok" : "MISSED OPEN PORTS"));
+    }
+
+    private static void writeCsv(String csvFile, List<Measurement> measurements){
+        try (PrintWriter writer = new PrintWriter(new FileWriter(csvFile))) {
+            writer.println("engine,ports,threads,timeout_ms,ports_per_sec,p50_us,p99_us,complete");
+            for (Measurement m : measurements){
+                writer.println(String.format("%s,%d,%s,%d,%.1f,%d,%d,%b",
+                    m.engine, m.range, m.threads, m.timeout, m.portsPerSecond, m.p50Micros, m.p99Micros, m.complete));
+            }
+            out.println("\n✅ Results written to: " + csvFile);
+        } catch (IOException e) {
+            System.err.println("❌ Error writing CSV: " + e.getMessage());
+        }
+    }
+
+    private static int[] parseList(String value){
+        String[] parts = value.split(",");
+        int[] numbers = new int[parts.length];
+        for (int i = 0; i < parts.length; i++){
+            numbers[i] = Integer.parseInt(parts[i].trim());
+        }
+        return numbers;
+    }
+}
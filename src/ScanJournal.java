@@ -0,0 +1,344 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ScanJournal - Append-only checkpoint file for resumable scans
+ *
+ * Records one line per probed (host, port) pair:
+ *
+ *   host TAB port TAB OPEN|CLOSED|FILTERED [TAB time_ms TAB banner]
+ *
+ * Workers never write to the journal. A checkpoint thread takes the ports
+ * each PortStateStore flagged as changed since its last visit once a
+ * second, appends them and fsyncs the whole batch at once. A store with
+ * nothing new costs one read, and only the changed words of the others
+ * are looked at, so a checkpoint's work follows the new results rather
+ * than the number of hosts. A killed scan loses at most the last second
+ * of work.
+ *
+ * A journal can be loaded back into PortStateStores to skip every port
+ * it already covers.
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class ScanJournal implements Closeable {
+
+    private static final String HEADER = "# PortScanner journal v1";
+
+    //Time between checkpoints
+    private static final long CHECKPOINT_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final String file;
+    private final FileOutputStream output;
+    private final FileChannel channel;
+    private final BufferedWriter writer;
+
+    private Collection<PortStateStore> stores;
+    private Thread checkpointer;
+    private volatile boolean running;
+    private boolean closed;
+    private long entries;
+
+    private ScanJournal(String file, boolean append) throws IOException {
+        this.file = file;
+        boolean existing = append && new File(file).length() > 0;
+
+        this.output = new FileOutputStream(file, append);
+        this.channel = output.getChannel();
+        this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+
+        if (!existing) {
+            writer.write(HEADER);
+            writer.newLine();
+            writer.flush();
+        } else if (!endsWithNewline(file)) {
+            //Killed mid-line: end it so the next entry is not glued to it
+            writer.newLine();
+            writer.flush();
+        }
+    }
+
+    private static boolean endsWithNewline(String file) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            input.seek(input.length() - 1);
+            int last = input.read();
+            return last == '\n' || last == '\r';
+        }
+    }
+
+    /**
+     * Creates a new journal, replacing any existing file
+     *
+     * @param file Journal filename
+     * @return The journal
+     * @throws IOException if the file cannot be created
+     */
+
+    public static ScanJournal create(String file) throws IOException {
+        return new ScanJournal(file, false);
+    }
+
+    /**
+     * Reopens a journal to keep appending after a resume
+     *
+     * @param file Journal filename
+     * @param restored Stores loaded from this journal, not written again
+     * @return The journal
+     * @throws IOException if the file cannot be opened
+     */
+
+    public static ScanJournal append(String file, Map<String, PortStateStore> restored) throws IOException {
+        //Already on disk
+        for (PortStateStore store : restored.values()) {
+            store.clearChanges();
+        }
+        return new ScanJournal(file, true);
+    }
+
+    /**
+     * Loads a journal into one PortStateStore per host
+     * Incomplete lines (e.g. cut off when the scan was killed) are skipped
+     *
+     * @param file Journal filename
+     * @return Map from host to its recorded port states
+     * @throws IOException if the file cannot be read
+     */
+
+    public static Map<String, PortStateStore> load(String file) throws IOException {
+        Map<String, PortStateStore> stores = new HashMap<>();
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] fields = line.split("\t", 5);
+                if (fields.length < 3) {
+                    continue;
+                }
+
+                int port;
+                try {
+                    port = Integer.parseInt(fields[1]);
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (!ServiceIdentifier.isValidPort(port)) {
+                    continue;
+                }
+
+                PortStateStore store = stores.computeIfAbsent(fields[0], PortStateStore::new);
+                if (fields[2].equals("CLOSED")) {
+                    store.markClosed(port);
+                } else if (fields[2].equals("FILTERED")) {
+                    store.markFiltered(port);
+                } else if (fields[2].equals("OPEN") && fields.length >= 4) {
+                    long responseTime;
+                    try {
+                        responseTime = Long.parseLong(fields[3]);
+                    } catch (NumberFormatException e) {
+                        continue;
+                    }
+                    String banner = fields.length == 5 ? unescapeField(fields[4]) : "";
+                    store.addOpen(port, responseTime, banner);
+                }
+            }
+        }
+        return stores;
+    }
+
+    /**
+     * Starts checkpointing the given stores in the background
+     *
+     * @param stores Live view of the scanner's stores (may grow during the scan)
+     */
+
+    public synchronized void start(Collection<PortStateStore> stores) {
+        this.stores = stores;
+        running = true;
+        checkpointer = new Thread(this::checkpointLoop, "journal-checkpoint");
+        checkpointer.setDaemon(true);
+        checkpointer.start();
+    }
+
+    private void checkpointLoop() {
+        while (running) {
+            LockSupport.parkNanos(this, CHECKPOINT_INTERVAL_NANOS);
+            if (running) {
+                checkpoint();
+            }
+        }
+    }
+
+    /**
+     * Appends every port probed since the last checkpoint, then fsyncs once
+     */
+
+    public synchronized void checkpoint() {
+        if (closed || stores == null) {
+            return;
+        }
+
+        long before = entries;
+        try {
+            for (PortStateStore store : stores) {
+                appendNew(store);
+            }
+            if (entries > before) {
+                writer.flush();
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            System.err.println("\nError: Cannot write journal " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void appendNew(PortStateStore store) throws IOException {
+        long chunks = store.takeChangedChunks();
+
+        while (chunks != 0) {
+            int chunk = Long.numberOfTrailingZeros(chunks);
+            chunks &= chunks - 1;
+
+            int first = chunk * PortStateStore.CHUNK_WORDS;
+            for (int word = first; word < first + PortStateStore.CHUNK_WORDS; word++) {
+                long fresh = store.takeChangedWord(word);
+                while (fresh != 0) {
+                    int port = (word << 6) | Long.numberOfTrailingZeros(fresh);
+                    fresh &= fresh - 1;
+
+                    if (!appendEntry(store, port)) {
+                        //Details not stored yet, retry at the next checkpoint
+                        store.markChanged(port);
+                        continue;
+                    }
+                    entries++;
+                }
+            }
+        }
+    }
+
+    private boolean appendEntry(PortStateStore store, int port) throws IOException {
+        int state = store.getState(port);
+        ScanResult result = null;
+        if (state == PortStateStore.OPEN) {
+            result = store.getOpenResult(port);
+            if (result == null) {
+                return false;
+            }
+        }
+
+        writer.write(store.getHost());
+        writer.write('\t');
+        writer.write(Integer.toString(port));
+        writer.write('\t');
+
+        if (result != null) {
+            writer.write("OPEN\t");
+            writer.write(Long.toString(result.getResponseTime()));
+            if (!result.getBanner().isEmpty()) {
+                writer.write('\t');
+                writer.write(escapeField(result.getBanner()));
+            }
+        } else {
+            writer.write(state == PortStateStore.FILTERED ? "FILTERED" : "CLOSED");
+        }
+        writer.newLine();
+        return true;
+    }
+
+    /**
+     * Gets the number of entries written by this run
+     *
+     * @return Entries appended since the journal was opened
+     */
+
+    public synchronized long getEntries() {
+        return entries;
+    }
+
+    /**
+     * Gets the journal filename
+     *
+     * @return Filename
+     */
+
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * Writes a final checkpoint and closes the file (safe to call twice)
+     */
+
+    @Override
+    public void close() {
+        running = false;
+        if (checkpointer != null) {
+            LockSupport.unpark(checkpointer);
+        }
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            checkpoint();
+            closed = true;
+            try {
+                writer.close();
+            } catch (IOException e) {
+                System.err.println("Error: Cannot close journal " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Escapes text for one tab-separated field (journal, result cache)
+     * Backslash, tab, newline and carriage return become \\, \t, \n and \r
+     *
+     * @param text Field value (e.g. a banner)
+     * @return Text without tabs or line breaks
+     */
+
+    public static String escapeField(String text) {
+        return text.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    /**
+     * Reverses escapeField
+     *
+     * @param text Escaped field
+     * @return Original text
+     */
+
+    public static String unescapeField(String text) {
+        StringBuilder result = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length()) {
+                char next = text.charAt(++i);
+                result.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,321 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * ScanMetrics - Probe counters and latency histograms of the process
+ *
+ * Every scanner reports each probe it sends here: probeStarted when it
+ * goes out, then exactly one of recordOpen, recordRefused, recordTimeout
+ * or recordError. Latencies are measured with System.nanoTime() and kept
+ * in LatencyHistograms, counters are LongAdders, so recording never takes
+ * a lock and costs the probe threads a few nanoseconds.
+ *
+ * The scan summaries print the percentiles, and the same numbers are
+ * published over JMX (ScanMetricsMBean) to watch a long scan's tail
+ * latency while it runs.
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class ScanMetrics implements ScanMetricsMBean {
+
+    //Name of the MBean on the platform MBean server
+    public static final String OBJECT_NAME = "PortScanner:type=ScanMetrics";
+
+    //Counters
+    private final LongAdder open = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder exports = new LongAdder();
+    private final LongAdder exportNanos = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    //Latencies
+    private final LatencyHistogram openLatency = new LatencyHistogram();
+    private final LatencyHistogram refusedLatency = new LatencyHistogram();
+    private final LatencyHistogram bannerTime = new LatencyHistogram();
+
+    //Holder idiom: created on first use
+    private static class Holder {
+        static final ScanMetrics INSTANCE = new ScanMetrics();
+    }
+
+    private ScanMetrics(){
+    }
+
+    /**
+     * Gets the metrics of the process
+     *
+     * @return The shared instance
+     */
+
+    public static ScanMetrics get(){
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Publishes the metrics on the platform MBean server
+     * Does nothing if already registered.
+     *
+     * @return true if the MBean is registered
+     */
+
+    public static boolean register(){
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(get(), new ObjectName(OBJECT_NAME));
+            return true;
+        } catch (InstanceAlreadyExistsException e) {
+            return true;
+        } catch (JMException | SecurityException e) {
+            System.err.println("Warning: Cannot register JMX metrics: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Counts a probe going out
+     */
+
+    public void probeStarted(){
+        int now = inFlight.incrementAndGet();
+        if (now > peakInFlight.get()){
+            peakInFlight.accumulateAndGet(now, Math::max);
+        }
+    }
+
+    /**
+     * Ends a probe that connected (or got a UDP reply)
+     *
+     * @param nanos Time from send to answer
+     */
+
+    public void recordOpen(long nanos){
+        inFlight.decrementAndGet();
+        open.increment();
+        openLatency.record(nanos);
+    }
+
+    /**
+     * Ends a probe that was refused
+     *
+     * @param nanos Time from send to the RST (or ICMP port unreachable)
+     */
+
+    public void recordRefused(long nanos){
+        inFlight.decrementAndGet();
+        refused.increment();
+        refusedLatency.record(nanos);
+    }
+
+    /**
+     * Ends a probe that got no answer in time
+     */
+
+    public void recordTimeout(){
+        inFlight.decrementAndGet();
+        timedOut.increment();
+    }
+
+    /**
+     * Ends a probe that failed without a usable answer
+     */
+
+    public void recordError(){
+        inFlight.decrementAndGet();
+        errors.increment();
+    }
+
+    /**
+     * Records the time spent reading a banner (or a TLS handshake)
+     *
+     * @param nanos Duration in nanoseconds
+     */
+
+    public void recordBanner(long nanos){
+        bannerTime.record(nanos);
+    }
+
+    /**
+     * Records the time spent writing an export file or a streamed result
+     *
+     * @param nanos Duration in nanoseconds
+     */
+
+    public void recordExport(long nanos){
+        exports.increment();
+        exportNanos.add(nanos);
+    }
+
+    /**
+     * Gets the latency histogram of open probes
+     *
+     * @return Live histogram
+     */
+
+    public LatencyHistogram getOpenLatency(){
+        return openLatency;
+    }
+
+    /**
+     * Gets the latency histogram of refused probes
+     *
+     * @return Live histogram
+     */
+
+    public LatencyHistogram getRefusedLatency(){
+        return refusedLatency;
+    }
+
+    /**
+     * Gets the banner read time histogram
+     *
+     * @return Live histogram
+     */
+
+    public LatencyHistogram getBannerTime(){
+        return bannerTime;
+    }
+
+    /**
+     * Formats the metrics for scan summaries, one line per item
+     *
+     * @param indent Prefix of every line (e.g. " ")
+     * @return Probe counts, then the percentiles of each non-empty histogram
+     */
+
+    public String getSummary(String indent){
+        StringBuilder summary = new StringBuilder();
+        summary.append(indent).append(String.format("Probes: %d open, %d refused, %d timed out, %d errors, peak %d in flight",
+            open.sum(), refused.sum(), timedOut.sum(), errors.sum(), peakInFlight.get()));
+        appendHistogram(summary, indent, "Latency open: ", openLatency);
+        appendHistogram(summary, indent, "Latency refused: ", refusedLatency);
+        appendHistogram(summary, indent, "Banner time: ", bannerTime);
+        return summary.toString();
+    }
+
+    private static void appendHistogram(StringBuilder summary, String indent, String label, LatencyHistogram histogram){
+        if (histogram.getCount() > 0){
+            summary.append(System.lineSeparator()).append(indent).append(label).append(histogram);
+        }
+    }
+
+    @Override
+    public long getOpenProbes(){
+        return open.sum();
+    }
+
+    @Override
+    public long getRefusedProbes(){
+        return refused.sum();
+    }
+
+    @Override
+    public long getTimedOutProbes(){
+        return timedOut.sum();
+    }
+
+    @Override
+    public long getErrorProbes(){
+        return errors.sum();
+    }
+
+    @Override
+    public int getInFlightProbes(){
+        return inFlight.get();
+    }
+
+    @Override
+    public int getPeakInFlightProbes(){
+        return peakInFlight.get();
+    }
+
+    @Override
+    public double getOpenLatencyP50Millis(){
+        return millis(openLatency.getValueAtPercentile(50));
+    }
+
+    @Override
+    public double getOpenLatencyP90Millis(){
+        return millis(openLatency.getValueAtPercentile(90));
+    }
+
+    @Override
+    public double getOpenLatencyP99Millis(){
+        return millis(openLatency.getValueAtPercentile(99));
+    }
+
+    @Override
+    public double getOpenLatencyMaxMillis(){
+        return millis(openLatency.getMax());
+    }
+
+    @Override
+    public double getRefusedLatencyP50Millis(){
+        return millis(refusedLatency.getValueAtPercentile(50));
+    }
+
+    @Override
+    public double getRefusedLatencyP90Millis(){
+        return millis(refusedLatency.getValueAtPercentile(90));
+    }
+
+    @Override
+    public double getRefusedLatencyP99Millis(){
+        return millis(refusedLatency.getValueAtPercentile(99));
+    }
+
+    @Override
+    public double getRefusedLatencyMaxMillis(){
+        return millis(refusedLatency.getMax());
+    }
+
+    @Override
+    public long getBanners(){
+        return bannerTime.getCount();
+    }
+
+    @Override
+    public double getBannerTimeP50Millis(){
+        return millis(bannerTime.getValueAtPercentile(50));
+    }
+
+    @Override
+    public double getBannerTimeP99Millis(){
+        return millis(bannerTime.getValueAtPercentile(99));
+    }
+
+    @Override
+    public long getExports(){
+        return exports.sum();
+    }
+
+    @Override
+    public double getExportTimeMillis(){
+        return millis(exportNanos.sum());
+    }
+
+    @Override
+    public void reset(){
+        open.reset();
+        refused.reset();
+        timedOut.reset();
+        errors.reset();
+        exports.reset();
+        exportNanos.reset();
+        peakInFlight.set(inFlight.get());
+        openLatency.reset();
+        refusedLatency.reset();
+        bannerTime.reset();
+    }
+
+    private static double millis(long nanos){
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * ScanMetricsMBean - JMX view of the scan metrics
+ *
+ * Registered as "PortScanner:type=ScanMetrics" (see ScanMetrics.register),
+ * readable from jconsole, VisualVM or any JMX client while a scan runs.
+ * Counters and histograms cover every probe since start or the last reset.
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public interface ScanMetricsMBean {
+
+    /** @return Probes that connected (or got a UDP reply) */
+    long getOpenProbes();
+
+    /** @return Probes refused (RST, or ICMP port unreachable for UDP) */
+    long getRefusedProbes();
+
+    /** @return Probes without any answer before the timeout */
+    long getTimedOutProbes();
+
+    /** @return Probes that failed otherwise (unreachable network, no descriptors...) */
+    long getErrorProbes();
+
+    /** @return Probes started and not finished yet */
+    int getInFlightProbes();
+
+    /** @return Highest number of probes in flight at once */
+    int getPeakInFlightProbes();
+
+    /** @return Median latency of open probes in milliseconds */
+    double getOpenLatencyP50Millis();
+
+    /** @return 90th percentile latency of open probes in milliseconds */
+    double getOpenLatencyP90Millis();
+
+    /** @return 99th percentile latency of open probes in milliseconds */
+    double getOpenLatencyP99Millis();
+
+    /** @return Slowest open probe in milliseconds */
+    double getOpenLatencyMaxMillis();
+
+    /** @return Median latency of refused probes in milliseconds */
+    double getRefusedLatencyP50Millis();
+
+    /** @return 90th percentile latency of refused probes in milliseconds */
+    double getRefusedLatencyP90Millis();
+
+    /** @return 99th percentile latency of refused probes in milliseconds */
+    double getRefusedLatencyP99Millis();
+
+    /** @return Slowest refused probe in milliseconds */
+    double getRefusedLatencyMaxMillis();
+
+    /** @return Banners read (or TLS handshakes) */
+    long getBanners();
+
+    /** @return Median banner read time in milliseconds */
+    double getBannerTimeP50Millis();
+
+    /** @return 99th percentile banner read time in milliseconds */
+    double getBannerTimeP99Millis();
+
+    /** @return Export files written and results streamed */
+    long getExports();
+
+    /** @return Total time spent writing exports in milliseconds */
+    double getExportTimeMillis();
+
+    /** Clears every counter and histogram (probes in flight excepted) */
+    void reset();
+}
@@ -14,12 +14,16 @@ import java.time.format.DateTimeFormatter;
 public class ScanResult{
 
     //Attributes 
+    private final String host;
     private final int port;
     private final boolean isOpen;
+    private final boolean filtered;
     private final long responseTime;
     private final String service;
     private final String timestamp;
     private final String banner;
+    private final String hostname;
+    private final String protocol;
 
 
     /**
@@ -31,37 +35,175 @@ public class ScanResult{
      */
 
     public ScanResult(int port, boolean isOpen, long responseTime) {
-    this(port, isOpen, responseTime, false);
-}
+        this(port, isOpen, responseTime, "");
+    }
 
-public ScanResult(int port, boolean isOpen, long responseTime, boolean grabBanner) {
-    this.port = port;
-    this.isOpen = isOpen;
-    this.responseTime = responseTime;
-    
-    // Identify the service if port is open
-    if (isOpen) {
-        this.service = ServiceIdentifier.identifyService(port);
+    /**
+     * Constructor with banner - Creates a new scan result
+     * Does no network I/O, the banner is grabbed by the scanner beforehand
+     * 
+     * @param port The port number that was scanned 
+     * @param isOpen true if the port is open, false if closes/filtered
+     * @param responseTime Response time in milliseconds
+     * @param banner Service version info, or empty if not grabbed
+     */
+
+    public ScanResult(int port, boolean isOpen, long responseTime, String banner) {
+        this(port, isOpen, responseTime, banner, false);
+    }
+
+    /**
+     * Constructor with filtered flag - Creates a new scan result
+     * 
+     * @param port The port number that was scanned 
+     * @param isOpen true if the port is open, false if closes/filtered
+     * @param responseTime Response time in milliseconds
+     * @param banner Service version info, or empty if not grabbed
+     * @param filtered true if the probe got no answer (timeout or error)
+     */
+
+    public ScanResult(int port, boolean isOpen, long responseTime, String banner, boolean filtered) {
+        this(null, port, isOpen, responseTime, banner, filtered);
+    }
+
+    /**
+     * Full constructor - Creates a new scan result for a given host
+     * 
+     * @param host The host that was scanned, or null if implied by the scan
+     * @param port The port number that was scanned 
+     * @param isOpen true if the port is open, false if closes/filtered
+     * @param responseTime Response time in milliseconds
+     * @param banner Service version info, or empty if not grabbed
+     * @param filtered true if the probe got no answer (timeout or error)
+     */
+
+    public ScanResult(String host, int port, boolean isOpen, long responseTime, String banner, boolean filtered) {
+        this(host, port, isOpen, responseTime, banner, filtered,
+            LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+    }
+
+    /**
+     * Full constructor with timestamp - Rebuilds a result recorded earlier
+     * (e.g. a view over a PortStateStore)
+     * 
+     * @param host The host that was scanned, or null if implied by the scan
+     * @param port The port number that was scanned 
+     * @param isOpen true if the port is open, false if closes/filtered
+     * @param responseTime Response time in milliseconds
+     * @param banner Service version info, or empty if not grabbed
+     * @param filtered true if the probe got no answer (timeout or error)
+     * @param timestamp When the port was scanned (yyyy-MM-dd HH:mm:ss)
+     */
+
+    public ScanResult(String host, int port, boolean isOpen, long responseTime, String banner, boolean filtered,
+                      String timestamp) {
+        this(host, port, isOpen, responseTime, banner, filtered, timestamp, "tcp");
+    }
+
+    /**
+     * Creates the result of an answered UDP probe (see PortScannerUdp)
+     * 
+     * @param host The host that was scanned
+     * @param port The UDP port that replied
+     * @param responseTime Time to the reply in milliseconds
+     * @param banner What the reply says about the service, or empty
+     * @return Open UDP port result, service named from the UDP entries
+     */
+
+    public static ScanResult udp(String host, int port, long responseTime, String banner) {
+        return new ScanResult(host, port, true, responseTime, banner, false,
+            LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")), "udp");
+    }
+
+    private ScanResult(String host, int port, boolean isOpen, long responseTime, String banner, boolean filtered,
+                       String timestamp, String protocol) {
+        this.host = host;
+        this.port = port;
+        this.isOpen = isOpen;
+        this.filtered = !isOpen && filtered;
+        this.responseTime = responseTime;
         
-        // Grab banner if requested
-        if (grabBanner) {
-            String rawBanner = BannerGrabber.grabBanner("localhost", port);
-            this.banner = BannerGrabber.extractVersion(rawBanner);
+        // Identify the service if port is open
+        if (isOpen) {
+            this.service = protocol.equals("udp") ? ServiceIdentifier.identifyUdpService(port)
+                : ServiceIdentifier.identifyService(port);
+            this.banner = banner != null ? banner : "";
         } else {
+            this.service = "N/A";
             this.banner = "";
         }
-    } else {
-        this.service = "N/A";
-        this.banner = "";
+        
+        this.timestamp = timestamp;
+        this.hostname = null;
+        this.protocol = protocol;
+    }
+
+    /**
+     * Copy constructor adding the reverse DNS name of the host
+     */
+
+    private ScanResult(ScanResult result, String hostname) {
+        this.host = result.host;
+        this.port = result.port;
+        this.isOpen = result.isOpen;
+        this.filtered = result.filtered;
+        this.responseTime = result.responseTime;
+        this.service = result.service;
+        this.banner = result.banner;
+        this.timestamp = result.timestamp;
+        this.hostname = hostname;
+        this.protocol = result.protocol;
+    }
+
+    /**
+     * Gets a copy of this result carrying the PTR name of its host
+     * 
+     * @param hostname Reverse DNS name (e.g. from HostResolver.reverseLookupAll)
+     * @return New result, this one is unchanged
+     */
+
+    public ScanResult withHostname(String hostname) {
+        return new ScanResult(this, hostname);
     }
-    
-    // Record timestamp
-    this.timestamp = LocalDateTime.now()
-        .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-}
 
     //Getters
 
+    /**
+     * Gets the scanned host
+     * @return Hostname or IP address, or null if not recorded
+     */
+
+    public String getHost(){
+        return host;
+    }
+
+    /**
+     * Gets the reverse DNS name of the host
+     * @return PTR name, or null if not looked up or none
+     */
+
+    public String getHostname(){
+        return hostname;
+    }
+
+    /**
+     * Gets the transport protocol of the probe
+     * @return "tcp" or "udp"
+     */
+
+    public String getProtocol(){
+        return protocol;
+    }
+
+    /**
+     * Checks if the result comes from a UDP probe
+     * @return true for UDP, false for TCP
+     */
+
+    public boolean isUdp(){
+        return protocol.equals("udp");
+    }
+
     /**
      * Gets the port number
      * @return the port number
@@ -80,6 +222,15 @@ public ScanResult(int port, boolean isOpen, long responseTime, boolean grabBanne
         return isOpen;
     }
 
+    /**
+     * Checks if the probe got no answer at all
+     * @return true if the connect timed out or failed, false if open or refused
+     */
+
+    public boolean isFiltered(){
+        return filtered;
+    }
+
     /**
      * Gets the response time
      * @return Response time in milliseconds
@@ -109,11 +260,14 @@ public ScanResult(int port, boolean isOpen, long responseTime, boolean grabBanne
 
     /**
      * Gets the state as a string
-     * @return "OPEN" or "CLOSED"
+     * @return "OPEN", "CLOSED" or "FILTERED"
      */
 
     public String getState(){
-        return isOpen ? "OPEN" : "CLOSED";
+        if (isOpen) {
+            return "OPEN";
+        }
+        return filtered ? "FILTERED" : "CLOSED";
     }
 
     /**
@@ -140,8 +294,8 @@ public ScanResult(int port, boolean isOpen, long responseTime, boolean grabBanne
         String bannerInfo = (banner != null && !banner.isEmpty()) ? 
             " [" + banner + "]" : "";
     
-        return String.format("%-8d %-10s %-20s (%dms)%s",
-            port,
+        return String.format("%-8s %-10s %-20s (%dms)%s",
+            isUdp() ? port + "/udp" : String.valueOf(port),
             "OPEN",
             service,
             responseTime,
@@ -0,0 +1,336 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * ServiceDatabase - Port to service name table loaded from a services file
+ *
+ * Reads an nmap-services style file (name, port/protocol, open frequency)
+ * into dense 65536-entry arrays, one per protocol. A lookup is a single
+ * array index and allocates nothing; names are shared, so every port
+ * called "HTTP-Alt" points to the same string.
+ *
+ * The file is read once, on the first lookup, through a read-only memory
+ * mapping parsed in place. It is searched in this order:
+ *   1. the file named by -Dportscanner.services=...
+ *   2. port-services.txt next to the compiled classes
+ *   3. port-services.txt in the working directory
+ *   4. port-services.txt on the classpath (e.g. inside a jar, read into memory)
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class ServiceDatabase {
+
+    //Name of ports missing from the file
+    public static final String UNKNOWN = "Unknown";
+
+    //System property overriding the file location
+    public static final String FILE_PROPERTY = "portscanner.services";
+
+    private static final String DEFAULT_FILE = "port-services.txt";
+
+    private final String source;
+    private final String[] tcpNames = new String[65536];
+    private final String[] udpNames = new String[65536];
+    private final float[] tcpFrequencies = new float[65536];
+    private final float[] udpFrequencies = new float[65536];
+    private int[] tcpByFrequency;
+    private int[] udpByFrequency;
+    private int entries;
+
+    /**
+     * Loaded on first use only (holder idiom, thread-safe without locking)
+     */
+    private static class Holder {
+        static final ServiceDatabase INSTANCE = load();
+    }
+
+    private ServiceDatabase(String source){
+        this.source = source;
+    }
+
+    /**
+     * Gets the database, loading it on the first call
+     *
+     * @return The shared database
+     */
+
+    public static ServiceDatabase get(){
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Gets the service name of a TCP port
+     *
+     * @param port Port number (0-65535)
+     * @return Service name, or "Unknown"
+     */
+
+    public String getName(int port){
+        String name = tcpNames[port];
+        return name != null ? name : UNKNOWN;
+    }
+
+    /**
+     * Gets the service name of a UDP port
+     *
+     * @param port Port number (0-65535)
+     * @return Service name, or "Unknown"
+     */
+
+    public String getUdpName(int port){
+        String name = udpNames[port];
+        return name != null ? name : UNKNOWN;
+    }
+
+    /**
+     * Gets how often a TCP port is found open
+     *
+     * @param port Port number (0-65535)
+     * @return Fraction of hosts with the port open, 0 if unlisted
+     */
+
+    public double getFrequency(int port){
+        return tcpFrequencies[port];
+    }
+
+    /**
+     * Gets how often a UDP port is found open
+     *
+     * @param port Port number (0-65535)
+     * @return Fraction of hosts with the port open, 0 if unlisted
+     */
+
+    public double getUdpFrequency(int port){
+        return udpFrequencies[port];
+    }
+
+    /**
+     * Gets the listed TCP ports, most frequently open first
+     *
+     * @return New array of ports with a frequency above 0
+     */
+
+    public int[] getPortsByFrequency(){
+        return tcpByFrequency.clone();
+    }
+
+    /**
+     * Gets the listed UDP ports, most frequently open first
+     *
+     * @return New array of ports with a frequency above 0
+     */
+
+    public int[] getUdpPortsByFrequency(){
+        return udpByFrequency.clone();
+    }
+
+    /**
+     * Gets the number of entries loaded
+     *
+     * @return Entry count, all protocols
+     */
+
+    public int size(){
+        return entries;
+    }
+
+    /**
+     * Gets where the database was loaded from
+     *
+     * @return File path or classpath resource, or "none"
+     */
+
+    public String getSource(){
+        return source;
+    }
+
+    /**
+     * Finds and loads the services file
+     * A missing or unreadable file gives an empty database (every port Unknown)
+     */
+
+    private static ServiceDatabase load(){
+        try {
+            File file = findDataFile(DEFAULT_FILE, FILE_PROPERTY);
+            if (file != null){
+                return parse(mapFile(file), file.getPath());
+            }
+
+            try (InputStream resource = ServiceDatabase.class.getResourceAsStream("/" + DEFAULT_FILE)) {
+                if (resource != null){
+                    return parse(ByteBuffer.wrap(resource.readAllBytes()), "classpath:" + DEFAULT_FILE);
+                }
+            }
+            System.err.println("Warning: Service database " + DEFAULT_FILE + " not found, services show as "
+                + UNKNOWN);
+        } catch (IOException e) {
+            System.err.println("Warning: Cannot read service database: " + e.getMessage());
+        }
+        return parse(ByteBuffer.allocate(0), "none");
+    }
+
+    /**
+     * Finds a data file shipped with the scanner
+     * Looked up as the file named by the system property if set, otherwise
+     * next to the compiled classes, then in the working directory.
+     *
+     * @param fileName Default file name (e.g. "port-services.txt")
+     * @param property System property overriding the location
+     * @return The file, or null if not found (try the classpath next)
+     */
+
+    static File findDataFile(String fileName, String property){
+        String configured = System.getProperty(property);
+        if (configured != null){
+            File file = new File(configured);
+            return file.isFile() ? file : null;
+        }
+
+        try {
+            File classesDir = new File(ServiceDatabase.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            if (classesDir.isDirectory() && new File(classesDir, fileName).isFile()){
+                return new File(classesDir, fileName);
+            }
+        } catch (URISyntaxException | SecurityException | NullPointerException | IllegalArgumentException e) {
+            //No usable code source, keep the working directory only
+        }
+        File file = new File(fileName);
+        return file.isFile() ? file : null;
+    }
+
+    /**
+     * Maps a whole file read-only
+     *
+     * @param file File to map
+     * @return Buffer over the file contents (valid after the channel is closed)
+     * @throws IOException if the file cannot be read
+     */
+
+    static ByteBuffer mapFile(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Parses services lines straight from the buffer
+     * Lines are "name port/protocol [frequency] [# comment]"; others are skipped.
+     *
+     * @param buffer File contents (ASCII)
+     * @param source Where the contents come from
+     * @return The database
+     */
+
+    static ServiceDatabase parse(ByteBuffer buffer, String source){
+        ServiceDatabase database = new ServiceDatabase(source);
+        Map<String, String> interned = new HashMap<>();
+        byte[] field = new byte[256];
+        String[] fields = new String[3];
+
+        int limit = buffer.limit();
+        int pos = buffer.position();
+        while (pos < limit){
+            //Split the line into up to 3 whitespace-separated fields, up to a '#'
+            int count = 0;
+            while (pos < limit && buffer.get(pos) != '\n'){
+                byte b = buffer.get(pos);
+                if (b == '#'){
+                    while (pos < limit && buffer.get(pos) != '\n'){
+                        pos++;
+                    }
+                    break;
+                }
+                if (b == ' ' || b == '\t' || b == '\r'){
+                    pos++;
+                    continue;
+                }
+
+                int length = 0;
+                while (pos < limit && (b = buffer.get(pos)) > ' ' && b != '#'){
+                    if (length < field.length){
+                        field[length++] = b;
+                    }
+                    pos++;
+                }
+                if (count < fields.length){
+                    fields[count++] = new String(field, 0, length, StandardCharsets.US_ASCII);
+                }
+            }
+            pos++;
+
+            if (count >= 2){
+                database.add(fields[0], fields[1], count == 3 ? fields[2] : null, interned);
+            }
+        }
+
+        database.tcpByFrequency = byFrequency(database.tcpFrequencies);
+        database.udpByFrequency = byFrequency(database.udpFrequencies);
+        return database;
+    }
+
+    private void add(String name, String portProtocol, String frequency, Map<String, String> interned){
+        int slash = portProtocol.indexOf('/');
+        if (slash <= 0){
+            return;
+        }
+
+        int port;
+        float weight = 0;
+        try {
+            port = Integer.parseInt(portProtocol.substring(0, slash));
+            if (frequency != null){
+                weight = Float.parseFloat(frequency);
+            }
+        } catch (NumberFormatException e) {
+            return;
+        }
+        if (port < 0 || port > 65535){
+            return;
+        }
+
+        String protocol = portProtocol.substring(slash + 1);
+        String shared = interned.computeIfAbsent(name, n -> n);
+        if (protocol.equals("tcp")){
+            tcpNames[port] = shared;
+            tcpFrequencies[port] = weight;
+        } else if (protocol.equals("udp")){
+            udpNames[port] = shared;
+            udpFrequencies[port] = weight;
+        } else {
+            return;
+        }
+        entries++;
+    }
+
+    /**
+     * Orders the ports with a frequency, highest first (ties by port number)
+     */
+
+    private static int[] byFrequency(float[] frequencies){
+        return IntStream.range(0, frequencies.length)
+            .filter(port -> frequencies[port] > 0)
+            .boxed()
+            .sorted((a, b) -> {
+                int order = Float.compare(frequencies[b], frequencies[a]);
+                return order != 0 ? order : Integer.compare(a, b);
+            })
+            .mapToInt(Integer::intValue)
+            .toArray();
+    }
+
+    @Override
+    public String toString(){
+        return entries + " services from " + source;
+    }
+}
@@ -1,8 +1,10 @@
+import java.util.Arrays;
+
 /**
  * ServiceIdentifier - Identifies network services based on port numbers 
  * 
- * This class maintains a mapping of common port numbers to their associated services.
- * It uses a static approach for simplicity in this learning project.
+ * Static front end of ServiceDatabase: service names and the most likely
+ * open ports, as loaded from port-services.txt.
  * 
  * @author Elodie Moisan
  * @version 1.0
@@ -10,84 +12,113 @@
 
 public class ServiceIdentifier{
 
+    //Position of each port in the database's frequency order, -1 if not
+    //listed (built on first use, with the database)
+    private static class Ranks {
+        static final int[] PORTS_BY_FREQUENCY = ServiceDatabase.get().getPortsByFrequency();
+        static final int[] FREQUENCY_RANK = buildFrequencyRanks(PORTS_BY_FREQUENCY);
+        static final int[] UDP_PORTS_BY_FREQUENCY = ServiceDatabase.get().getUdpPortsByFrequency();
+        static final int[] UDP_FREQUENCY_RANK = buildFrequencyRanks(UDP_PORTS_BY_FREQUENCY);
+    }
+
     /**
     *Identifies the service typically associated with a given port number 
+    *Names come from the service database (port-services.txt)
     *
     *@param port The port number to identify (0-65535)
     *@return The service name, or "Unknown" if port is not recognized
     **/
 
     public static String identifyService(int port){
-        return switch (port) {
-            //File Transfer
-            case 20 -> "FTP-DATA";
-            case 21 -> "FTP"; //File Transfer Protocol
-            case 22 -> "SSH"; //Secure Shell
-            case 23 -> "Telnet";
-            
-            //Email
-            case 25 -> "SMTP";
-            case 110 -> "POP3";
-            case 143 -> "IMAP";
-            case 465 -> "SMTPS";
-            case 587 -> "SMTP-Submission";
-            case 993 -> "IMAPS";
-            case 995 -> "POP3S";
-
-            //Web
-            case 80 -> "HTTP";
-            case 443 -> "HTTPS";
-            case 8080 -> "HTPP-Proxy";
-            case 8443 -> "HTTPS-Alt";
-
-            //DNS & Network
-            case 53 -> "DNS";
-            case 67 -> "DHCP-Server";
-            case 68 -> "DHCP-Client";
-            case 123 -> "NTP";
-            case 161 -> "SNMP";
-            case 162 -> "SNMP-Trap";
-
-            //Remote Access
-            case 3389 -> "RDP";
-            case 5900 -> "VNC";
-            case 5901 -> "VNC-1";
-
-            //Databases
-            case 1433 -> "MS-SQL";
-            case 1521 -> "Oracle";
-            case 3306 -> "MySQL";
-            case 5432 -> "PostgreSQL";
-            case 27017 -> "MongoDB";
-            case 6379 -> "Redis";
-
-            //Application Servers
-            case 8000 -> "HTTP-Alt";
-            case 8888 -> "HTTP-Alt";
-            case 9000 -> "HTTP-Alt";
-            case 9090 -> "HTTP-Alt";
-
-            //Other Common Services 
-            case 137 -> "NetBIOS-NS";
-            case 138 -> "NetBIOS-DGM";
-            case 139 -> "NetBIOS-SSN";
-            case 445 -> "SMB";
-            case 514 -> "Syslog";
-            case 1194 -> "OpenVPN";
-            case 3000 -> "Node.js-Dev";
-            case 4444 -> "Metasploit";
-            case 5000 -> "UPnP/Flask";
-            case 5222 -> "XMPP-Client";
-            case 5269 -> "XMPP-Server";
-            case 6667 -> "IRC";
-            case 8081 -> "HTTP-Alt";
-            case 8082 -> "HTTP-Alt";
-            case 9200 -> "Elasticsearch";
-            case 9300 -> "Elasticsearch-Cluster";
-
-            //Default case
-            default -> "Unknown";
-        };
+        return isValidPort(port) ? ServiceDatabase.get().getName(port) : ServiceDatabase.UNKNOWN;
+    }
+
+    /**
+    *Identifies the service typically listening on a UDP port
+    *
+    *@param port The port number to identify (0-65535)
+    *@return The service name, or "Unknown" if port is not recognized
+    **/
+
+    public static String identifyUdpService(int port){
+        return isValidPort(port) ? ServiceDatabase.get().getUdpName(port) : ServiceDatabase.UNKNOWN;
+    }
+
+    /**
+     * Gets how common a port is
+     * 
+     * @param port The port number
+     * @return 0 for the most frequently open port, higher for rarer ones,
+     *         -1 if the port is not in the frequency table
+     */
+
+    public static int getFrequencyRank(int port){
+        return isValidPort(port) ? Ranks.FREQUENCY_RANK[port] : -1;
+    }
+
+    /**
+     * Gets the N most frequently open ports
+     * Past the end of the frequency table, the remaining ports follow in numeric order
+     * 
+     * @param count Number of ports (1-65535)
+     * @return Ports, most likely to be open first
+     */
+
+    public static int[] topPorts(int count){
+        int[] all = orderByFrequency(1, 65535);
+        return Arrays.copyOf(all, Math.max(0, Math.min(count, all.length)));
+    }
+
+    /**
+     * Orders a port range so the most frequently open ports come first
+     * Listed ports go first by rank, the rest follow in numeric order
+     * 
+     * @param startPort First port in range
+     * @param endPort Last port in range
+     * @return Every port of the range, in probe order
+     */
+
+    public static int[] orderByFrequency(int startPort, int endPort){
+        return order(Ranks.PORTS_BY_FREQUENCY, Ranks.FREQUENCY_RANK, startPort, endPort);
+    }
+
+    /**
+     * Orders a port range so the UDP ports most frequently open come first
+     * 
+     * @param startPort First port in range
+     * @param endPort Last port in range
+     * @return Every port of the range, in probe order
+     */
+
+    public static int[] orderByUdpFrequency(int startPort, int endPort){
+        return order(Ranks.UDP_PORTS_BY_FREQUENCY, Ranks.UDP_FREQUENCY_RANK, startPort, endPort);
+    }
+
+    private static int[] order(int[] portsByFrequency, int[] frequencyRank, int startPort, int endPort){
+        int[] ports = new int[endPort - startPort + 1];
+        int next = 0;
+
+        for (int port : portsByFrequency){
+            //Skip ports outside the range
+            if (port >= startPort && port <= endPort){
+                ports[next++] = port;
+            }
+        }
+        for (int port = startPort; port <= endPort; port++){
+            if (frequencyRank[port] < 0){
+                ports[next++] = port;
+            }
+        }
+        return ports;
+    }
+
+    private static int[] buildFrequencyRanks(int[] portsByFrequency){
+        int[] ranks = new int[65536];
+        Arrays.fill(ranks, -1);
+        for (int rank = 0; rank < portsByFrequency.length; rank++){
+            ranks[portsByFrequency[rank]] = rank;
+        }
+        return ranks;
     }
 
     /**
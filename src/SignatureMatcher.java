@@ -0,0 +1,622 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SignatureMatcher - Identifies services and versions from banners
+ *
+ * Loads probes and match signatures from service-signatures.txt (a subset
+ * of the nmap-service-probes format). Matching a banner against thousands
+ * of regexes one by one would cost thousands of regex runs per open port,
+ * so the regexes are guarded by a prefilter:
+ *
+ *   1. each regex is reduced to its longest literal that every match must
+ *      contain (e.g. "server: nginx/" for "^HTTP/1\.[01] .*Server: nginx/...")
+ *   2. all literals are compiled into one Aho-Corasick automaton, a DFA
+ *      that finds every literal in a single pass over the banner
+ *   3. only the regexes whose literal was found (plus the few that have
+ *      none) are run, in file order, and the first match wins
+ *
+ * The literals are matched case-insensitively, so the prefilter never
+ * drops a regex that could match; the regex has the final word.
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class SignatureMatcher {
+
+    //System property overriding the file location
+    public static final String FILE_PROPERTY = "portscanner.signatures";
+
+    private static final String DEFAULT_FILE = "service-signatures.txt";
+
+    private static final byte[] NO_PROBE = new byte[0];
+
+    /**
+     * A service identified from a banner
+     */
+    public static class Match {
+        final String service;
+        final String product;
+        final String version;
+        final String info;
+
+        Match(String service, String product, String version, String info){
+            this.service = service;
+            this.product = product;
+            this.version = version;
+            this.info = info;
+        }
+
+        /**
+         * @return Service of the signature (e.g. "SSH")
+         */
+        public String getService(){
+            return service;
+        }
+
+        /**
+         * @return Product name, or empty
+         */
+        public String getProduct(){
+            return product;
+        }
+
+        /**
+         * @return Product version, or empty
+         */
+        public String getVersion(){
+            return version;
+        }
+
+        /**
+         * Formats the match as shown in scan results
+         *
+         * @return e.g. "OpenSSH 8.9p1 (Ubuntu-3 protocol 2.0)"
+         */
+        @Override
+        public String toString(){
+            String text = product.isEmpty() ? service : product;
+            if (!version.isEmpty()){
+                text += " " + version;
+            }
+            return info.isEmpty() ? text : text + " (" + info + ")";
+        }
+    }
+
+    /**
+     * One "match" line
+     */
+    private static class Signature {
+        final String service;
+        final Pattern pattern;
+        final String product;
+        final String version;
+        final String info;
+
+        Signature(String service, Pattern pattern, String product, String version, String info){
+            this.service = service;
+            this.pattern = pattern;
+            this.product = product;
+            this.version = version;
+            this.info = info;
+        }
+    }
+
+    /**
+     * One "Probe" line
+     */
+    private static class Probe {
+        final String name;
+        final boolean[] ports;
+        final byte[] payload;
+
+        Probe(String name, boolean[] ports, byte[] payload){
+            this.name = name;
+            this.ports = ports;
+            this.payload = payload;
+        }
+    }
+
+    private static class Holder {
+        static final SignatureMatcher INSTANCE = load();
+    }
+
+    private final String source;
+    private final List<Signature> signatures = new ArrayList<>();
+    private final List<Probe> probes = new ArrayList<>();
+
+    //Signatures with no required literal, tried on every banner
+    private int[] unguarded;
+
+    //Aho-Corasick DFA: transitions[state * alphabetSize + charClass]
+    private int alphabetSize;
+    private final int[] charClass = new int[128];
+    private int[] transitions;
+    //Signatures whose literal ends at each state (including shorter suffixes)
+    private int[][] outputs;
+
+    private SignatureMatcher(String source){
+        this.source = source;
+    }
+
+    /**
+     * Gets the matcher, loading the signatures on the first call
+     *
+     * @return The shared matcher
+     */
+
+    public static SignatureMatcher get(){
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Identifies the service behind a banner
+     *
+     * @param banner Banner read from the port (a String or BannerReader's byte view)
+     * @return The first matching signature's result, or null if none matches
+     */
+
+    public Match match(CharSequence banner){
+        if (banner == null || banner.length() == 0 || signatures.isEmpty()){
+            return null;
+        }
+
+        //One pass of the automaton marks every signature whose literal occurs
+        boolean[] candidate = new boolean[signatures.size()];
+        for (int id : unguarded){
+            candidate[id] = true;
+        }
+        int state = 0;
+        for (int i = 0; i < banner.length(); i++){
+            char c = banner.charAt(i);
+            if (c >= 'A' && c <= 'Z'){
+                c += 'a' - 'A';
+            }
+            state = transitions[state * alphabetSize + (c < 128 ? charClass[c] : 0)];
+            for (int id : outputs[state]){
+                candidate[id] = true;
+            }
+        }
+
+        for (int id = 0; id < candidate.length; id++){
+            if (!candidate[id]){
+                continue;
+            }
+            Signature signature = signatures.get(id);
+            Matcher matcher = signature.pattern.matcher(banner);
+            if (matcher.find()){
+                return new Match(signature.service, substitute(signature.product, matcher),
+                    substitute(signature.version, matcher), substitute(signature.info, matcher));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the bytes to send to a port before reading its banner
+     *
+     * @param port Port number
+     * @return Probe payload, empty to just wait for the service to talk
+     */
+
+    public byte[] getProbe(int port){
+        for (Probe probe : probes){
+            if (probe.ports[port]){
+                return probe.payload;
+            }
+        }
+        return NO_PROBE;
+    }
+
+    /**
+     * Gets the number of signatures loaded
+     *
+     * @return Signature count
+     */
+
+    public int size(){
+        return signatures.size();
+    }
+
+    @Override
+    public String toString(){
+        return signatures.size() + " signatures, " + probes.size() + " probes from " + source;
+    }
+
+    /**
+     * Finds and loads the signature file (see ServiceDatabase.findDataFile)
+     * A missing file gives a matcher that matches nothing.
+     */
+
+    private static SignatureMatcher load(){
+        String text = "";
+        String source = "none";
+        try {
+            File file = ServiceDatabase.findDataFile(DEFAULT_FILE, FILE_PROPERTY);
+            if (file != null){
+                text = StandardCharsets.ISO_8859_1.decode(ServiceDatabase.mapFile(file)).toString();
+                source = file.getPath();
+            } else {
+                try (InputStream resource = SignatureMatcher.class.getResourceAsStream("/" + DEFAULT_FILE)) {
+                    if (resource != null){
+                        text = new String(resource.readAllBytes(), StandardCharsets.ISO_8859_1);
+                        source = "classpath:" + DEFAULT_FILE;
+                    } else {
+                        System.err.println("Warning: Signature file " + DEFAULT_FILE + " not found, "
+                            + "versions come from the raw banner");
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Warning: Cannot read signature file: " + e.getMessage());
+        }
+        return parse(text, source);
+    }
+
+    /**
+     * Parses signature file contents and builds the automaton
+     *
+     * @param text File contents
+     * @param source Where the contents come from
+     * @return The matcher
+     */
+
+    static SignatureMatcher parse(String text, String source){
+        SignatureMatcher matcher = new SignatureMatcher(source);
+        List<String> literals = new ArrayList<>();
+
+        int lineNumber = 0;
+        for (String line : text.split("\n")){
+            lineNumber++;
+            line = line.trim();
+            try {
+                if (line.startsWith("Probe ")){
+                    matcher.probes.add(parseProbe(line));
+                } else if (line.startsWith("match ")){
+                    Signature signature = parseSignature(line);
+                    matcher.signatures.add(signature);
+                    literals.add(requiredLiteral(signature.pattern));
+                }
+            } catch (IllegalArgumentException e) {
+                //Includes PatternSyntaxException
+                System.err.println("Warning: " + source + ":" + lineNumber + ": " + e.getMessage());
+            }
+        }
+
+        matcher.build(literals);
+        return matcher;
+    }
+
+    private static Probe parseProbe(String line){
+        //Probe <name> <ports> q|payload|
+        String[] parts = line.split("\\s+", 4);
+        if (parts.length < 4 || !parts[3].startsWith("q") || parts[3].length() < 3){
+            throw new IllegalArgumentException("Malformed probe line");
+        }
+
+        //"*" lists no port: the NULL probe is what getProbe falls back to anyway
+        boolean[] ports = new boolean[65536];
+        if (!parts[2].equals("*")){
+            for (String item : parts[2].split(",")){
+                String[] range = item.split("-");
+                int first = Integer.parseInt(range[0]);
+                int last = range.length > 1 ? Integer.parseInt(range[1]) : first;
+                for (int port = Math.max(0, first); port <= Math.min(65535, last); port++){
+                    ports[port] = true;
+                }
+            }
+        }
+
+        char delimiter = parts[3].charAt(1);
+        int end = parts[3].indexOf(delimiter, 2);
+        if (end < 0){
+            throw new IllegalArgumentException("Unterminated probe payload");
+        }
+        return new Probe(parts[1], ports, unescape(parts[3].substring(2, end)));
+    }
+
+    private static Signature parseSignature(String line){
+        //match <service> m|regex|flags [p/../] [v/../] [i/../]
+        String[] parts = line.split("\\s+", 3);
+        if (parts.length < 3 || !parts[2].startsWith("m") || parts[2].length() < 3){
+            throw new IllegalArgumentException("Malformed match line");
+        }
+
+        String rest = parts[2];
+        char delimiter = rest.charAt(1);
+        int end = rest.indexOf(delimiter, 2);
+        if (end < 0){
+            throw new IllegalArgumentException("Unterminated match regex");
+        }
+        String regex = rest.substring(2, end);
+
+        int flags = 0;
+        int pos = end + 1;
+        while (pos < rest.length() && !Character.isWhitespace(rest.charAt(pos))){
+            char flag = rest.charAt(pos++);
+            if (flag == 'i'){
+                flags |= Pattern.CASE_INSENSITIVE;
+            } else if (flag == 's'){
+                flags |= Pattern.DOTALL;
+            }
+        }
+
+        //Templates: a letter, a delimiter, text, the same delimiter
+        String product = "";
+        String version = "";
+        String info = "";
+        while (pos < rest.length()){
+            if (Character.isWhitespace(rest.charAt(pos)) || pos + 1 >= rest.length()){
+                pos++;
+                continue;
+            }
+            char field = rest.charAt(pos);
+            char fieldDelimiter = rest.charAt(pos + 1);
+            int fieldEnd = rest.indexOf(fieldDelimiter, pos + 2);
+            if (fieldEnd < 0){
+                throw new IllegalArgumentException("Unterminated " + field + "/ field");
+            }
+            String value = rest.substring(pos + 2, fieldEnd);
+            if (field == 'p'){
+                product = value;
+            } else if (field == 'v'){
+                version = value;
+            } else if (field == 'i'){
+                info = value;
+            }
+            pos = fieldEnd + 1;
+        }
+
+        return new Signature(parts[1], Pattern.compile(regex, flags), product, version, info);
+    }
+
+    /**
+     * Builds the Aho-Corasick DFA over the lowercased literals
+     *
+     * @param literals Required literal of each signature, "" if none
+     */
+
+    private void build(List<String> literals){
+        //Compact alphabet: each character used by a literal gets a class, the rest share class 0
+        alphabetSize = 1;
+        for (String literal : literals){
+            for (char c : literal.toCharArray()){
+                if (charClass[c] == 0){
+                    charClass[c] = alphabetSize++;
+                }
+            }
+        }
+
+        //Trie
+        List<int[]> trie = new ArrayList<>();
+        List<List<Integer>> found = new ArrayList<>();
+        trie.add(new int[alphabetSize]);
+        found.add(new ArrayList<>());
+        List<Integer> always = new ArrayList<>();
+
+        for (int id = 0; id < literals.size(); id++){
+            String literal = literals.get(id);
+            if (literal.isEmpty()){
+                always.add(id);
+                continue;
+            }
+            int state = 0;
+            for (char c : literal.toCharArray()){
+                int cls = charClass[c];
+                if (trie.get(state)[cls] == 0){
+                    trie.get(state)[cls] = trie.size();
+                    trie.add(new int[alphabetSize]);
+                    found.add(new ArrayList<>());
+                }
+                state = trie.get(state)[cls];
+            }
+            found.get(state).add(id);
+        }
+
+        //Breadth-first: failure links turn the trie into a complete DFA
+        int states = trie.size();
+        transitions = new int[states * alphabetSize];
+        outputs = new int[states][];
+        int[] failure = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+
+        outputs[0] = toArray(found.get(0));
+        for (int cls = 0; cls < alphabetSize; cls++){
+            int next = trie.get(0)[cls];
+            transitions[cls] = next;
+            if (next != 0){
+                failure[next] = 0;
+                queue[tail++] = next;
+            }
+        }
+        while (head < tail){
+            int state = queue[head++];
+            //Outputs include those of the longest proper suffix that is also a literal
+            List<Integer> merged = new ArrayList<>(found.get(state));
+            for (int id : outputs[failure[state]]){
+                merged.add(id);
+            }
+            outputs[state] = toArray(merged);
+
+            for (int cls = 0; cls < alphabetSize; cls++){
+                int next = trie.get(state)[cls];
+                if (next != 0){
+                    failure[next] = transitions[failure[state] * alphabetSize + cls];
+                    transitions[state * alphabetSize + cls] = next;
+                    queue[tail++] = next;
+                } else {
+                    transitions[state * alphabetSize + cls] = transitions[failure[state] * alphabetSize + cls];
+                }
+            }
+        }
+
+        unguarded = toArray(always);
+    }
+
+    /**
+     * Finds the longest literal every match of a regex must contain
+     * Only the top level of the regex is used: groups, classes, escapes
+     * like \d, quantifier counts ({3}, {1,3}) and optional characters end
+     * a literal, and a top-level alternation (or a comments flag) means
+     * there is no required literal at all.
+     *
+     * @param pattern Compiled regex
+     * @return Lowercased ASCII literal, or "" if none
+     */
+
+    static String requiredLiteral(Pattern pattern){
+        String regex = pattern.pattern();
+        if ((pattern.flags() & (Pattern.LITERAL | Pattern.COMMENTS)) != 0){
+            return "";
+        }
+
+        String best = "";
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        //Classes nest in Java ([a-z&&[^q]])
+        int classDepth = 0;
+
+        for (int i = 0; i < regex.length(); i++){
+            char c = regex.charAt(i);
+            char literal = 0;
+
+            if (classDepth > 0){
+                if (c == '\\'){
+                    i++;
+                } else if (c == '['){
+                    classDepth++;
+                } else if (c == ']'){
+                    classDepth--;
+                }
+                continue;
+            }
+            if (c == '\\' && i + 1 < regex.length()){
+                char next = regex.charAt(++i);
+                if (next == 'r' || next == 'n' || next == 't'){
+                    literal = next == 'r' ? '\r' : next == 'n' ? '\n' : '\t';
+                } else if (!Character.isLetterOrDigit(next)){
+                    literal = next;
+                } else if ("QxupPkN".indexOf(next) >= 0){
+                    //Quoted text, code points, named references: stop looking (rare in signatures)
+                    break;
+                }
+            } else if (c == '('){
+                //Inline flags: (?x) makes whitespace and # comments meaningless
+                if (regex.startsWith("(?", i) && inlineFlags(regex, i + 2).indexOf('x') >= 0){
+                    return "";
+                }
+                depth++;
+            } else if (c == ')'){
+                depth--;
+            } else if (c == '['){
+                classDepth = 1;
+            } else if (c == '|' && depth == 0){
+                return "";
+            } else if (c == '{'){
+                //Quantifier counts are not text: skip to the closing brace, ending the run
+                int close = regex.indexOf('}', i);
+                i = close < 0 ? regex.length() : close;
+            } else if ("^$.*+?}|".indexOf(c) < 0){
+                literal = c;
+            }
+
+            boolean optional = false;
+            boolean repeated = false;
+            if (i + 1 < regex.length()){
+                char quantifier = regex.charAt(i + 1);
+                optional = quantifier == '?' || quantifier == '*' || quantifier == '{';
+                repeated = quantifier == '+';
+            }
+
+            if (literal != 0 && literal < 128 && depth == 0 && !optional){
+                run.append(Character.toLowerCase(literal));
+                if (!repeated){
+                    continue;
+                }
+            }
+            if (run.length() > best.length()){
+                best = run.toString();
+            }
+            run.setLength(0);
+        }
+        return run.length() > best.length() ? run.toString() : best;
+    }
+
+    /**
+     * Gets the flag letters of an inline group, e.g. "i" for (?i) or (?i:...)
+     */
+
+    private static String inlineFlags(String regex, int start){
+        int end = start;
+        while (end < regex.length() && (Character.isLetter(regex.charAt(end)) || regex.charAt(end) == '-')){
+            end++;
+        }
+        boolean flagGroup = end < regex.length() && (regex.charAt(end) == ')' || regex.charAt(end) == ':');
+        return flagGroup ? regex.substring(start, end) : "";
+    }
+
+    private static String substitute(String template, Matcher matcher){
+        if (template.indexOf('$') < 0){
+            return template;
+        }
+
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < template.length(); i++){
+            char c = template.charAt(i);
+            if (c == '$' && i + 1 < template.length() && Character.isDigit(template.charAt(i + 1))){
+                int group = template.charAt(++i) - '0';
+                if (group <= matcher.groupCount() && matcher.group(group) != null){
+                    result.append(matcher.group(group));
+                }
+            } else {
+                result.append(c);
+            }
+        }
+        //Empty groups leave double or trailing spaces behind
+        return result.toString().replaceAll("\\s+", " ").trim();
+    }
+
+    private static byte[] unescape(String text){
+        byte[] bytes = new byte[text.length()];
+        int length = 0;
+        for (int i = 0; i < text.length(); i++){
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length()){
+                char next = text.charAt(++i);
+                switch (next) {
+                    case 'r': c = '\r'; break;
+                    case 'n': c = '\n'; break;
+                    case 't': c = '\t'; break;
+                    case '0': c = 0; break;
+                    case 'x':
+                        if (i + 2 < text.length()){
+                            c = (char) Integer.parseInt(text.substring(i + 1, i + 3), 16);
+                            i += 2;
+                        }
+                        break;
+                    default: c = next;
+                }
+            }
+            bytes[length++] = (byte) c;
+        }
+        return Arrays.copyOf(bytes, length);
+    }
+
+    private static int[] toArray(List<Integer> values){
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++){
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,171 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.function.Consumer;
+
+/**
+ * StreamingExporter - Writes results to disk while the scan runs
+ *
+ * Each open port is appended as one NDJSON line (or CSV row) through a
+ * buffered writer as soon as it is found, and the summary is written on
+ * close. Memory stays constant however long the scan runs, and the file
+ * is usable even if the scan is interrupted.
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class StreamingExporter implements Consumer<ScanResult>, Closeable {
+
+    private static final DateTimeFormatter dateFormat =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    //Flush at least this often so an interrupted scan keeps its output
+    private static final int FLUSH_EVERY_ROWS = 64;
+    private static final long FLUSH_EVERY_MS = 1000;
+
+    private final BufferedWriter writer;
+    private final boolean csv;
+    private final String outputFile;
+    private final StringBuilder line = new StringBuilder(256);
+
+    private long openPorts;
+    private int unflushedRows;
+    private long lastFlush = System.currentTimeMillis();
+    private boolean closed;
+
+    private StreamingExporter(String outputFile, boolean csv) throws IOException {
+        this.outputFile = outputFile;
+        this.csv = csv;
+        this.writer = new BufferedWriter(new FileWriter(outputFile, StandardCharsets.UTF_8));
+
+        if (csv) {
+            writer.write(ExportHelper.CSV_HEADER);
+        }
+    }
+
+    /**
+     * Opens a streaming export file
+     *
+     * @param filename Output filename (with or without extension)
+     * @param format "ndjson" or "csv"
+     * @return The exporter, ready to receive results
+     * @throws IOException if the file cannot be created
+     * @throws IllegalArgumentException if the format is unknown
+     */
+
+    public static StreamingExporter open(String filename, String format) throws IOException {
+        if (format.equalsIgnoreCase("ndjson") || format.equalsIgnoreCase("jsonl")) {
+            String outputFile = filename.endsWith(".ndjson") ? filename : filename + ".ndjson";
+            return new StreamingExporter(outputFile, false);
+        }
+        if (format.equalsIgnoreCase("csv")) {
+            String outputFile = filename.endsWith(".csv") ? filename : filename + ".csv";
+            return new StreamingExporter(outputFile, true);
+        }
+        throw new IllegalArgumentException("Unknown stream format: " + format + " (supported: ndjson, csv)");
+    }
+
+    /**
+     * Appends one open port (called by the scanners as results arrive)
+     *
+     * @param result Scan result, closed ports are ignored
+     */
+
+    @Override
+    public synchronized void accept(ScanResult result) {
+        if (closed || !result.isOpen()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        line.setLength(0);
+        if (csv) {
+            line.append(result.getHost()).append(',')
+                .append(result.getPort()).append(",OPEN,")
+                .append(result.getService()).append(',')
+                .append(result.getResponseTime()).append(',');
+            if (!result.getBanner().isEmpty()) {
+                line.append('"').append(result.getBanner().replace("\"", "\"\"")).append('"');
+            }
+            line.append(',').append(result.getHostname() != null ? result.getHostname() : "");
+        } else {
+            line.append("{\"host\":\"").append(ExportHelper.escapeJson(result.getHost()))
+                .append("\",\"port\":").append(result.getPort())
+                .append(result.isUdp() ? ",\"protocol\":\"udp\"" : "")
+                .append(",\"state\":\"OPEN\",\"service\":\"").append(ExportHelper.escapeJson(result.getService()))
+                .append("\",\"response_time_ms\":").append(result.getResponseTime());
+            if (!result.getBanner().isEmpty()) {
+                line.append(",\"banner\":\"").append(ExportHelper.escapeJson(result.getBanner())).append('"');
+            }
+            line.append('}');
+        }
+        line.append('\n');
+
+        try {
+            writer.append(line);
+            openPorts++;
+
+            long now = System.currentTimeMillis();
+            if (++unflushedRows >= FLUSH_EVERY_ROWS || now - lastFlush >= FLUSH_EVERY_MS) {
+                writer.flush();
+                unflushedRows = 0;
+                lastFlush = now;
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Error streaming results: " + e.getMessage());
+        }
+        ScanMetrics.get().recordExport(System.nanoTime() - start);
+    }
+
+    /**
+     * Writes the summary and closes the file
+     *
+     * @param portsScanned Total (host, port) pairs probed
+     * @param scanTime Total scan time in seconds
+     * @param complete false if the scan was interrupted
+     */
+
+    public synchronized void close(long portsScanned, double scanTime, boolean complete) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        String timestamp = LocalDateTime.now().format(dateFormat);
+        try {
+            if (csv) {
+                writer.write("\n# Scan Summary\n");
+                writer.write("# Total ports scanned: " + portsScanned + "\n");
+                writer.write("# Open ports found: " + openPorts + "\n");
+                writer.write("# Scan completed at: " + timestamp + "\n");
+                writer.write(String.format("# Scan duration: %.2f seconds\n", scanTime));
+                if (!complete) {
+                    writer.write("# Scan interrupted\n");
+                }
+            } else {
+                writer.write(String.format(
+                    "{\"summary\":true,\"total_ports_scanned\":%d,\"open_ports_found\":%d,"
+                    + "\"scan_duration_seconds\":%.2f,\"timestamp\":\"%s\",\"complete\":%b}\n",
+                    portsScanned, openPorts, scanTime, timestamp, complete));
+            }
+            writer.close();
+            System.out.println("✅ Results streamed to: " + outputFile);
+        } catch (IOException e) {
+            System.err.println("❌ Error closing stream export: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Closes without scan totals (e.g. from a shutdown hook after Ctrl-C)
+     */
+
+    @Override
+    public void close() {
+        close(-1, 0.0, false);
+    }
+}
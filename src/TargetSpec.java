@@ -0,0 +1,283 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * TargetSpec - Parses and lazily expands multi-host target specifications
+ *
+ * Supported forms, combinable as a comma list:
+ *   - single host or IP      scanme.nmap.org, 192.168.1.1
+ *   - CIDR block             10.0.0.0/24
+ *   - last-octet range       192.168.1.10-20
+ *   - full IPv4 range        10.0.0.250-10.0.1.5
+ *
+ * Addresses are never materialized: each block is kept as a start address
+ * and a count, and host number i is computed on demand. A /8 costs the
+ * same memory as a single host.
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class TargetSpec implements Iterable<String> {
+
+    /**
+     * One comma-separated part of the spec: a hostname or an IPv4 block
+     */
+    private static class Segment {
+        final String hostname;
+        final long firstAddress;
+        final long count;
+
+        Segment(String hostname){
+            this.hostname = hostname;
+            this.firstAddress = 0;
+            this.count = 1;
+        }
+
+        Segment(long firstAddress, long count){
+            this.hostname = null;
+            this.firstAddress = firstAddress;
+            this.count = count;
+        }
+
+        String get(long index){
+            return hostname != null ? hostname : formatIPv4(firstAddress + index);
+        }
+    }
+
+    private final String spec;
+    private final List<Segment> segments;
+    private final long size;
+
+    private TargetSpec(String spec, List<Segment> segments){
+        this.spec = spec;
+        this.segments = segments;
+
+        long total = 0;
+        for (Segment segment : segments){
+            total += segment.count;
+        }
+        this.size = total;
+    }
+
+    /**
+     * Parses a target specification
+     *
+     * @param spec e.g. "10.0.0.0/24,192.168.1.5-9,example.com"
+     * @return The parsed spec
+     * @throws IllegalArgumentException if a part is malformed
+     */
+
+    public static TargetSpec parse(String spec){
+        if (spec == null || spec.trim().isEmpty()){
+            throw new IllegalArgumentException("Empty target");
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        for (String part : spec.split(",")){
+            part = part.trim();
+            if (part.isEmpty()){
+                continue;
+            }
+            segments.add(parseSegment(part));
+        }
+
+        if (segments.isEmpty()){
+            throw new IllegalArgumentException("Empty target");
+        }
+        return new TargetSpec(spec, segments);
+    }
+
+    private static Segment parseSegment(String part){
+        //CIDR block
+        int slash = part.indexOf('/');
+        if (slash > 0){
+            long base = parseIPv4(part.substring(0, slash));
+            int prefix;
+            try {
+                prefix = Integer.parseInt(part.substring(slash + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid CIDR prefix: " + part);
+            }
+            if (base < 0 || prefix < 0 || prefix > 32){
+                throw new IllegalArgumentException("Invalid CIDR block: " + part);
+            }
+            long count = 1L << (32 - prefix);
+            return new Segment(base & ~(count - 1), count);
+        }
+
+        //Address range
+        int dash = part.indexOf('-');
+        if (dash > 0){
+            long first = parseIPv4(part.substring(0, dash));
+            String end = part.substring(dash + 1);
+            if (first >= 0){
+                long last;
+                if (end.matches("\\d{1,3}")){
+                    int lastOctet = Integer.parseInt(end);
+                    last = lastOctet <= 255 ? (first & 0xFFFFFF00L) | lastOctet : -1;
+                } else {
+                    last = parseIPv4(end);
+                }
+                if (last < first){
+                    throw new IllegalArgumentException("Invalid address range: " + part);
+                }
+                return new Segment(first, last - first + 1);
+            }
+        }
+
+        //Single IPv4 address or hostname (a dotted quad with a bad octet is neither)
+        long address = parseIPv4(part);
+        if (address >= 0){
+            return new Segment(address, 1);
+        }
+        if (part.matches("\\d+(\\.\\d+){3}")){
+            throw new IllegalArgumentException("Invalid IPv4 address: " + part);
+        }
+        return new Segment(part);
+    }
+
+    /**
+     * Parses a dotted IPv4 address
+     *
+     * @param text e.g. "192.168.1.1"
+     * @return Address as an unsigned 32-bit value, or -1 if not an IPv4 address
+     */
+
+    private static long parseIPv4(String text){
+        String[] octets = text.split("\\.");
+        if (octets.length != 4){
+            return -1;
+        }
+
+        long address = 0;
+        for (String octet : octets){
+            if (!octet.matches("\\d{1,3}")){
+                return -1;
+            }
+            int value = Integer.parseInt(octet);
+            if (value > 255){
+                return -1;
+            }
+            address = (address << 8) | value;
+        }
+        return address;
+    }
+
+    private static String formatIPv4(long address){
+        return ((address >> 24) & 0xFF) + "." + ((address >> 16) & 0xFF) + "."
+            + ((address >> 8) & 0xFF) + "." + (address & 0xFF);
+    }
+
+    /**
+     * Gets the number of hosts in the spec
+     *
+     * @return Host count
+     */
+
+    public long size(){
+        return size;
+    }
+
+    /**
+     * Gets host number i without expanding the spec
+     *
+     * @param index Host index, 0 to size()-1
+     * @return Hostname or IP address
+     */
+
+    public String get(long index){
+        if (index < 0 || index >= size){
+            throw new IndexOutOfBoundsException("Host index " + index + " out of " + size);
+        }
+
+        for (Segment segment : segments){
+            if (index < segment.count){
+                return segment.get(index);
+            }
+            index -= segment.count;
+        }
+        throw new IndexOutOfBoundsException("Host index out of range");
+    }
+
+    /**
+     * Checks if a host is part of the spec
+     *
+     * @param host Hostname or IPv4 address
+     * @return true if the host is one of the targets
+     */
+
+    public boolean contains(String host){
+        long address = parseIPv4(host);
+        for (Segment segment : segments){
+            if (segment.hostname != null){
+                if (segment.hostname.equalsIgnoreCase(host)){
+                    return true;
+                }
+            } else if (address >= segment.firstAddress && address < segment.firstAddress + segment.count){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the parts of the spec that are hostnames (need DNS resolution)
+     *
+     * @return Hostnames in spec order, empty if every target is an IPv4 address
+     */
+
+    public List<String> getHostnames(){
+        List<String> hostnames = new ArrayList<>();
+        for (Segment segment : segments){
+            if (segment.hostname != null){
+                hostnames.add(segment.hostname);
+            }
+        }
+        return hostnames;
+    }
+
+    /**
+     * Iterates over the hosts lazily
+     */
+
+    @Override
+    public Iterator<String> iterator(){
+        return new Iterator<String>() {
+            private int segment = 0;
+            private long offset = 0;
+
+            @Override
+            public boolean hasNext(){
+                return segment < segments.size();
+            }
+
+            @Override
+            public String next(){
+                if (!hasNext()){
+                    throw new NoSuchElementException();
+                }
+                Segment current = segments.get(segment);
+                String host = current.get(offset++);
+                if (offset >= current.count){
+                    segment++;
+                    offset = 0;
+                }
+                return host;
+            }
+        };
+    }
+
+    /**
+     * Gets the original specification
+     *
+     * @return The spec as given on the command line
+     */
+
+    @Override
+    public String toString(){
+        return spec;
+    }
+}
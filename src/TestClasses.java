@@ -1,9 +1,47 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.cert.X509Certificate;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+
 /**
  * Test program for ServiceIdentifier and ScanResult classes
+ * The checks print PASS/FAIL and the program fails if any of them fails.
  */
 
 public class TestClasses {
 
+    private static int failures = 0;
+
     public static void main(String[] args) {
         System.out.println("═══════════════════════════════════════");
         System.out.println("   Testing ServiceIdentifier class");
@@ -18,7 +56,117 @@ public class TestClasses {
 
         //Test ScanResult
         testScanResult();
-    
+
+        System.out.println("\n═══════════════════════════════════════");
+        System.out.println("   Testing RateLimiter class");
+        System.out.println("═══════════════════════════════════════\n");
+
+        //Test RateLimiter
+        testRateLimiter();
+
+        System.out.println("\n═══════════════════════════════════════");
+        System.out.println("   Testing PortStateStore class");
+        System.out.println("═══════════════════════════════════════\n");
+
+        //Test PortStateStore
+        testPortStateStore();
+
+        System.out.println("\n═══════════════════════════════════════");
+        System.out.println("   Testing SignatureMatcher class");
+        System.out.println("═══════════════════════════════════════\n");
+
+        //Test SignatureMatcher
+        testSignatureMatcher();
+
+        System.out.println("\n═══════════════════════════════════════");
+        System.out.println("   Testing ResultCache class");
+        System.out.println("═══════════════════════════════════════\n");
+
+        //Test ResultCache
+        testResultCache();
+
+        System.out.println("\n═══════════════════════════════════════");
+        System.out.println("   Testing TlsProber class");
+        System.out.println("═══════════════════════════════════════\n");
+
+        //Test TlsProber
+        testTlsProber();
+
+        System.out.println("\n═══════════════════════════════════════");
+        System.out.println("   Testing ScanJournal class");
+        System.out.println("═══════════════════════════════════════\n");
+
+        //Test ScanJournal
+        testScanJournal();
+
+        System.out.println("\n═══════════════════════════════════════");
+        System.out.println("   Testing BaselineDiff class");
+        System.out.println("═══════════════════════════════════════\n");
+
+        //Test BaselineDiff
+        testBaselineDiff();
+
+        System.out.println("\n═══════════════════════════════════════");
+        System.out.println("   Testing ExportHelper class");
+        System.out.println("═══════════════════════════════════════\n");
+
+        //Test ExportHelper
+        testExportHelper();
+
+        System.out.println("\n═══════════════════════════════════════");
+        System.out.println("   Testing ProbePermutation class");
+        System.out.println("═══════════════════════════════════════\n");
+
+        //Test ProbePermutation
+        testProbePermutation();
+
+        System.out.println("\n═══════════════════════════════════════");
+        System.out.println("   Testing ResultRingBuffer class");
+        System.out.println("═══════════════════════════════════════\n");
+
+        //Test ResultRingBuffer
+        testResultRingBuffer();
+
+        System.out.println("\n═══════════════════════════════════════");
+        System.out.println("   Testing TargetSpec class");
+        System.out.println("═══════════════════════════════════════\n");
+
+        //Test TargetSpec
+        testTargetSpec();
+
+        System.out.println("\n═══════════════════════════════════════");
+        System.out.println("   Testing RttEstimator class");
+        System.out.println("═══════════════════════════════════════\n");
+
+        //Test RttEstimator
+        testRttEstimator();
+
+        System.out.println("\n═══════════════════════════════════════");
+        System.out.println("   Testing ConcurrencyController class");
+        System.out.println("═══════════════════════════════════════\n");
+
+        //Test ConcurrencyController
+        testConcurrencyController();
+
+        System.out.println("\n═══════════════════════════════════════");
+        System.out.println("   Testing UdpPayloads and PortScannerUdp classes");
+        System.out.println("═══════════════════════════════════════\n");
+
+        //Test UDP probes
+        testUdp();
+
+        System.out.println();
+        if (failures > 0){
+            throw new AssertionError(failures + " check(s) failed");
+        }
+        System.out.println("All checks passed");
+    }
+
+    private static void check(String name, boolean passed){
+        System.out.println((passed ? "PASS " : "FAIL ") + name);
+        if (!passed){
+            failures++;
+        }
     }
     
     private static void testServiceIdentifier(){
@@ -75,5 +223,843 @@ public class TestClasses {
         System.out.println("State: " + result1.getState());
     }
 
-}
+    private static void testRateLimiter(){
+        //Throttled like the selector loops: wait for the next token whenever none is left
+        RateLimiter limiter = new RateLimiter(200, 2);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long cpuStart = threads.getCurrentThreadCpuTime();
+        long start = System.nanoTime();
+        int tokens = 0;
+        int rounds = 0;
+        while (tokens < 100){
+            int granted = limiter.tryAcquire(10);
+            if (granted == 0){
+                //No token must mean something to wait for, or the loop spins
+                LockSupport.parkNanos(Math.max(limiter.nanosUntilAvailable(), 1));
+            }
+            tokens += granted;
+            rounds++;
+        }
+        long wall = System.nanoTime() - start;
+        long cpu = threads.getCurrentThreadCpuTime() - cpuStart;
+
+        System.out.printf("100 tokens at 200/s: %d rounds, %.0fms wall, %.1fms CPU%n", rounds, wall / 1e6, cpu / 1e6);
+        check("about one wait per token (< 300 rounds)", rounds < 300);
+        check("throttled loop sleeps (CPU < 20% of wall time)", cpu < wall / 5);
+        check("rate is respected (>= 450ms for 100 tokens)", wall >= 450_000_000L);
+    }
+
+    private static void testPortStateStore(){
+        //One port: only its chunk is allocated
+        PortStateStore single = new PortStateStore("127.0.0.1");
+        single.markClosed(80);
+        System.out.println("One closed port: ~" + single.estimateBytes() + " bytes");
+        check("single-port store stays under 1 KB", single.estimateBytes() < 1024);
+        check("port 80 is closed", single.getState(80) == PortStateStore.CLOSED);
+        check("port 81 is unknown", single.getState(81) == PortStateStore.UNKNOWN);
+        check("port 40000 (unallocated chunk) is unknown", single.getState(40000) == PortStateStore.UNKNOWN);
+
+        //Every state, across chunk boundaries
+        PortStateStore store = new PortStateStore("127.0.0.1");
+        store.addOpen(1023, 5, "");
+        store.addOpen(1024, 7, "SSH-2.0");
+        store.markFiltered(65535);
+        for (int port = 0; port < 1000; port++){
+            store.markClosed(port);
+        }
+        check("open ports on both sides of a chunk boundary",
+            store.getState(1023) == PortStateStore.OPEN && store.getState(1024) == PortStateStore.OPEN);
+        check("port 65535 is filtered", store.getState(65535) == PortStateStore.FILTERED);
+        check("counts are 2 open, 1000 closed, 1 filtered",
+            store.countOpen() == 2 && store.countClosed() == 1000 && store.countFiltered() == 1);
+        check("probedWord covers every state", Long.bitCount(store.probedWord(1023 >>> 6)) == 41
+            && store.probedWord(1024 >>> 6) == 1L && store.probedWord(65535 >>> 6) == 1L << 63);
+        check("open results keep their details", "SSH-2.0".equals(store.getOpenResult(1024).getBanner()));
+
+        //Changes are taken once, then only new ports show up
+        long chunks = store.takeChangedChunks();
+        int changed = 0;
+        for (int word = 0; word < PortStateStore.WORDS; word++){
+            changed += Long.bitCount(store.takeChangedWord(word));
+        }
+        check("changed chunks are 0, 1 and 63", chunks == (1L | 2L | 1L << 63));
+        check("every recorded port is taken as changed once", changed == 1003);
+        store.markClosed(2000);
+        store.markClosed(80);
+        check("only the new port is changed afterwards", store.takeChangedChunks() == 2L
+            && store.takeChangedWord(2000 >>> 6) == 1L << (2000 & 63));
+        check("nothing left to take", store.takeChangedChunks() == 0);
+
+        //Full range: every chunk allocated, as documented in the class comment
+        PortStateStore full = new PortStateStore("127.0.0.1");
+        for (int port = 0; port <= 65535; port++){
+            full.markClosed(port);
+        }
+        System.out.println("Full range: ~" + full.estimateBytes() + " bytes");
+        check("full-range store costs about 33 KB", full.estimateBytes() / 1024 == 33);
+    }
+
+    private static void testSignatureMatcher(){
+        //Quantifiers: counts are not text, the quantified character is not required
+        checkLiteral("^x{10}$", "");
+        checkLiteral("^ab\\d{1,3}z", "ab");
+        checkLiteral("^HTTP/1\\.[01] \\d{3} OK", "http/1.");
+        checkLiteral("^ab+?c", "ab");
+        checkLiteral("^SSH-([\\d.]+)-OpenSSH_([\\w.]+)", "-openssh_");
+
+        //Alternation: none at the top level, groups are skipped
+        checkLiteral("foo|barbaz", "");
+        checkLiteral("^(?:foo|bar)baz", "baz");
 
+        //Escapes and classes
+        checkLiteral("a\\.b\\+c", "a.b+c");
+        checkLiteral("\\bword\\b", "word");
+        checkLiteral("\\Qa.b\\E", "");
+        checkLiteral("[a-z&&[^q]]xyz", "xyz");
+        checkLiteral("(?i)Server: nginx", "server: nginx");
+        checkLiteral("abc(?x) d e", "");
+
+        //End to end: the prefilter must not drop signatures that match
+        SignatureMatcher matcher = SignatureMatcher.parse(String.join("\n",
+            "match repeat m|^x{10}$| p/Repeat/",
+            "match count m|^ab\\d{1,3}z| p/Count/",
+            "match alt m=^(?:foo|bar)baz= p/Alt/",
+            "match dotted m|^220 \\(vsFTPd ([\\w.]+)\\)| p/vsftpd/ v/$1/"), "test");
+        check("^x{10}$ matches xxxxxxxxxx", matcher.match("xxxxxxxxxx") != null);
+        check("^ab\\d{1,3}z matches ab12z", matcher.match("ab12z") != null);
+        check("^(?:foo|bar)baz matches barbaz", matcher.match("barbaz") != null);
+        SignatureMatcher.Match vsftpd = matcher.match("220 (vsFTPd 3.0.5)\r\n");
+        check("escaped parentheses match with the version", vsftpd != null && "3.0.5".equals(vsftpd.getVersion()));
+        check("unrelated banner does not match", matcher.match("SSH-2.0-OpenSSH_9.6") == null);
+    }
+
+    private static void checkLiteral(String regex, String expected){
+        String literal = SignatureMatcher.requiredLiteral(Pattern.compile(regex));
+        check("requiredLiteral(" + regex + ") = \"" + literal + "\"", literal.equals(expected));
+    }
+
+    private static void testResultCache(){
+        try {
+            File file = File.createTempFile("portscanner-cache", ".tsv");
+            file.deleteOnExit();
+
+            //Two minutes old: past the FILTERED TTL, well within the default one
+            long storedAt = System.currentTimeMillis() - 120_000;
+            Files.write(file.toPath(), String.join("\n",
+                "# PortScanner result cache v1",
+                "127.0.0.1\t22\tFILTERED\t2000\t" + storedAt + "\t0\t",
+                "127.0.0.1\t23\tCLOSED\t1\t" + storedAt + "\t0\t",
+                "127.0.0.1\t80\tOPEN\t3\t" + storedAt + "\t1\tnginx\\t1.24\\nextra",
+                "").getBytes(StandardCharsets.UTF_8));
+
+            ResultCache cache = ResultCache.open(file.getPath(), ResultCache.DEFAULT_TTL_SECONDS, 100);
+            check("FILTERED entry expires after " + ResultCache.FILTERED_TTL_SECONDS + "s", cache.get("127.0.0.1", 22, false) == null);
+            check("CLOSED entry is kept for the full TTL", cache.get("127.0.0.1", 23, false) != null);
+            ResultCache.Entry open = cache.get("127.0.0.1", 80, true);
+            check("escaped banner is read back", open != null && "nginx\t1.24\nextra".equals(open.getBanner()));
+
+            //A fresh FILTERED result is still served, and banners survive a save
+            cache.put("127.0.0.1", 443, PortStateStore.FILTERED, 2000, "", false);
+            cache.put("127.0.0.1", 8080, PortStateStore.OPEN, 1, "a\\b\tc\r\n", true);
+            cache.save();
+            ResultCache reloaded = ResultCache.open(file.getPath(), ResultCache.DEFAULT_TTL_SECONDS, 100);
+            check("fresh FILTERED entry is served", reloaded.get("127.0.0.1", 443, false) != null);
+            ResultCache.Entry saved = reloaded.get("127.0.0.1", 8080, true);
+            check("banner survives save and reload", saved != null && "a\\b\tc\r\n".equals(saved.getBanner()));
+        } catch (IOException e) {
+            check("cache file: " + e.getMessage(), false);
+        }
+    }
+
+    private static void testTlsProber(){
+        File dir = null;
+        try {
+            //Self-signed certificate made by the JDK's own keytool
+            dir = Files.createTempDirectory("portscanner-tls").toFile();
+            File keyStoreFile = new File(dir, "server.p12");
+            char[] password = "changeit".toCharArray();
+            Process keytool = new ProcessBuilder(
+                System.getProperty("java.home") + File.separator + "bin" + File.separator + "keytool",
+                "-genkeypair", "-alias", "server", "-keyalg", "EC", "-validity", "2",
+                "-dname", "CN=portscanner-test", "-ext", "SAN=dns:localhost,ip:127.0.0.1",
+                "-storetype", "PKCS12", "-keystore", keyStoreFile.getPath(),
+                "-storepass", new String(password))
+                .redirectErrorStream(true).redirectOutput(new File(dir, "keytool.log")).start();
+            if (keytool.waitFor() != 0){
+                check("keytool created a self-signed certificate", false);
+                return;
+            }
+
+            KeyStore keyStore = KeyStore.getInstance("PKCS12");
+            try (InputStream in = new FileInputStream(keyStoreFile)){
+                keyStore.load(in, password);
+            }
+            X509Certificate certificate = (X509Certificate) keyStore.getCertificate("server");
+            KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagers.init(keyStore, password);
+            SSLContext serverContext = SSLContext.getInstance("TLS");
+            serverContext.init(keyManagers.getKeyManagers(), null, null);
+
+            try (SSLServerSocket server = (SSLServerSocket) serverContext.getServerSocketFactory()
+                    .createServerSocket(0, 8, InetAddress.getLoopbackAddress())){
+                Thread acceptor = new Thread(() -> serveTls(server), "tls-test-server");
+                acceptor.setDaemon(true);
+                acceptor.start();
+                InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort());
+
+                TlsProber.TlsInfo first = probeTls(address);
+                check("handshake with a self-signed server", first != null);
+                if (first == null){
+                    return;
+                }
+                check("protocol is TLS (" + first.getProtocol() + ")", first.getProtocol().startsWith("TLS"));
+                check("cipher suite is reported", !first.getCipherSuite().isEmpty());
+                check("subject is the certificate CN", first.getSubject().contains("portscanner-test"));
+                check("SANs are listed " + first.getSubjectAltNames(),
+                    first.getSubjectAltNames().contains("localhost") && first.getSubjectAltNames().contains("127.0.0.1"));
+                check("expiry matches the certificate", first.getNotAfter() == certificate.getNotAfter().getTime());
+                String expected = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(certificate.getEncoded()));
+                check("SHA-256 fingerprint matches the certificate", expected.equals(first.getFingerprint()));
+                check("first probe of an endpoint is a full handshake", !first.isResumed());
+
+                //TLS 1.3 tickets are not waited for, so a repeat probe is a full handshake
+                TlsProber.TlsInfo second = probeTls(address);
+                check("repeat TLS 1.3 probe is a full handshake", second != null
+                    && (!"TLSv1.3".equals(second.getProtocol()) || !second.isResumed()));
+            }
+
+            //TLS 1.2 sessions are resumable as soon as the handshake is done
+            try (SSLServerSocket server = (SSLServerSocket) serverContext.getServerSocketFactory()
+                    .createServerSocket(0, 8, InetAddress.getLoopbackAddress())){
+                server.setEnabledProtocols(new String[] {"TLSv1.2"});
+                Thread acceptor = new Thread(() -> serveTls(server), "tls-test-server");
+                acceptor.setDaemon(true);
+                acceptor.start();
+                InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort());
+
+                TlsProber.TlsInfo first = probeTls(address);
+                TlsProber.TlsInfo second = probeTls(address);
+                check("repeat TLS 1.2 probe of the same endpoint resumes", first != null && !first.isResumed()
+                    && second != null && "TLSv1.2".equals(second.getProtocol()) && second.isResumed());
+                check("summary counts the resumed handshake (" + TlsProber.getSummary() + ")",
+                    TlsProber.getSummary().contains("(1 resumed)"));
+            }
+        } catch (IOException | InterruptedException | GeneralSecurityException e) {
+            check("TLS test server: " + e, false);
+        } finally {
+            if (dir != null){
+                for (File file : dir.listFiles()){
+                    file.delete();
+                }
+                dir.delete();
+            }
+        }
+    }
+
+    private static TlsProber.TlsInfo probeTls(InetSocketAddress address){
+        try (SocketChannel channel = SocketChannel.open(address)){
+            return TlsProber.probe(channel.socket(), 3000);
+        } catch (IOException e) {
+            System.out.println("     " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void serveTls(SSLServerSocket server){
+        while (!server.isClosed()){
+            try (Socket client = server.accept()){
+                client.setSoTimeout(3000);
+                ((SSLSocket) client).startHandshake();
+                //Reading sends the TLS 1.3 session ticket, then waits for the close
+                client.getInputStream().read();
+            } catch (IOException e) {
+                //Client gone or server closed
+            }
+        }
+    }
+
+    private static void testScanJournal(){
+        try {
+            File journalFile = File.createTempFile("portscanner-journal", ".tsv");
+            File streamFile = File.createTempFile("portscanner-stream", ".ndjson");
+            journalFile.deleteOnExit();
+            streamFile.deleteOnExit();
+
+            //A scan of ports 1-2 interrupted after both were probed
+            Files.write(journalFile.toPath(), String.join("\n",
+                "# PortScanner journal v1",
+                "127.0.0.1\t1\tOPEN\t4\tSSH-2.0-test",
+                "127.0.0.1\t2\tCLOSED",
+                "").getBytes(StandardCharsets.UTF_8));
+
+            //Resuming probes nothing, the restored open port must still be streamed
+            Map<String, PortStateStore> restored = ScanJournal.load(journalFile.getPath());
+            PortScannerMultithreaded scanner = new PortScannerMultithreaded("127.0.0.1", 1, 2, 2);
+            scanner.restore(restored, "journal");
+            StreamingExporter stream = StreamingExporter.open(streamFile.getPath(), "ndjson");
+            scanner.addResultListener(stream);
+            scanner.scan();
+            stream.close(2, 0.0, true);
+
+            List<String> lines = Files.readAllLines(streamFile.toPath(), StandardCharsets.UTF_8);
+            check("restored open port is streamed on resume", lines.size() == 2
+                && lines.get(0).contains("\"port\":1,") && lines.get(0).contains("SSH-2.0-test"));
+            check("stream summary counts the restored port", lines.get(lines.size() - 1).contains("\"open_ports_found\":1"));
+        } catch (IOException e) {
+            check("journal resume: " + e.getMessage(), false);
+        }
+
+        try {
+            File file = File.createTempFile("portscanner-journal", ".tsv");
+            file.deleteOnExit();
+
+            //A scan checkpointing a few ports, with a banner that needs escaping
+            String banner = "220 ftp\tready\r\nC:\\ok";
+            PortStateStore store = new PortStateStore("10.0.0.1");
+            ScanJournal journal = ScanJournal.create(file.getPath());
+            journal.start(List.of(store));
+            store.markClosed(20);
+            store.markFiltered(21);
+            store.addOpen(2121, 12, banner);
+            store.addOpen(22, 3, "");
+            journal.close();
+            check("every probed port is journaled", journal.getEntries() == 4);
+
+            //Killed in the middle of the next checkpoint
+            Files.write(file.toPath(), "10.0.0.1\t80\tOPEN\t5\n10.0.0.1\t443\tOPE".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+            PortStateStore loaded = ScanJournal.load(file.getPath()).get("10.0.0.1");
+            check("states are reloaded", loaded != null && loaded.getState(20) == PortStateStore.CLOSED
+                && loaded.getState(21) == PortStateStore.FILTERED && loaded.getState(22) == PortStateStore.OPEN);
+            check("escaped banner is read back", loaded != null && banner.equals(loaded.getOpenResult(2121).getBanner())
+                && loaded.getOpenResult(2121).getResponseTime() == 12);
+            check("complete line before the kill is kept", loaded != null && loaded.getState(80) == PortStateStore.OPEN);
+            check("truncated last line is skipped", loaded != null && loaded.getState(443) == PortStateStore.UNKNOWN);
+
+            //Resuming appends only new ports to the same file
+            Map<String, PortStateStore> restored = ScanJournal.load(file.getPath());
+            ScanJournal resumed = ScanJournal.append(file.getPath(), restored);
+            resumed.start(restored.values());
+            restored.get("10.0.0.1").markClosed(443);
+            resumed.close();
+            check("resumed journal writes only the new port", resumed.getEntries() == 1);
+            PortStateStore reloaded = ScanJournal.load(file.getPath()).get("10.0.0.1");
+            check("port probed after the resume is reloaded", reloaded != null
+                && reloaded.getState(443) == PortStateStore.CLOSED && reloaded.countOpen() == 3);
+        } catch (IOException e) {
+            check("journal round trip: " + e.getMessage(), false);
+        }
+    }
+
+    private static void testBaselineDiff(){
+        try (ServerSocket server = new ServerSocket(0, 8, InetAddress.getLoopbackAddress())){
+            int port = server.getLocalPort();
+            File baselineFile = File.createTempFile("portscanner-baseline", ".json");
+            File streamFile = File.createTempFile("portscanner-stream", ".ndjson");
+            baselineFile.deleteOnExit();
+            streamFile.deleteOnExit();
+
+            //Last night's export had the listening port open
+            List<ScanResult> previous = List.of(new ScanResult("127.0.0.1", port, true, 1, "", false));
+            ExportHelper.exportToJSON(previous, "127.0.0.1", baselineFile.getPath(), 0.1);
+
+            //The verify phase confirms it, the sweep skips it, the stream must still list it
+            BaselineDiff baseline = BaselineDiff.load(baselineFile.getPath());
+            Map<String, PortStateStore> verified = baseline.verify(TargetSpec.parse("127.0.0.1"), new int[]{port}, 1, false);
+            PortScannerMultithreaded scanner = new PortScannerMultithreaded("127.0.0.1", port, port, 1);
+            scanner.restore(verified, "baseline verify");
+            StreamingExporter stream = StreamingExporter.open(streamFile.getPath(), "ndjson");
+            scanner.addResultListener(baseline);
+            scanner.addResultListener(stream);
+            scanner.scan();
+            stream.close(1, 0.0, true);
+
+            List<String> lines = Files.readAllLines(streamFile.toPath(), StandardCharsets.UTF_8);
+            check("port still open after verify is streamed",
+                lines.size() == 2 && lines.get(0).contains("\"port\":" + port + ","));
+        } catch (IOException e) {
+            check("baseline verify: " + e.getMessage(), false);
+        }
+
+        //Same banner (as identified), changed banner, closed since, newly opened, and a UDP port
+        try (ServerSocket same = new ServerSocket(0, 8, InetAddress.getLoopbackAddress());
+             ServerSocket changed = new ServerSocket(0, 8, InetAddress.getLoopbackAddress());
+             ServerSocket opened = new ServerSocket(0, 8, InetAddress.getLoopbackAddress())){
+            int closedPort;
+            try (ServerSocket gone = new ServerSocket(0, 8, InetAddress.getLoopbackAddress())){
+                closedPort = gone.getLocalPort();
+            }
+            serveBanner(same, "SSH-2.0-OpenSSH_9.6");
+            serveBanner(changed, "SSH-2.0-OpenSSH_9.7");
+
+            //Banner with quotes, backslashes, a control character and non-ASCII text
+            String oldBanner = "SSH-2.0-\"old\" C:\\x \u0001 é";
+            File baselineFile = File.createTempFile("portscanner-baseline", ".json");
+            baselineFile.deleteOnExit();
+            ExportHelper.exportToJSON(List.of(
+                new ScanResult("127.0.0.1", same.getLocalPort(), true, 1, "OpenSSH 9.6 (protocol 2.0)", false).withHostname("lo.example"),
+                new ScanResult("127.0.0.1", changed.getLocalPort(), true, 1, oldBanner, false),
+                new ScanResult("127.0.0.1", closedPort, true, 1, "", false),
+                ScanResult.udp("127.0.0.1", opened.getLocalPort(), 1, "")),
+                "127.0.0.1", baselineFile.getPath(), 0.1);
+
+            BaselineDiff baseline = BaselineDiff.load(baselineFile.getPath());
+            int[] scanPorts = {same.getLocalPort(), changed.getLocalPort(), closedPort, opened.getLocalPort()};
+            String verifyOutput = captureOutput(() -> {
+                Map<String, PortStateStore> verified = baseline.verify(TargetSpec.parse("127.0.0.1"), scanPorts, 4, false);
+                PortStateStore store = verified.get("127.0.0.1");
+                check("UDP baseline entry is not verified as a TCP port",
+                    store != null && !store.isProbed(opened.getLocalPort()));
+            });
+            baseline.accept(new ScanResult("127.0.0.1", opened.getLocalPort(), true, 1, "", false));
+            baseline.accept(new ScanResult("127.0.0.1", same.getLocalPort(), true, 1, "", false));
+            String diff = captureOutput(baseline::printDiff);
+
+            check("verify counts 2 still open, 1 closed, 1 banner change",
+                verifyOutput.contains("2 still open, 1 closed, 1 banner changes"));
+            check("closed port is reported", diff.contains(":" + closedPort) && diff.contains("OPEN -> CLOSED"));
+            check("changed banner is parsed back exactly and reported",
+                diff.contains("banner \"" + oldBanner + "\" -> \"OpenSSH 9.7 (protocol 2.0)\""));
+            check("port open in the baseline TCP results is not new",
+                !diff.contains("+ 127.0.0.1:" + same.getLocalPort() + " "));
+            check("port open only over UDP in the baseline is newly opened over TCP",
+                diff.contains("+ 127.0.0.1:" + opened.getLocalPort() + " "));
+        } catch (IOException e) {
+            check("baseline diff: " + e.getMessage(), false);
+        }
+
+        //Not a scan export
+        for (String json : new String[] {"{\"results\": 3}", "[1, 2]", "{\"results\": [}", "{\"results\": []} x"}){
+            boolean rejected = false;
+            try {
+                File file = File.createTempFile("portscanner-baseline", ".json");
+                file.deleteOnExit();
+                Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+                BaselineDiff.load(file.getPath());
+            } catch (IllegalArgumentException e) {
+                rejected = true;
+            } catch (IOException e) {
+                rejected = false;
+            }
+            check("invalid baseline " + json + " is rejected", rejected);
+        }
+    }
+
+    private static void testExportHelper(){
+        try {
+            File csvFile = File.createTempFile("portscanner-export", ".csv");
+            File streamFile = File.createTempFile("portscanner-stream", ".csv");
+            csvFile.deleteOnExit();
+            streamFile.deleteOnExit();
+
+            ScanResult named = new ScanResult("10.0.0.1", 22, true, 3, "SSH-2.0", false).withHostname("gw.example");
+            ExportHelper.exportToCSV(List.of(named), "10.0.0.1", csvFile.getPath(), 0.1);
+            StreamingExporter stream = StreamingExporter.open(streamFile.getPath(), "csv");
+            stream.accept(named);
+            stream.close(1, 0.1, true);
+
+            //Both CSV writers share one layout, the original columns keep their position
+            List<String> exported = Files.readAllLines(csvFile.toPath(), StandardCharsets.UTF_8);
+            List<String> streamed = Files.readAllLines(streamFile.toPath(), StandardCharsets.UTF_8);
+            check("CSV header keeps Target,Port first", exported.get(0).startsWith("Target,Port,State,"));
+            check("export and stream headers match", exported.get(0).equals(streamed.get(0)));
+            check("hostname is the last column", exported.get(1).equals("10.0.0.1,22,OPEN,SSH,3,\"SSH-2.0\",gw.example"));
+            check("streamed row has the same columns", streamed.get(1).equals(exported.get(1)));
+        } catch (IOException e) {
+            check("CSV export: " + e.getMessage(), false);
+        }
+
+        //Binary greeting (MySQL-like) kept as raw Latin-1 bytes by BannerReader
+        String banner = "J\0\0\0\n8.0.36\0\u0001\t\b\f\u001b\"q\\";
+        String escaped = ExportHelper.escapeJson(banner);
+        check("control characters are escaped (" + escaped + ")",
+            escaped.equals("J\\u0000\\u0000\\u0000\\n8.0.36\\u0000\\u0001\\t\\b\\f\\u001b\\\"q\\\\"));
+        try {
+            File ndjsonFile = File.createTempFile("portscanner-stream", ".ndjson");
+            ndjsonFile.deleteOnExit();
+            StreamingExporter stream = StreamingExporter.open(ndjsonFile.getPath(), "ndjson");
+            stream.accept(new ScanResult("127.0.0.1", 3306, true, 2, banner, false));
+            stream.close(1, 0.1, true);
+
+            String line = Files.readAllLines(ndjsonFile.toPath(), StandardCharsets.UTF_8).get(0);
+            check("NDJSON line with a binary banner has no raw control characters",
+                line.chars().noneMatch(c -> c < 0x20) && line.endsWith("\"banner\":\"" + escaped + "\"}"));
+        } catch (IOException e) {
+            check("NDJSON export: " + e.getMessage(), false);
+        }
+    }
+
+    private static void testProbePermutation(){
+        //Powers of two, odd bit counts and sizes just past a power of four (most cycle walking)
+        for (long size : new long[] {1, 2, 3, 7, 10, 17, 100, 1000, 1024, 4097, 65537, 254 * 1024}){
+            ProbePermutation order = new ProbePermutation(size, 42);
+            BitSet seen = new BitSet((int) size);
+            boolean inRange = true;
+            for (long i = 0; i < size; i++){
+                long index = order.get(i);
+                inRange &= index >= 0 && index < size;
+                if (inRange){
+                    seen.set((int) index);
+                }
+            }
+            check("size " + size + ": every index exactly once", inRange && seen.cardinality() == size);
+        }
+
+        ProbePermutation first = new ProbePermutation(1000, 7);
+        ProbePermutation again = new ProbePermutation(1000, 7);
+        ProbePermutation other = new ProbePermutation(1000, 8);
+        boolean same = true;
+        boolean differs = false;
+        int fixedPoints = 0;
+        for (long i = 0; i < 1000; i++){
+            same &= first.get(i) == again.get(i);
+            differs |= first.get(i) != other.get(i);
+            fixedPoints += first.get(i) == i ? 1 : 0;
+        }
+        check("same seed, same order", same);
+        check("another seed, another order", differs);
+        check("order is shuffled (" + fixedPoints + " fixed points)", fixedPoints < 20);
+
+        boolean rejected = false;
+        try {
+            new ProbePermutation(0, 1);
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        check("empty permutation is rejected", rejected);
+    }
+
+    private static void testResultRingBuffer(){
+        //A tiny ring so the producers wrap around it thousands of times
+        ResultRingBuffer<Integer> ring = new ResultRingBuffer<>(5);
+        check("capacity is rounded up to a power of two", ring.getCapacity() == 8);
+
+        int producers = 4;
+        int perProducer = 50_000;
+        int[] seen = new int[producers * perProducer];
+        int[] lastOfProducer = new int[producers];
+        Arrays.fill(lastOfProducer, -1);
+        boolean[] ordered = {true};
+
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++){
+            int first = p * perProducer;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++){
+                    ring.publish(first + i);
+                }
+            }, "ring-producer-" + p);
+            threads[p].start();
+        }
+
+        //Single consumer, drained the way the scanner's result consumer does it
+        long deadline = System.currentTimeMillis() + 30_000;
+        int drained = 0;
+        while (drained < seen.length && System.currentTimeMillis() < deadline){
+            drained += ring.drain(item -> {
+                seen[item]++;
+                int producer = item / perProducer;
+                ordered[0] &= item > lastOfProducer[producer];
+                lastOfProducer[producer] = item;
+            });
+        }
+        for (Thread thread : threads){
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        int missing = 0;
+        int duplicated = 0;
+        for (int count : seen){
+            missing += count == 0 ? 1 : 0;
+            duplicated += count > 1 ? 1 : 0;
+        }
+        System.out.println(drained + " items through " + ring.getCapacity() + " slots from " + producers + " producers");
+        check("no item lost across wraparound (" + missing + " missing)", missing == 0);
+        check("no item duplicated (" + duplicated + " duplicated)", duplicated == 0 && drained == seen.length);
+        check("each producer's items come out in publish order", ordered[0]);
+        check("ring is empty afterwards", ring.drain(item -> { }) == 0);
+    }
+
+    private static void testTargetSpec(){
+        TargetSpec single = TargetSpec.parse("192.168.1.7/32");
+        check("/32 is the address itself", single.size() == 1 && "192.168.1.7".equals(single.get(0)));
+
+        TargetSpec pair = TargetSpec.parse("10.0.0.5/31");
+        check("/31 is two addresses, aligned down", pair.size() == 2
+            && "10.0.0.4".equals(pair.get(0)) && "10.0.0.5".equals(pair.get(1)));
+
+        //Network and broadcast addresses are scanned too
+        TargetSpec block = TargetSpec.parse("192.168.1.77/24");
+        check("/24 is 256 addresses", block.size() == 256);
+        check("/24 starts at the network address", "192.168.1.0".equals(block.get(0)));
+        check("/24 ends at the broadcast address", "192.168.1.255".equals(block.get(255)));
+        check("/24 contains its hosts only", block.contains("192.168.1.200")
+            && !block.contains("192.168.2.0") && !block.contains("192.168.0.255"));
+
+        TargetSpec list = TargetSpec.parse("10.0.0.0/31, 192.168.1.10-12,10.0.0.250-10.0.1.1,example.com");
+        List<String> hosts = new ArrayList<>();
+        for (String host : list){
+            hosts.add(host);
+        }
+        check("comma list keeps its order " + hosts, hosts.equals(List.of("10.0.0.0", "10.0.0.1",
+            "192.168.1.10", "192.168.1.11", "192.168.1.12",
+            "10.0.0.250", "10.0.0.251", "10.0.0.252", "10.0.0.253", "10.0.0.254", "10.0.0.255", "10.0.1.0", "10.0.1.1",
+            "example.com")));
+        check("size and get match the iteration", list.size() == hosts.size() && "example.com".equals(list.get(13)));
+        check("only hostnames need DNS", list.getHostnames().equals(List.of("example.com")));
+
+        TargetSpec wide = TargetSpec.parse("10.0.0.0/8");
+        check("/8 is expanded lazily", wide.size() == 1L << 24 && "10.255.255.255".equals(wide.get(wide.size() - 1)));
+
+        for (String invalid : new String[] {"", " , ", "10.0.0.0/33", "10.0.0.0/-1", "10.0.0.0/x", "example.com/24",
+                "10.0.0.20-10", "10.0.0.1-300", "10.0.1.0-10.0.0.255", "10.0.0.256", "300.1.1.1"}){
+            boolean rejected = false;
+            try {
+                TargetSpec.parse(invalid);
+            } catch (IllegalArgumentException e) {
+                rejected = true;
+            }
+            check("\"" + invalid + "\" is rejected", rejected);
+        }
+
+        boolean outOfRange = false;
+        try {
+            single.get(1);
+        } catch (IndexOutOfBoundsException e) {
+            outOfRange = true;
+        }
+        check("index past the last host is rejected", outOfRange);
+    }
+
+    private static void testRttEstimator(){
+        long ms = 1_000_000L;
+
+        //RFC 6298: first sample sets SRTT = R and RTTVAR = R/2
+        RttEstimator rtt = new RttEstimator(2000);
+        check("ceiling is used without samples", rtt.getTimeout() == 2000);
+        rtt.addSample(100 * ms);
+        check("first sample: SRTT = R", rtt.getSmoothedRtt() == 100.0);
+
+        //Then RTTVAR = 3/4 50 + 1/4 |100 - 200| = 62.5 and SRTT = 7/8 100 + 1/8 200 = 112.5
+        rtt.addSample(200 * ms);
+        check("second sample: SRTT = 7/8 SRTT + 1/8 R (" + rtt.getSmoothedRtt() + ")", rtt.getSmoothedRtt() == 112.5);
+        check("ceiling is kept until 3 samples", rtt.getTimeout() == 2000);
+
+        //RTTVAR = 3/4 62.5 + 1/4 |112.5 - 100| = 50, SRTT = 110.9375, RTO = SRTT + 4 RTTVAR = 310.9375
+        rtt.addSample(100 * ms);
+        check("third sample: RTO = SRTT + 4 RTTVAR (" + rtt.getTimeout() + "ms)", rtt.getTimeout() == 310);
+        check("samples are counted", rtt.getSampleCount() == 3);
+
+        //LAN: a 1ms RTT gives a 2ms RTO, raised to the 100ms floor
+        RttEstimator lan = new RttEstimator(2000);
+        for (int i = 0; i < 3; i++){
+            lan.addSample(ms);
+        }
+        check("RTO never goes below 100ms (" + lan.getTimeout() + "ms)", lan.getTimeout() == 100);
+
+        //Slow link: 400 + 4 x 112.5 = 850ms, capped by a 500ms ceiling
+        RttEstimator slow = new RttEstimator(500);
+        for (int i = 0; i < 3; i++){
+            slow.addSample(400 * ms);
+        }
+        check("RTO never exceeds the ceiling (" + slow.getTimeout() + "ms)", slow.getTimeout() == 500);
+
+        //A steady RTT shrinks the variance, so the RTO converges on the RTT
+        RttEstimator steady = new RttEstimator(2000);
+        for (int i = 0; i < 100; i++){
+            steady.addSample(300 * ms);
+        }
+        check("steady RTT converges (" + steady.getTimeout() + "ms)", steady.getTimeout() >= 300 && steady.getTimeout() <= 301);
+    }
+
+    private static void testConcurrencyController(){
+        try {
+            ConcurrencyController controller = new ConcurrencyController(4, 1, 1000);
+            runWindow(controller, 0);
+            runWindow(controller, 0);
+            check("slow start doubles per clean window (4 -> 8 -> 16)", controller.getLimit() == 16);
+
+            //Half the window timing out is a spike over the clean baseline
+            runWindow(controller, 8);
+            check("timeout spike halves the limit (16 -> 8)", controller.getLimit() == 8 && controller.getDecreases() == 1);
+
+            runWindow(controller, 0);
+            runWindow(controller, 0);
+            check("after a cut the limit grows by 8 per window (8 -> 16 -> 24)", controller.getLimit() == 24);
+            check("peak limit is kept", controller.getPeakLimit() == 24);
+
+            for (int i = 0; i < 10; i++){
+                runWindow(controller, controller.getLimit());
+            }
+            check("limit never goes below the minimum", controller.getLimit() == 1);
+
+            ConcurrencyController capped = new ConcurrencyController(4, 1, 20);
+            for (int i = 0; i < 5; i++){
+                runWindow(capped, 0);
+            }
+            check("limit never exceeds the maximum", capped.getLimit() == 20 && capped.getPeakLimit() == 20);
+
+            //A host dropping half its ports all along is not congested
+            ConcurrencyController filtered = new ConcurrencyController(8, 1, 1000);
+            for (int i = 0; i < 4; i++){
+                runWindow(filtered, filtered.getLimit() / 2);
+            }
+            check("steady loss rate is the baseline, not a spike", filtered.getDecreases() == 0 && filtered.getLimit() == 128);
+
+            //The next probe waits for a free slot
+            ConcurrencyController full = new ConcurrencyController(2, 1, 2);
+            full.acquire();
+            full.acquire();
+            Thread waiter = new Thread(() -> {
+                try {
+                    full.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            waiter.start();
+            waiter.join(200);
+            boolean blocked = waiter.isAlive();
+            full.release(false);
+            waiter.join(1000);
+            check("acquire waits at the limit and resumes on release", blocked && !waiter.isAlive());
+        } catch (InterruptedException e) {
+            check("concurrency controller: interrupted", false);
+        }
+    }
+
+    private static void runWindow(ConcurrencyController controller, int losses) throws InterruptedException {
+        int window = controller.getLimit();
+        for (int i = 0; i < window; i++){
+            controller.acquire();
+        }
+        for (int i = 0; i < window; i++){
+            controller.release(i < losses);
+        }
+    }
+
+    private static void serveBanner(ServerSocket server, String banner){
+        Thread thread = new Thread(() -> {
+            while (!server.isClosed()){
+                try (Socket client = server.accept()){
+                    client.getOutputStream().write((banner + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                } catch (IOException e) {
+                    //Server closed
+                }
+            }
+        }, "banner-test-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static String captureOutput(Runnable action){
+        PrintStream original = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true, StandardCharsets.UTF_8));
+        try {
+            action.run();
+        } finally {
+            System.setOut(original);
+        }
+        String output = captured.toString(StandardCharsets.UTF_8);
+        System.out.print(output);
+        return output;
+    }
+
+    private static void testUdp(){
+        int id = 0x5a17c3e1;
+
+        //DNS version.bind: CHAOS TXT query carrying the id, answered with a TXT record
+        byte[] query = UdpPayloads.payload(53, id);
+        check("DNS query carries the transaction id", (query[0] & 0xff) == 0xc3 && (query[1] & 0xff) == 0xe1);
+        byte[] txt = "9.18.24".getBytes(StandardCharsets.ISO_8859_1);
+        byte[] dns = Arrays.copyOf(query, query.length + 12 + 1 + txt.length);
+        dns[2] |= (byte) 0x80;
+        dns[7] = 1;
+        byte[] answer = {(byte) 0xc0, 12, 0, 16, 0, 3, 0, 0, 0, 0, 0, (byte) (txt.length + 1), (byte) txt.length};
+        System.arraycopy(answer, 0, dns, query.length, answer.length);
+        System.arraycopy(txt, 0, dns, query.length + answer.length, txt.length);
+        check("DNS reply with our id matches", UdpPayloads.matches(53, id, dns, dns.length));
+        check("DNS reply with another id does not", !UdpPayloads.matches(53, id + 1, dns, dns.length));
+        check("DNS query echoed without the QR bit does not", !UdpPayloads.matches(53, id, query, query.length));
+        check("DNS version is read from the TXT answer", "DNS 9.18.24".equals(UdpPayloads.describe(53, dns, dns.length)));
+
+        //NTP: the server echoes our transmit timestamp as origin timestamp
+        byte[] ntpRequest = UdpPayloads.payload(123, id);
+        byte[] ntp = new byte[48];
+        ntp[0] = 0x24;
+        ntp[1] = 1;
+        System.arraycopy("GPS".getBytes(StandardCharsets.ISO_8859_1), 0, ntp, 12, 3);
+        System.arraycopy(ntpRequest, 40, ntp, 24, 8);
+        check("NTP request is a 48-byte client packet", ntpRequest.length == 48 && (ntpRequest[0] & 0x07) == 3);
+        check("NTP reply echoing our timestamp matches", UdpPayloads.matches(123, id, ntp, ntp.length));
+        check("NTP reply for another probe does not", !UdpPayloads.matches(123, id + 1, ntp, ntp.length));
+        check("NTP stratum and clock source are described",
+            "NTPv4 stratum 1 (GPS)".equals(UdpPayloads.describe(123, ntp, ntp.length)));
+
+        //SNMP: a GetResponse (PDU tag 0xa2) with the same request-id
+        byte[] snmp = UdpPayloads.payload(161, id);
+        for (int i = 0; i < snmp.length; i++){
+            if ((snmp[i] & 0xff) == 0xa0){
+                snmp[i] = (byte) 0xa2;
+                break;
+            }
+        }
+        check("SNMP GetResponse with our request-id matches", UdpPayloads.matches(161, id, snmp, snmp.length));
+        check("SNMP GetResponse with another request-id does not", !UdpPayloads.matches(161, id + 1, snmp, snmp.length));
+
+        byte[] ssdp = "HTTP/1.1 200 OK\r\nSERVER: Linux UPnP/1.0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+        check("SSDP answers with an HTTP status line", UdpPayloads.matches(1900, id, ssdp, ssdp.length)
+            && !UdpPayloads.matches(1900, id, ntp, ntp.length));
+        check("other ports get a line break, any reply counts", Arrays.equals(UdpPayloads.payload(40000, id), new byte[] {'\r', '\n'})
+            && UdpPayloads.matches(40000, id, ntp, 1));
+
+        //Classification: replying port, closed port (ICMP unreachable), silent port
+        int savedTimeout = PortChecker.getTimeout();
+        try (DatagramSocket echo = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+             DatagramSocket silent = new DatagramSocket(0, InetAddress.getLoopbackAddress())){
+            int closedPort;
+            try (DatagramSocket gone = new DatagramSocket(0, InetAddress.getLoopbackAddress())){
+                closedPort = gone.getLocalPort();
+            }
+            Thread responder = new Thread(() -> {
+                byte[] buffer = new byte[512];
+                while (!echo.isClosed()){
+                    try {
+                        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                        echo.receive(packet);
+                        byte[] reply = "udp-test ready".getBytes(StandardCharsets.ISO_8859_1);
+                        echo.send(new DatagramPacket(reply, reply.length, packet.getSocketAddress()));
+                    } catch (IOException e) {
+                        //Socket closed
+                    }
+                }
+            }, "udp-test-server");
+            responder.setDaemon(true);
+            responder.start();
+
+            PortChecker.setTimeout(400);
+            PortScannerUdp scanner = new PortScannerUdp(TargetSpec.parse("127.0.0.1"), 1, 1, 16);
+            scanner.setPorts(new int[] {echo.getLocalPort(), closedPort, silent.getLocalPort()}, "test ports");
+            scanner.scan();
+
+            List<ScanResult> open = scanner.getResults();
+            check("replying port is OPEN with its reply", open.size() == 1 && open.get(0).getPort() == echo.getLocalPort()
+                && open.get(0).isUdp() && open.get(0).getBanner().contains("udp-test ready"));
+            check("silent port is open|filtered " + scanner.getOpenFiltered(),
+                scanner.getOpenFiltered().equals(List.of(String.valueOf(silent.getLocalPort()))));
+            check("port answering ICMP unreachable is closed (neither list)",
+                open.stream().noneMatch(r -> r.getPort() == closedPort)
+                && !scanner.getOpenFiltered().contains(String.valueOf(closedPort)));
+        } catch (IOException e) {
+            check("UDP test servers: " + e.getMessage(), false);
+        } finally {
+            PortChecker.setTimeout(savedTimeout);
+        }
+    }
+}
@@ -0,0 +1,559 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509ExtendedTrustManager;
+
+/**
+ * TlsProber - TLS handshake fingerprinting of open ports
+ *
+ * Runs a TLS client handshake over the probe connection with a
+ * non-blocking SSLEngine, then reports what was negotiated:
+ *
+ *   - protocol and cipher suite
+ *   - ALPN protocol (h2 / http/1.1 offered)
+ *   - certificate subject CN, SANs, expiry and SHA-256 fingerprint
+ *
+ * Certificates are recorded, never verified: self-signed and expired ones
+ * are exactly what a scan should report. Sessions are cached per host and
+ * port, so a repeat TLS 1.2 probe of the same endpoint resumes. TLS 1.3
+ * tickets arrive after the handshake and are not waited for: a scan probes
+ * each (host, port) once and would never use them. The CPU-heavy handshake
+ * steps (key exchange, certificate parsing) run on one shared executor
+ * sized to the cores, so hundreds of
+ * banner threads waiting on the network never fight over the CPU.
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class TlsProber {
+
+    //Ports that speak TLS right after connecting (no STARTTLS)
+    private static final int[] TLS_PORTS = {
+        261, 443, 448, 465, 563, 585, 614, 636, 853, 989, 990, 992, 993, 994, 995,
+        2083, 2087, 2096, 2484, 3269, 4443, 5061, 5986, 6443, 6679, 6697, 7443,
+        8443, 8531, 8883, 9443, 10443
+    };
+
+    private static final boolean[] IS_TLS_PORT = new boolean[65536];
+    static {
+        for (int port : TLS_PORTS) {
+            IS_TLS_PORT[port] = true;
+        }
+    }
+
+    //ALPN protocols offered, the server picks one
+    private static final String[] ALPN = {"h2", "http/1.1"};
+
+    //Cached client sessions (handshakes to resume)
+    private static final int SESSION_CACHE_SIZE = 10_000;
+    private static final int SESSION_TIMEOUT_SECONDS = 3600;
+
+    private static final SSLContext CONTEXT = createContext();
+
+    //Shared executor for the SSLEngine delegated tasks
+    private static final ExecutorService HANDSHAKE_TASKS = Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors(), task -> {
+            Thread thread = new Thread(task, "tls-handshake");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    //One selector per thread, reused across handshakes
+    private static final ThreadLocal<Selector> SELECTORS = ThreadLocal.withInitial(() -> {
+        try {
+            return Selector.open();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open selector", e);
+        }
+    });
+
+    //Statistics
+    private static final LongAdder handshakes = new LongAdder();
+    private static final LongAdder resumed = new LongAdder();
+    private static final LongAdder failures = new LongAdder();
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    /**
+     * What a TLS handshake revealed
+     */
+    public static class TlsInfo {
+        final String protocol;
+        final String cipherSuite;
+        final String alpn;
+        final String subject;
+        final List<String> subjectAltNames;
+        final long notAfter;
+        final String fingerprint;
+        final boolean resumed;
+
+        TlsInfo(String protocol, String cipherSuite, String alpn, String subject, List<String> subjectAltNames,
+                long notAfter, String fingerprint, boolean resumed){
+            this.protocol = protocol;
+            this.cipherSuite = cipherSuite;
+            this.alpn = alpn;
+            this.subject = subject;
+            this.subjectAltNames = subjectAltNames;
+            this.notAfter = notAfter;
+            this.fingerprint = fingerprint;
+            this.resumed = resumed;
+        }
+
+        /**
+         * @return Negotiated protocol (e.g. "TLSv1.3")
+         */
+        public String getProtocol(){
+            return protocol;
+        }
+
+        /**
+         * @return Negotiated cipher suite
+         */
+        public String getCipherSuite(){
+            return cipherSuite;
+        }
+
+        /**
+         * @return ALPN protocol chosen by the server, or empty
+         */
+        public String getAlpn(){
+            return alpn;
+        }
+
+        /**
+         * @return Certificate subject CN (or full subject without CN), empty without certificate
+         */
+        public String getSubject(){
+            return subject;
+        }
+
+        /**
+         * @return DNS names and IP addresses of the certificate
+         */
+        public List<String> getSubjectAltNames(){
+            return subjectAltNames;
+        }
+
+        /**
+         * @return Certificate expiry (epoch ms), 0 without certificate
+         */
+        public long getNotAfter(){
+            return notAfter;
+        }
+
+        /**
+         * @return SHA-256 of the certificate, lowercase hex, empty without certificate
+         */
+        public String getFingerprint(){
+            return fingerprint;
+        }
+
+        /**
+         * @return true if an earlier session was resumed
+         */
+        public boolean isResumed(){
+            return resumed;
+        }
+
+        /**
+         * Formats the handshake as shown in scan results
+         *
+         * @return e.g. "TLSv1.3 TLS_AES_256_GCM_SHA384, ALPN h2, CN=example.com, SAN example.com www.example.com,
+         *         expires 2027-01-15, SHA-256 3f2a..."
+         */
+        @Override
+        public String toString(){
+            StringBuilder text = new StringBuilder(protocol).append(' ').append(cipherSuite);
+            if (!alpn.isEmpty()){
+                text.append(", ALPN ").append(alpn);
+            }
+            if (!subject.isEmpty()){
+                text.append(", ").append(subject);
+            }
+            if (!subjectAltNames.isEmpty()){
+                text.append(", SAN ").append(String.join(" ", subjectAltNames));
+            }
+            if (notAfter > 0){
+                text.append(", expires ").append(new SimpleDateFormat("yyyy-MM-dd").format(notAfter));
+            }
+            if (!fingerprint.isEmpty()){
+                text.append(", SHA-256 ").append(fingerprint);
+            }
+            if (resumed){
+                text.append(", resumed");
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * Checks whether a port is expected to speak TLS from the first byte
+     *
+     * @param port Port number
+     * @return true for HTTPS, IMAPS, POP3S, SMTPS, LDAPS... ports
+     */
+
+    public static boolean isTlsPort(int port){
+        return port >= 0 && port < IS_TLS_PORT.length && IS_TLS_PORT[port];
+    }
+
+    /**
+     * Runs a TLS handshake over a connected socket and describes it
+     * The socket must come from a SocketChannel (see PortChecker); it is
+     * switched to non-blocking mode and left open, closing it is up to
+     * the caller.
+     *
+     * @param socket Connected socket with a channel
+     * @param timeoutMillis Longest time for the whole handshake
+     * @return What the handshake revealed
+     * @throws IOException if the handshake fails, times out or the socket has no channel
+     */
+
+    public static TlsInfo probe(Socket socket, int timeoutMillis) throws IOException {
+        SocketChannel channel = socket.getChannel();
+        if (channel == null){
+            throw new IOException("TLS probing needs a channel-backed socket");
+        }
+
+        InetSocketAddress remote = (InetSocketAddress) socket.getRemoteSocketAddress();
+        String peerHost = remote.getHostString();
+
+        //Engines created with host and port share the session cache entries
+        //(a later TLS 1.2 probe of this same endpoint can resume)
+        SSLEngine engine = CONTEXT.createSSLEngine(peerHost, remote.getPort());
+        engine.setUseClientMode(true);
+        SSLParameters parameters = engine.getSSLParameters();
+        parameters.setApplicationProtocols(ALPN);
+        if (!peerHost.equals(remote.getAddress().getHostAddress())){
+            parameters.setServerNames(Collections.singletonList(new SNIHostName(peerHost)));
+        }
+        engine.setSSLParameters(parameters);
+
+        long start = System.currentTimeMillis();
+        try {
+            handshake(engine, channel, start + timeoutMillis);
+        } catch (IOException | RuntimeException e) {
+            failures.increment();
+            throw e instanceof IOException ? (IOException) e : new SSLException(e);
+        }
+
+        SSLSession session = engine.getSession();
+        boolean isResumed = session.getCreationTime() < start;
+        handshakes.increment();
+        if (isResumed){
+            resumed.increment();
+        }
+
+        String alpn = engine.getApplicationProtocol();
+        TlsInfo info = describe(session, alpn != null ? alpn : "", isResumed);
+
+        closeQuietly(engine, channel);
+        return info;
+    }
+
+    /**
+     * Drives the handshake, waiting on the thread's selector whenever the
+     * engine needs bytes that have not arrived yet
+     */
+
+    private static void handshake(SSLEngine engine, SocketChannel channel, long deadline)
+            throws IOException {
+        SSLSession session = engine.getSession();
+        ByteBuffer netIn = ByteBuffer.allocate(session.getPacketBufferSize());
+        ByteBuffer netOut = ByteBuffer.allocate(session.getPacketBufferSize());
+        ByteBuffer appIn = ByteBuffer.allocate(session.getApplicationBufferSize());
+
+        channel.configureBlocking(false);
+        Selector selector = SELECTORS.get();
+        SelectionKey key = channel.register(selector, 0);
+
+        try {
+            engine.beginHandshake();
+            handshaking:
+            while (true){
+                switch (engine.getHandshakeStatus()) {
+                    case NEED_WRAP: {
+                        netOut.clear();
+                        SSLEngineResult result = engine.wrap(EMPTY, netOut);
+                        netOut.flip();
+                        write(channel, key, netOut, deadline);
+                        if (result.getStatus() == SSLEngineResult.Status.CLOSED){
+                            throw new SSLException("Connection closed during handshake");
+                        }
+                        break;
+                    }
+                    case NEED_UNWRAP:
+                    case NEED_UNWRAP_AGAIN: {
+                        netIn.flip();
+                        SSLEngineResult result = engine.unwrap(netIn, appIn);
+                        netIn.compact();
+                        if (result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW){
+                            if (!netIn.hasRemaining()){
+                                netIn = grow(netIn, engine.getSession().getPacketBufferSize());
+                            }
+                            read(channel, key, netIn, deadline);
+                        } else if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW){
+                            //Application data is not wanted, make room and carry on
+                            appIn = appIn.capacity() < engine.getSession().getApplicationBufferSize()
+                                ? ByteBuffer.allocate(engine.getSession().getApplicationBufferSize()) : appIn;
+                            appIn.clear();
+                        } else if (result.getStatus() == SSLEngineResult.Status.CLOSED){
+                            throw new SSLException("Connection closed during handshake");
+                        }
+                        break;
+                    }
+                    case NEED_TASK:
+                        runTasks(engine);
+                        break;
+                    default:
+                        //FINISHED or NOT_HANDSHAKING
+                        break handshaking;
+                }
+            }
+        } finally {
+            key.cancel();
+            //Flush the cancelled key so the channel can be reused or switched back to blocking
+            selector.selectNow();
+        }
+    }
+
+    /**
+     * Runs the engine's delegated tasks on the shared executor
+     */
+
+    private static void runTasks(SSLEngine engine) throws IOException {
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null){
+            tasks.add(CompletableFuture.runAsync(task, HANDSHAKE_TASKS));
+        }
+        try {
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+        } catch (RuntimeException e) {
+            throw new SSLException("Handshake task failed", e.getCause() != null ? e.getCause() : e);
+        }
+    }
+
+    private static void write(SocketChannel channel, SelectionKey key, ByteBuffer buffer, long deadline)
+            throws IOException {
+        while (buffer.hasRemaining()){
+            if (channel.write(buffer) == 0){
+                await(key, SelectionKey.OP_WRITE, deadline);
+            }
+        }
+    }
+
+    private static void read(SocketChannel channel, SelectionKey key, ByteBuffer buffer, long deadline)
+            throws IOException {
+        while (true){
+            int count = channel.read(buffer);
+            if (count < 0){
+                throw new SSLException("Connection closed during handshake");
+            }
+            if (count > 0){
+                return;
+            }
+            await(key, SelectionKey.OP_READ, deadline);
+        }
+    }
+
+    /**
+     * Waits until the channel is ready for an operation
+     *
+     * @throws IOException if the deadline passes first
+     */
+
+    private static void await(SelectionKey key, int operation, long deadline) throws IOException {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0){
+            throw new SSLException("TLS handshake timed out");
+        }
+        key.interestOps(operation);
+        key.selector().select(remaining);
+        key.selector().selectedKeys().clear();
+        key.interestOps(0);
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int size){
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(size, buffer.capacity() * 2));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    /**
+     * Extracts the session and leaf certificate details
+     */
+
+    private static TlsInfo describe(SSLSession session, String alpn, boolean isResumed){
+        String subject = "";
+        List<String> altNames = new ArrayList<>();
+        long notAfter = 0;
+        String fingerprint = "";
+
+        try {
+            Certificate[] chain = session.getPeerCertificates();
+            if (chain.length > 0 && chain[0] instanceof X509Certificate){
+                X509Certificate leaf = (X509Certificate) chain[0];
+                subject = commonName(leaf.getSubjectX500Principal().getName());
+                notAfter = leaf.getNotAfter().getTime();
+                fingerprint = sha256(leaf.getEncoded());
+
+                Collection<List<?>> names = leaf.getSubjectAlternativeNames();
+                if (names != null){
+                    for (List<?> name : names){
+                        //Type 2 = DNS name, 7 = IP address
+                        Object type = name.get(0);
+                        if (Integer.valueOf(2).equals(type) || Integer.valueOf(7).equals(type)){
+                            altNames.add(String.valueOf(name.get(1)));
+                        }
+                    }
+                }
+            }
+        } catch (SSLPeerUnverifiedException | CertificateParsingException e) {
+            //Anonymous or resumed session without certificate details
+        } catch (GeneralSecurityException e) {
+            //Certificate cannot be encoded, skip the fingerprint
+        }
+
+        return new TlsInfo(session.getProtocol(), session.getCipherSuite(), alpn, subject, altNames, notAfter,
+            fingerprint, isResumed);
+    }
+
+    /**
+     * Gets "CN=..." out of an RFC 2253 name, or the whole name without CN
+     */
+
+    private static String commonName(String distinguishedName){
+        for (String part : distinguishedName.split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)")){
+            if (part.trim().startsWith("CN=")){
+                return part.trim();
+            }
+        }
+        return distinguishedName;
+    }
+
+    private static String sha256(byte[] data) throws GeneralSecurityException {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+        StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (byte b : digest){
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Sends close_notify if it fits in the socket buffer, without waiting
+     */
+
+    private static void closeQuietly(SSLEngine engine, SocketChannel channel){
+        try {
+            engine.closeOutbound();
+            ByteBuffer out = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+            engine.wrap(EMPTY, out);
+            out.flip();
+            channel.write(out);
+        } catch (IOException e) {
+            //The connection is closed right after anyway
+        }
+    }
+
+    /**
+     * Formats the handshake statistics for scan summaries
+     *
+     * @return e.g. "120 handshakes, 3 failed" ("120 handshakes (2 resumed), 3 failed"
+     *         after repeat probes), or null if no TLS port was probed
+     */
+
+    public static String getSummary(){
+        long total = handshakes.sum();
+        long failed = failures.sum();
+        if (total == 0 && failed == 0){
+            return null;
+        }
+        long resumedCount = resumed.sum();
+        return total + " handshakes" + (resumedCount > 0 ? " (" + resumedCount + " resumed)" : "") + ", " + failed + " failed";
+    }
+
+    /**
+     * Builds the client context: trust everything, cache sessions
+     */
+
+    private static SSLContext createContext(){
+        try {
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, new TrustManager[] {new RecordingTrustManager()}, null);
+            SSLSessionContext sessions = context.getClientSessionContext();
+            sessions.setSessionCacheSize(SESSION_CACHE_SIZE);
+            sessions.setSessionTimeout(SESSION_TIMEOUT_SECONDS);
+            return context;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("TLS is not available", e);
+        }
+    }
+
+    /**
+     * Accepts every certificate: the scanner records them, it does not trust them
+     * Extended so the JDK skips its own hostname and algorithm checks too.
+     */
+    private static class RecordingTrustManager extends X509ExtendedTrustManager {
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket){
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket){
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine){
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine){
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType){
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType){
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers(){
+            return new X509Certificate[0];
+        }
+    }
+}
@@ -0,0 +1,536 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * UdpPayloads - Protocol-specific probes for UDP scanning
+ *
+ * A UDP service only answers a request it understands, so each well-known
+ * port gets a real request instead of an empty datagram:
+ *
+ *   53    DNS query for version.bind (CHAOS TXT)
+ *   123   NTP client request (mode 3)
+ *   137   NetBIOS node status (NBSTAT *)
+ *   161   SNMPv1 GetRequest for sysDescr.0, community "public"
+ *   1434  MS-SQL browser ping
+ *   1900  SSDP M-SEARCH
+ *   5353  mDNS service enumeration (legacy unicast)
+ *
+ * Other ports get a bare line break. Every request carries the probe id
+ * (DNS/NetBIOS transaction id, NTP transmit timestamp, SNMP request-id),
+ * and a reply only counts when it carries the same id back.
+ *
+ * @author Elodie Moisan
+ * @version 2.3
+ */
+
+public class UdpPayloads {
+
+    //Sent to other ports, NIO channels cannot send an empty datagram
+    private static final byte[] GENERIC = {'\r', '\n'};
+
+    //sysDescr.0 = 1.3.6.1.2.1.1.1.0
+    private static final byte[] SYS_DESCR = {0x2b, 0x06, 0x01, 0x02, 0x01, 0x01, 0x01, 0x00};
+
+    private static final byte[] SSDP_SEARCH = ascii("M-SEARCH * HTTP/1.1\r\n"
+        + "HOST: 239.255.255.250:1900\r\n"
+        + "MAN: \"ssdp:discover\"\r\n"
+        + "MX: 1\r\n"
+        + "ST: ssdp:all\r\n\r\n");
+
+    //BER tags
+    private static final int INTEGER = 0x02;
+    private static final int OCTET_STRING = 0x04;
+    private static final int SEQUENCE = 0x30;
+    private static final int GET_RESPONSE = 0xa2;
+
+    /**
+     * Builds the request sent to a port
+     *
+     * @param port Destination port
+     * @param id Probe id, echoed back by the services that have one
+     * @return Datagram payload, a line break for ports without a known protocol
+     */
+
+    public static byte[] payload(int port, int id){
+        switch (port){
+            case 53:
+                return dnsQuery(id, new String[] {"version", "bind"}, 16, 3);
+            case 5353:
+                return dnsQuery(id, new String[] {"_services", "_dns-sd", "_udp", "local"}, 12, 1);
+            case 123:
+                return ntpRequest(id);
+            case 137:
+                return netbiosStatus(id);
+            case 161:
+                return snmpGet(id);
+            case 1434:
+                return new byte[] {0x02};
+            case 1900:
+                return SSDP_SEARCH.clone();
+            default:
+                return GENERIC.clone();
+        }
+    }
+
+    /**
+     * Checks that a reply answers the probe with this id
+     *
+     * @param port Port the probe went to
+     * @param id Probe id
+     * @param reply Reply bytes
+     * @param length Number of bytes in reply
+     * @return true if the reply belongs to the probe
+     */
+
+    public static boolean matches(int port, int id, byte[] reply, int length){
+        switch (port){
+            case 53:
+            case 137:
+            case 5353:
+                //Transaction id, QR bit set
+                return length >= 12 && u16(reply, 0) == (id & 0xffff) && (reply[2] & 0x80) != 0;
+            case 123:
+                //Server mode, origin timestamp = our transmit timestamp
+                return length >= 48 && (reply[0] & 0x07) == 4 && u32(reply, 24) == id && u32(reply, 28) == ~id;
+            case 161:
+                return snmpRequestId(reply, length) == (id & 0x7fffffff);
+            case 1900:
+                return length >= 5 && new String(reply, 0, 5, StandardCharsets.ISO_8859_1).equals("HTTP/");
+            default:
+                //Any datagram back from the port proves it open
+                return true;
+        }
+    }
+
+    /**
+     * Extracts what a reply says about the service
+     *
+     * @param port Port the probe went to
+     * @param reply Reply bytes, already checked with matches
+     * @param length Number of bytes in reply
+     * @return Version or service info, or empty if the reply tells nothing
+     */
+
+    public static String describe(int port, byte[] reply, int length){
+        try {
+            switch (port){
+                case 53:
+                case 5353:
+                    return describeDns(reply, length);
+                case 123:
+                    return describeNtp(reply);
+                case 137:
+                    return describeNetbios(reply, length);
+                case 161:
+                    return describeSnmp(reply, length);
+                case 1434:
+                    return describeSqlBrowser(reply, length);
+                case 1900:
+                    return describeSsdp(reply, length);
+                default:
+                    return text(reply, 0, Math.min(length, 50));
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            //Truncated or malformed reply, the port still answered
+            return "";
+        }
+    }
+
+    /**
+     * DNS query with the RD flag, one question
+     */
+
+    private static byte[] dnsQuery(int id, String[] labels, int type, int dnsClass){
+        int nameLength = 1;
+        for (String label : labels){
+            nameLength += label.length() + 1;
+        }
+        byte[] query = new byte[12 + nameLength + 4];
+        putU16(query, 0, id);
+        putU16(query, 2, 0x0100);
+        putU16(query, 4, 1);
+
+        int offset = 12;
+        for (String label : labels){
+            query[offset++] = (byte) label.length();
+            for (int i = 0; i < label.length(); i++){
+                query[offset++] = (byte) label.charAt(i);
+            }
+        }
+        query[offset++] = 0;
+        putU16(query, offset, type);
+        putU16(query, offset + 2, dnsClass);
+        return query;
+    }
+
+    /**
+     * NTPv4 client request, the id goes in the transmit timestamp
+     */
+
+    private static byte[] ntpRequest(int id){
+        byte[] request = new byte[48];
+        //LI 3 (unsynchronized), version 4, mode 3 (client)
+        request[0] = (byte) 0xe3;
+        putU32(request, 40, id);
+        putU32(request, 44, ~id);
+        return request;
+    }
+
+    /**
+     * NetBIOS node status request for the wildcard name "*"
+     */
+
+    private static byte[] netbiosStatus(int id){
+        byte[] request = new byte[50];
+        putU16(request, 0, id);
+        putU16(request, 4, 1);
+
+        //First-level encoding: "*" then 15 NUL bytes, each as two letters
+        request[12] = 32;
+        request[13] = 'C';
+        request[14] = 'K';
+        for (int i = 15; i < 45; i++){
+            request[i] = 'A';
+        }
+        request[45] = 0;
+        putU16(request, 46, 0x21);
+        putU16(request, 48, 1);
+        return request;
+    }
+
+    /**
+     * SNMPv1 GetRequest for sysDescr.0 with community "public"
+     */
+
+    private static byte[] snmpGet(int id){
+        byte[] community = ascii("public");
+        int requestId = id & 0x7fffffff;
+
+        byte[] varbind = new byte[2 + 2 + SYS_DESCR.length + 2];
+        int offset = 0;
+        varbind[offset++] = SEQUENCE;
+        varbind[offset++] = (byte) (varbind.length - 2);
+        varbind[offset++] = 0x06;
+        varbind[offset++] = (byte) SYS_DESCR.length;
+        System.arraycopy(SYS_DESCR, 0, varbind, offset, SYS_DESCR.length);
+        offset += SYS_DESCR.length;
+        varbind[offset++] = 0x05;
+        varbind[offset] = 0x00;
+
+        int pduLength = 6 + 3 + 3 + 2 + varbind.length;
+        int messageLength = 3 + 2 + community.length + 2 + pduLength;
+        byte[] message = new byte[2 + messageLength];
+        offset = 0;
+        message[offset++] = SEQUENCE;
+        message[offset++] = (byte) messageLength;
+        //version 0 = SNMPv1
+        message[offset++] = INTEGER;
+        message[offset++] = 1;
+        message[offset++] = 0;
+        message[offset++] = OCTET_STRING;
+        message[offset++] = (byte) community.length;
+        System.arraycopy(community, 0, message, offset, community.length);
+        offset += community.length;
+        //GetRequest PDU
+        message[offset++] = (byte) 0xa0;
+        message[offset++] = (byte) pduLength;
+        message[offset++] = INTEGER;
+        message[offset++] = 4;
+        putU32(message, offset, requestId);
+        offset += 4;
+        //error-status and error-index
+        message[offset++] = INTEGER;
+        message[offset++] = 1;
+        message[offset++] = 0;
+        message[offset++] = INTEGER;
+        message[offset++] = 1;
+        message[offset++] = 0;
+        message[offset++] = SEQUENCE;
+        message[offset++] = (byte) varbind.length;
+        System.arraycopy(varbind, 0, message, offset, varbind.length);
+        return message;
+    }
+
+    /**
+     * Rcode and the first TXT or PTR answer of a DNS reply
+     */
+
+    private static String describeDns(byte[] reply, int length){
+        int rcode = reply[3] & 0x0f;
+        int questions = u16(reply, 4);
+        int answers = u16(reply, 6);
+
+        int offset = 12;
+        for (int i = 0; i < questions; i++){
+            offset = skipName(reply, offset, length) + 4;
+        }
+        for (int i = 0; i < answers && offset < length; i++){
+            offset = skipName(reply, offset, length);
+            int type = u16(reply, offset);
+            int dataLength = u16(reply, offset + 8);
+            int data = offset + 10;
+            if (type == 16 && dataLength > 0){
+                //TXT: length-prefixed strings, the first one is the version
+                return "DNS " + text(reply, data + 1, Math.min(data + 1 + (reply[data] & 0xff), length));
+            }
+            if (type == 12){
+                return "DNS-SD " + readName(reply, data, length);
+            }
+            offset = data + dataLength;
+        }
+        return "DNS " + rcodeName(rcode);
+    }
+
+    /**
+     * NTP version, stratum and the reference id of primary servers
+     */
+
+    private static String describeNtp(byte[] reply){
+        int version = (reply[0] >> 3) & 0x07;
+        int stratum = reply[1] & 0xff;
+        String info = "NTPv" + version + " stratum " + stratum;
+        if (stratum == 1){
+            //Primary servers name their clock source (GPS, PPS...)
+            String refid = text(reply, 12, 16);
+            if (!refid.isEmpty()){
+                info += " (" + refid + ")";
+            }
+        } else if (stratum == 0 || stratum == 16){
+            info += " (unsynchronized)";
+        }
+        return info;
+    }
+
+    /**
+     * First name of a NetBIOS node status reply
+     */
+
+    private static String describeNetbios(byte[] reply, int length){
+        //Header, echoed name, type, class, TTL and data length come first
+        int names = skipName(reply, 12, length) + 10;
+        if (names >= length || reply[names] == 0){
+            return "NetBIOS";
+        }
+        return "NetBIOS name " + text(reply, names + 1, Math.min(names + 16, length));
+    }
+
+    /**
+     * sysDescr.0 of an SNMP GetResponse
+     */
+
+    private static String describeSnmp(byte[] reply, int length){
+        int[] cursor = {0};
+        //message, version, community, PDU, request-id, error-status, error-index, varbinds, varbind, OID
+        if (enter(reply, length, cursor, SEQUENCE) < 0
+                || skip(reply, length, cursor, INTEGER) < 0
+                || skip(reply, length, cursor, OCTET_STRING) < 0
+                || enter(reply, length, cursor, GET_RESPONSE) < 0
+                || skip(reply, length, cursor, INTEGER) < 0
+                || skip(reply, length, cursor, INTEGER) < 0
+                || skip(reply, length, cursor, INTEGER) < 0
+                || enter(reply, length, cursor, SEQUENCE) < 0
+                || enter(reply, length, cursor, SEQUENCE) < 0
+                || skip(reply, length, cursor, 0x06) < 0){
+            return "SNMP";
+        }
+        int valueLength = enter(reply, length, cursor, OCTET_STRING);
+        if (valueLength <= 0){
+            return "SNMPv1";
+        }
+        String description = text(reply, cursor[0], Math.min(cursor[0] + valueLength, length));
+        return "SNMPv1 " + (description.length() > 80 ? description.substring(0, 77) + "..." : description);
+    }
+
+    /**
+     * Server name and version of an MS-SQL browser reply
+     * ("ServerName;HOST;InstanceName;SQLEXPRESS;IsClustered;No;Version;15.0.2000.5;...")
+     */
+
+    private static String describeSqlBrowser(byte[] reply, int length){
+        String[] fields = new String(reply, 3, Math.max(0, length - 3), StandardCharsets.ISO_8859_1).split(";");
+        String server = "";
+        String version = "";
+        for (int i = 0; i + 1 < fields.length; i += 2){
+            if (fields[i].equals("ServerName") && server.isEmpty()){
+                server = fields[i + 1];
+            } else if (fields[i].equals("Version") && version.isEmpty()){
+                version = fields[i + 1];
+            }
+        }
+        return ("MS-SQL " + version + (server.isEmpty() ? "" : " on " + server)).trim();
+    }
+
+    /**
+     * SERVER header of an SSDP reply
+     */
+
+    private static String describeSsdp(byte[] reply, int length){
+        String headers = new String(reply, 0, length, StandardCharsets.ISO_8859_1);
+        for (String line : headers.split("\r?\n")){
+            if (line.regionMatches(true, 0, "SERVER:", 0, 7)){
+                return line.substring(7).trim();
+            }
+        }
+        return "UPnP";
+    }
+
+    /**
+     * Finds the request-id of an SNMP GetResponse
+     *
+     * @return The request-id, or -1 if the reply is not a GetResponse
+     */
+
+    private static int snmpRequestId(byte[] reply, int length){
+        try {
+            int[] cursor = {0};
+            if (enter(reply, length, cursor, SEQUENCE) < 0
+                    || skip(reply, length, cursor, INTEGER) < 0
+                    || skip(reply, length, cursor, OCTET_STRING) < 0
+                    || enter(reply, length, cursor, GET_RESPONSE) < 0){
+                return -1;
+            }
+            int idLength = enter(reply, length, cursor, INTEGER);
+            if (idLength < 1 || idLength > 5){
+                return -1;
+            }
+            long value = 0;
+            for (int i = 0; i < idLength; i++){
+                value = (value << 8) | (reply[cursor[0] + i] & 0xff);
+            }
+            return value <= Integer.MAX_VALUE ? (int) value : -1;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Reads a BER tag and length, leaving the cursor on the contents
+     *
+     * @return Contents length, or -1 if the tag is not the expected one
+     */
+
+    private static int enter(byte[] data, int length, int[] cursor, int tag){
+        int offset = cursor[0];
+        if (offset + 2 > length || (data[offset] & 0xff) != tag){
+            return -1;
+        }
+        int contents = data[offset + 1] & 0xff;
+        offset += 2;
+        if (contents > 0x80){
+            //Long form: the low bits give the number of length bytes
+            int count = contents & 0x7f;
+            contents = 0;
+            for (int i = 0; i < count; i++){
+                contents = (contents << 8) | (data[offset++] & 0xff);
+            }
+        }
+        cursor[0] = offset;
+        return contents;
+    }
+
+    /**
+     * Skips a whole BER element
+     *
+     * @return Its contents length, or -1 if the tag is not the expected one
+     */
+
+    private static int skip(byte[] data, int length, int[] cursor, int tag){
+        int contents = enter(data, length, cursor, tag);
+        if (contents >= 0){
+            cursor[0] += contents;
+        }
+        return contents;
+    }
+
+    /**
+     * Skips a DNS name (labels, ending with a zero byte or a pointer)
+     *
+     * @return Offset right after the name
+     */
+
+    private static int skipName(byte[] data, int offset, int length){
+        while (offset < length){
+            int label = data[offset] & 0xff;
+            if (label == 0){
+                return offset + 1;
+            }
+            if ((label & 0xc0) == 0xc0){
+                return offset + 2;
+            }
+            offset += label + 1;
+        }
+        return length;
+    }
+
+    /**
+     * Reads a DNS name, following compression pointers
+     */
+
+    private static String readName(byte[] data, int offset, int length){
+        StringBuilder name = new StringBuilder();
+        //Bounds the pointer chain, malformed replies can loop
+        for (int hops = 0; hops < 16 && offset < length; ){
+            int label = data[offset] & 0xff;
+            if (label == 0){
+                break;
+            }
+            if ((label & 0xc0) == 0xc0){
+                offset = ((label & 0x3f) << 8) | (data[offset + 1] & 0xff);
+                hops++;
+                continue;
+            }
+            if (name.length() > 0){
+                name.append('.');
+            }
+            name.append(text(data, offset + 1, Math.min(offset + 1 + label, length)));
+            offset += label + 1;
+        }
+        return name.toString();
+    }
+
+    private static String rcodeName(int rcode){
+        switch (rcode){
+            case 0: return "NOERROR";
+            case 1: return "FORMERR";
+            case 2: return "SERVFAIL";
+            case 3: return "NXDOMAIN";
+            case 4: return "NOTIMP";
+            case 5: return "REFUSED";
+            default: return "rcode " + rcode;
+        }
+    }
+
+    /**
+     * Printable text of a byte range, control bytes as '.', trimmed
+     */
+
+    private static String text(byte[] data, int from, int to){
+        char[] chars = new char[Math.max(0, to - from)];
+        for (int i = from; i < to; i++){
+            int b = data[i] & 0xff;
+            chars[i - from] = b < 0x20 || b >= 0x7f ? '.' : (char) b;
+        }
+        return new String(chars).replaceAll("^\\.+|\\.+$", "").trim();
+    }
+
+    private static int u16(byte[] data, int offset){
+        return ((data[offset] & 0xff) << 8) | (data[offset + 1] & 0xff);
+    }
+
+    private static int u32(byte[] data, int offset){
+        return (u16(data, offset) << 16) | u16(data, offset + 2);
+    }
+
+    private static void putU16(byte[] data, int offset, int value){
+        data[offset] = (byte) (value >> 8);
+        data[offset + 1] = (byte) value;
+    }
+
+    private static void putU32(byte[] data, int offset, int value){
+        putU16(data, offset, value >>> 16);
+        putU16(data, offset + 2, value);
+    }
+
+    private static byte[] ascii(String text){
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}